@@ -0,0 +1,189 @@
+package solvexis.service;
+
+import java.util.Arrays;
+
+/**
+ * Arrival time as a piecewise-linear function of departure time over a departure window,
+ * both in seconds since midnight of the departure day. Breakpoints are two parallel double
+ * arrays; the function is non-decreasing because every cost it is built from is FIFO.
+ */
+public final class ArrivalProfile {
+    private static final double EPS = 1e-6;
+
+    private final double[] departs;
+    private final double[] arrives;
+
+    ArrivalProfile(double[] departs, double[] arrives) {
+        this.departs = departs;
+        this.arrives = arrives;
+    }
+
+    /** Arrival equal to departure over {@code [earliest, latest]}. */
+    static ArrivalProfile identity(double earliest, double latest) {
+        if (latest <= earliest) return new ArrivalProfile(new double[]{earliest}, new double[]{earliest});
+        return new ArrivalProfile(new double[]{earliest, latest}, new double[]{earliest, latest});
+    }
+
+    public double getEarliestDeparture() {
+        return departs[0];
+    }
+
+    public double getLatestDeparture() {
+        return departs[departs.length - 1];
+    }
+
+    public int breakpointCount() {
+        return departs.length;
+    }
+
+    /** Departure second of each breakpoint. */
+    public double[] getDepartures() {
+        return departs.clone();
+    }
+
+    /** Arrival second at each breakpoint. */
+    public double[] getArrivals() {
+        return arrives.clone();
+    }
+
+    /** @param depart a second within the window; clamped to it otherwise */
+    public double arrivalAt(double depart) {
+        if (depart <= departs[0]) return arrives[0];
+        int last = departs.length - 1;
+        if (depart >= departs[last]) return arrives[last];
+        int i = Arrays.binarySearch(departs, depart);
+        if (i >= 0) return arrives[i];
+        int hi = -i - 1;
+        int lo = hi - 1;
+        return arrives[lo] + (arrives[hi] - arrives[lo]) * (depart - departs[lo]) / (departs[hi] - departs[lo]);
+    }
+
+    /** Earliest possible arrival: the function's value at the start of the window. */
+    double minArrival() {
+        return arrives[0];
+    }
+
+    double maxArrival() {
+        return arrives[arrives.length - 1];
+    }
+
+    /**
+     * Departure within the window with the shortest trip. The trip length is linear between
+     * breakpoints, so one of them is the answer; the earliest wins a tie.
+     */
+    public double bestDeparture() {
+        int best = 0;
+        for (int i = 1; i < departs.length; i++) {
+            if (arrives[i] - departs[i] < arrives[best] - departs[best] - EPS) best = i;
+        }
+        return departs[best];
+    }
+
+    /**
+     * Profile of {@code x -> (x + shift) + f(x + shift) + add} applied after this one. New
+     * breakpoints appear wherever the shifted arrival crosses a breakpoint of {@code f}.
+     *
+     * @param f     time-dependent cost, or null for none
+     */
+    ArrivalProfile then(PiecewiseLinearFunction f, double shift, double add) {
+        int n = departs.length;
+        double[] xs = new double[n * 2];
+        double[] ys = new double[n * 2];
+        int count = 0;
+        for (int i = 0; i < n; i++) {
+            if (count + 1 >= xs.length) {
+                xs = Arrays.copyOf(xs, xs.length * 2);
+                ys = Arrays.copyOf(ys, ys.length * 2);
+            }
+            double y = arrives[i] + shift;
+            xs[count] = departs[i];
+            ys[count++] = y + (f == null ? 0 : f.valueAt(y)) + add;
+            if (f == null || i + 1 == n || arrives[i + 1] <= arrives[i]) continue;
+            double end = arrives[i + 1] + shift;
+            for (double b = f.nextBreakpoint(y); b < end; b = f.nextBreakpoint(b)) {
+                if (count + 1 >= xs.length) {
+                    xs = Arrays.copyOf(xs, xs.length * 2);
+                    ys = Arrays.copyOf(ys, ys.length * 2);
+                }
+                double x = departs[i] + (b - y) * (departs[i + 1] - departs[i]) / (end - y);
+                if (x <= xs[count - 1]) continue;
+                xs[count] = x;
+                ys[count++] = b + f.valueAt(b) + add;
+            }
+        }
+        return simplified(xs, ys, count);
+    }
+
+    /** Whether {@code other} is earlier anywhere in the window. */
+    boolean improvedBy(ArrivalProfile other) {
+        return !other.noEarlierThan(this, 0);
+    }
+
+    /**
+     * Whether this profile plus {@code offset} is nowhere earlier than {@code other}. Both are
+     * linear between their joint breakpoints, so checking those is enough.
+     */
+    boolean noEarlierThan(ArrivalProfile other, double offset) {
+        for (int i = 0; i < departs.length; i++) {
+            if (arrives[i] + offset < other.arrivalAt(departs[i]) - EPS) return false;
+        }
+        for (int i = 0; i < other.departs.length; i++) {
+            if (arrivalAt(other.departs[i]) + offset < other.arrives[i] - EPS) return false;
+        }
+        return true;
+    }
+
+    /** Pointwise earlier of the two, with a breakpoint wherever they cross. */
+    ArrivalProfile min(ArrivalProfile other) {
+        double[] xs = new double[(departs.length + other.departs.length) * 2];
+        double[] ys = new double[xs.length];
+        int count = 0;
+        int i = 0, j = 0;
+        double prevX = Double.NaN, prevA = 0, prevB = 0;
+        while (i < departs.length || j < other.departs.length) {
+            double x;
+            if (j == other.departs.length || (i < departs.length && departs[i] <= other.departs[j])) {
+                x = departs[i];
+            } else {
+                x = other.departs[j];
+            }
+            while (i < departs.length && departs[i] <= x) i++;
+            while (j < other.departs.length && other.departs[j] <= x) j++;
+            double a = arrivalAt(x);
+            double b = other.arrivalAt(x);
+            if (!Double.isNaN(prevX) && (prevA - prevB) * (a - b) < 0) {
+                // The two cross strictly inside (prevX, x).
+                double t = (prevA - prevB) / ((prevA - prevB) - (a - b));
+                xs[count] = prevX + t * (x - prevX);
+                ys[count++] = prevA + t * (a - prevA);
+            }
+            xs[count] = x;
+            ys[count++] = Math.min(a, b);
+            prevX = x;
+            prevA = a;
+            prevB = b;
+        }
+        return simplified(xs, ys, count);
+    }
+
+    /** Drops breakpoints that lie on the line through their neighbours. */
+    private static ArrivalProfile simplified(double[] xs, double[] ys, int count) {
+        double[] outX = new double[count];
+        double[] outY = new double[count];
+        int k = 0;
+        for (int i = 0; i < count; i++) {
+            if (k > 0 && xs[i] <= outX[k - 1] + EPS) {
+                outY[k - 1] = Math.min(outY[k - 1], ys[i]);
+                continue;
+            }
+            if (k >= 2) {
+                double slopeA = (outY[k - 1] - outY[k - 2]) / (outX[k - 1] - outX[k - 2]);
+                double slopeB = (ys[i] - outY[k - 1]) / (xs[i] - outX[k - 1]);
+                if (Math.abs(slopeA - slopeB) < 1e-9) k--;
+            }
+            outX[k] = xs[i];
+            outY[k++] = ys[i];
+        }
+        return new ArrivalProfile(Arrays.copyOf(outX, k), Arrays.copyOf(outY, k));
+    }
+}
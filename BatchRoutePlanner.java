@@ -0,0 +1,172 @@
+package solvexis.service;
+
+import java.util.*;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * Resolves many origin-destination pairs at once on a {@link ForkJoinPool}. Each worker
+ * thread keeps its own search buffers for the whole batch, and a pair that cannot be
+ * routed comes back as an {@link Outcome} with a {@link Status} instead of an exception.
+ */
+public class BatchRoutePlanner {
+    private static final int LEAF_SIZE = 32;
+
+    public enum Status {
+        OK,
+        UNKNOWN_START,
+        UNKNOWN_END,
+        SAME_STATION,
+        STATION_CLOSED,
+        NO_ROUTE
+    }
+
+    public static class OdPair {
+        private final String start;
+        private final String end;
+
+        public OdPair(String start, String end) {
+            this.start = start;
+            this.end = end;
+        }
+
+        public String getStart() {
+            return start;
+        }
+
+        public String getEnd() {
+            return end;
+        }
+    }
+
+    public static class Outcome {
+        private final OdPair pair;
+        private final Status status;
+        private final RouteResult route;
+        private final String error;
+
+        Outcome(OdPair pair, Status status, RouteResult route, String error) {
+            this.pair = pair;
+            this.status = status;
+            this.route = route;
+            this.error = error;
+        }
+
+        public OdPair getPair() {
+            return pair;
+        }
+
+        public Status getStatus() {
+            return status;
+        }
+
+        public boolean isOk() {
+            return status == Status.OK;
+        }
+
+        /** @return the route, or null unless {@link #isOk()} */
+        public RouteResult getRoute() {
+            return route;
+        }
+
+        /** @return the reason the pair was not routed, or null */
+        public String getError() {
+            return error;
+        }
+    }
+
+    private final MetroRoutePlanner planner;
+    private final MetroGraph graph;
+    private final ForkJoinPool pool;
+    private final ThreadLocal<MetroRoutePlanner.SearchBuffers> buffers;
+
+    public BatchRoutePlanner(MetroRoutePlanner planner) {
+        this(planner, ForkJoinPool.commonPool());
+    }
+
+    public BatchRoutePlanner(MetroRoutePlanner planner, ForkJoinPool pool) {
+        this.planner = planner;
+        this.graph = planner.getNetwork().getGraph();
+        this.pool = pool;
+        this.buffers = ThreadLocal.withInitial(planner::newSearchBuffers);
+    }
+
+    /**
+     * @return one outcome per pair, in the order of {@code pairs}; the whole batch is planned
+     *         against the closures in force when it starts
+     */
+    public List<Outcome> planAll(List<OdPair> pairs, RoutingMode mode) {
+        Outcome[] outcomes = new Outcome[pairs.size()];
+        OdPair[] input = pairs.toArray(new OdPair[0]);
+        ClosureSet closures = planner.getNetwork().getDisruptions().current();
+        pool.invoke(new Slice(input, outcomes, mode, closures, 0, input.length));
+        return Arrays.asList(outcomes);
+    }
+
+    public List<Outcome> planAll(Stream<OdPair> pairs, RoutingMode mode) {
+        return planAll(pairs.collect(Collectors.toList()), mode);
+    }
+
+    /** Resolves one pair on the calling thread's buffers. */
+    public Outcome plan(OdPair pair, RoutingMode mode) {
+        return resolve(pair, mode, buffers.get(), planner.getNetwork().getDisruptions().current());
+    }
+
+    private Outcome resolve(OdPair pair, RoutingMode mode, MetroRoutePlanner.SearchBuffers scratch,
+                            ClosureSet closures) {
+        int from = graph.id(pair.getStart());
+        if (from < 0)
+            return new Outcome(pair, Status.UNKNOWN_START, null, "Start station not found: " + pair.getStart());
+        int to = graph.id(pair.getEnd());
+        if (to < 0)
+            return new Outcome(pair, Status.UNKNOWN_END, null, "End station not found: " + pair.getEnd());
+        if (from == to)
+            return new Outcome(pair, Status.SAME_STATION, null, "Start and end stations cannot be the same!");
+        if (closures.isStationClosed(from))
+            return new Outcome(pair, Status.STATION_CLOSED, null, "Station is closed: " + pair.getStart());
+        if (closures.isStationClosed(to))
+            return new Outcome(pair, Status.STATION_CLOSED, null, "Station is closed: " + pair.getEnd());
+
+        RouteResult route = planner.plan(pair.getStart(), pair.getEnd(), from, to, mode, scratch, closures);
+        if (route == null)
+            return new Outcome(pair, Status.NO_ROUTE, null,
+                "No route found between " + pair.getStart() + " and " + pair.getEnd());
+        return new Outcome(pair, Status.OK, route, null);
+    }
+
+    private class Slice extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+
+        private final OdPair[] input;
+        private final Outcome[] output;
+        private final RoutingMode mode;
+        private final ClosureSet closures;
+        private final int lo;
+        private final int hi;
+
+        Slice(OdPair[] input, Outcome[] output, RoutingMode mode, ClosureSet closures, int lo, int hi) {
+            this.input = input;
+            this.output = output;
+            this.mode = mode;
+            this.closures = closures;
+            this.lo = lo;
+            this.hi = hi;
+        }
+
+        @Override
+        protected void compute() {
+            if (hi - lo <= LEAF_SIZE) {
+                MetroRoutePlanner.SearchBuffers scratch = buffers.get();
+                for (int i = lo; i < hi; i++) {
+                    output[i] = resolve(input[i], mode, scratch, closures);
+                }
+                return;
+            }
+            int mid = (lo + hi) >>> 1;
+            invokeAll(new Slice(input, output, mode, closures, lo, mid),
+                new Slice(input, output, mode, closures, mid, hi));
+        }
+    }
+}
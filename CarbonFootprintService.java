@@ -6,12 +6,39 @@ import java.util.List;
 public class CarbonFootprintService {
     private static final double CO2_EMISSION_FACTOR = 0.12;
     private static final double AVG_DISTANCE_BETWEEN_STATIONS = 1.5;
-    
+
+    private final NetworkSnapshot network;
+
+    /** Measures routes on the shared network, loaded on first use. */
+    public CarbonFootprintService() {
+        this(null);
+    }
+
+    public CarbonFootprintService(NetworkSnapshot network) {
+        this.network = network;
+    }
+
+    /**
+     * Track kilometres along {@code route} from the network's segment distances. Stations
+     * the network does not know count 1.5 km per hop.
+     */
     public double calculateDistance(List<Station> route) {
         if (route == null || route.size() <= 1) {
             return 0.0;
         }
-        return (route.size() - 1) * AVG_DISTANCE_BETWEEN_STATIONS;
+        NetworkSnapshot snapshot = network != null ? network : NetworkSnapshot.get();
+        MetroGraph graph = snapshot.getGraph();
+        int[] ids = new int[route.size()];
+        for (int i = 0; i < ids.length; i++) {
+            ids[i] = graph.id(route.get(i).getName());
+            if (ids[i] < 0) return calculateDistance(route.size() - 1);
+        }
+        return snapshot.getCorridorDistances().pathMeters(ids, ids.length) / 1000.0;
+    }
+
+    /** Rough distance of {@code hops} stops when the stations are not known. */
+    public double calculateDistance(int hops) {
+        return hops <= 0 ? 0.0 : hops * AVG_DISTANCE_BETWEEN_STATIONS;
     }
     
     public double calculateCO2Saved(double distanceKm) {
@@ -32,7 +59,10 @@ public class CarbonFootprintService {
     }
     
     public void displayCO2Saved(List<Station> route) {
-        double distance = calculateDistance(route);
+        displayCO2Saved(calculateDistance(route));
+    }
+
+    public void displayCO2Saved(double distance) {
         double co2Saved = calculateCO2Saved(distance);
         
         System.out.println("\n════════ Carbon Footprint Tracker ════════");
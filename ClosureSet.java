@@ -0,0 +1,92 @@
+package solvexis.service;
+
+import java.util.BitSet;
+
+/**
+ * Immutable set of closed stations and segments on a {@link MetroGraph}, stamped with the
+ * version it was published as. Searches skip closed elements; a route planned on the full
+ * network is still optimal under a closure set as long as {@link #blocks} is false for it.
+ */
+public final class ClosureSet {
+    private final MetroGraph graph;
+    private final long version;
+    private final BitSet closedStations;
+    private final BitSet closedEdges;
+
+    ClosureSet(MetroGraph graph, long version, BitSet closedStations, BitSet closedEdges) {
+        this.graph = graph;
+        this.version = version;
+        this.closedStations = closedStations;
+        this.closedEdges = closedEdges;
+    }
+
+    static ClosureSet none(MetroGraph graph) {
+        return new ClosureSet(graph, 0, new BitSet(), new BitSet());
+    }
+
+    public long getVersion() {
+        return version;
+    }
+
+    public boolean isEmpty() {
+        return closedStations.isEmpty() && closedEdges.isEmpty();
+    }
+
+    public boolean isStationClosed(int station) {
+        return closedStations.get(station);
+    }
+
+    public boolean isEdgeClosed(int edge) {
+        return closedEdges.get(edge);
+    }
+
+    /** @return true if a search may not move along {@code edge} out of its source station */
+    public boolean blocksEdge(int edge) {
+        return closedEdges.get(edge) || closedStations.get(graph.target(edge));
+    }
+
+    /** @return true if the station path passes a closed station or a fully closed segment */
+    public boolean blocks(int[] path) {
+        if (isEmpty()) return false;
+        for (int i = 0; i < path.length; i++) {
+            if (closedStations.get(path[i])) return true;
+            if (i > 0 && !hasOpenEdge(path[i - 1], path[i])) return true;
+        }
+        return false;
+    }
+
+    private boolean hasOpenEdge(int a, int b) {
+        for (int e = graph.firstEdge(a); e < graph.endEdge(a); e++) {
+            if (graph.target(e) == b && !closedEdges.get(e)) return true;
+        }
+        return false;
+    }
+
+    /** @return true if something closed here is open in {@code other} */
+    public boolean hasClosuresNotIn(ClosureSet other) {
+        BitSet stations = (BitSet) closedStations.clone();
+        stations.andNot(other.closedStations);
+        if (!stations.isEmpty()) return true;
+        BitSet edges = (BitSet) closedEdges.clone();
+        edges.andNot(other.closedEdges);
+        return !edges.isEmpty();
+    }
+
+    ClosureSet withStation(int station, boolean closed) {
+        BitSet stations = (BitSet) closedStations.clone();
+        stations.set(station, closed);
+        return new ClosureSet(graph, version + 1, stations, closedEdges);
+    }
+
+    /** Opens or closes every edge between {@code a} and {@code b}, in both directions. */
+    ClosureSet withSegment(int a, int b, boolean closed) {
+        BitSet edges = (BitSet) closedEdges.clone();
+        for (int e = graph.firstEdge(a); e < graph.endEdge(a); e++) {
+            if (graph.target(e) == b) edges.set(e, closed);
+        }
+        for (int e = graph.firstEdge(b); e < graph.endEdge(b); e++) {
+            if (graph.target(e) == a) edges.set(e, closed);
+        }
+        return new ClosureSet(graph, version + 1, closedStations, edges);
+    }
+}
@@ -0,0 +1,550 @@
+package solvexis.service;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.IntBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.*;
+import java.util.Arrays;
+
+/**
+ * Contraction hierarchy over the (station, line) state graph of {@link TimeOptimalRouter}.
+ *
+ * <p>Preprocessing contracts states one at a time in order of importance (edge difference
+ * plus contracted neighbours, updated lazily) and inserts a shortcut between two neighbours
+ * whenever a bounded witness search finds no path that avoids the contracted state. A query
+ * is a bidirectional Dijkstra that only follows edges to higher-ranked states; shortcuts
+ * remember the state they bypass so the full station path can be unpacked.
+ *
+ * <p>The state graph is undirected, so a single upward graph serves both search directions.
+ * {@link #write} / {@link #read} store the result so it is not rebuilt on every start.
+ */
+public class ContractionHierarchy {
+    private static final int MAGIC = 0x53564348; // "SVCH"
+    private static final int VERSION = 1;
+    private static final int HEADER = 24;
+    private static final int WITNESS_SETTLE_LIMIT = 200;
+    private static final int SIMULATE_SETTLE_LIMIT = 40;
+
+    private final TimeOptimalRouter router;
+    private final RoutingMode mode;
+    private final int[] rank;
+    private final int[] upOffsets;
+    private final int[] upTargets;
+    private final int[] upWeights;
+    private final int[] upMiddles;
+    private final ThreadLocal<QueryBuffers> buffers;
+
+    private ContractionHierarchy(TimeOptimalRouter router, RoutingMode mode, int[] rank,
+                                 int[] upOffsets, int[] upTargets, int[] upWeights, int[] upMiddles) {
+        this.router = router;
+        this.mode = mode;
+        this.rank = rank;
+        this.upOffsets = upOffsets;
+        this.upTargets = upTargets;
+        this.upWeights = upWeights;
+        this.upMiddles = upMiddles;
+        int n = rank.length;
+        this.buffers = ThreadLocal.withInitial(() -> new QueryBuffers(n));
+    }
+
+    public RoutingMode getMode() {
+        return mode;
+    }
+
+    public int shortcutCount() {
+        int count = 0;
+        for (int m : upMiddles) {
+            if (m >= 0) count++;
+        }
+        return count;
+    }
+
+    // ---------------------------------------------------------------- preprocessing
+
+    /**
+     * Contracts the state graph of {@code router}. {@link RoutingMode#FASTEST} weighs edges by
+     * minutes and transfers by the transfer penalty; {@link RoutingMode#FEWEST_STATIONS} counts
+     * one per ride and nothing per transfer.
+     */
+    public static ContractionHierarchy build(TimeOptimalRouter router, RoutingMode mode) {
+        if (mode.usesLiveData())
+            throw new IllegalArgumentException(mode + " routes cannot be precomputed");
+        Builder b = new Builder(router.stateCount());
+        MetroGraph graph = router.getGraph();
+        for (int u = 0; u < graph.size(); u++) {
+            for (int e = graph.firstEdge(u); e < graph.endEdge(u); e++) {
+                int s = router.stateOf(u, graph.line(e));
+                int t = router.edgeTargetState(e);
+                b.addEdge(s, t, mode == RoutingMode.FASTEST ? graph.minutes(e) : 1, -1);
+            }
+            int transfer = mode == RoutingMode.FASTEST ? router.getTransferPenalty() : 0;
+            for (int s = router.firstState(u); s < router.endState(u); s++) {
+                for (int t = s + 1; t < router.endState(u); t++) {
+                    b.addEdge(s, t, transfer, -1);
+                }
+            }
+        }
+        b.contractAll();
+        return b.finish(router, mode);
+    }
+
+    private static class Builder {
+        final int n;
+        final int[][] to;
+        final int[][] weight;
+        final int[][] middle;
+        final int[] degree;
+        final int[] deletedNeighbors;
+        final int[] rank;
+
+        final long[] dist;
+        final int[] touched;
+        int touchedCount;
+        final IntMinHeap witnessHeap;
+        final int[] nbr;
+        final int[] nbrWeight;
+
+        Builder(int n) {
+            this.n = n;
+            to = new int[n][];
+            weight = new int[n][];
+            middle = new int[n][];
+            degree = new int[n];
+            for (int i = 0; i < n; i++) {
+                to[i] = new int[4];
+                weight[i] = new int[4];
+                middle[i] = new int[4];
+            }
+            deletedNeighbors = new int[n];
+            rank = new int[n];
+            dist = new long[n];
+            Arrays.fill(dist, Long.MAX_VALUE);
+            touched = new int[n];
+            witnessHeap = new IntMinHeap(n);
+            nbr = new int[n];
+            nbrWeight = new int[n];
+        }
+
+        void addEdge(int a, int b, int w, int mid) {
+            addHalf(a, b, w, mid);
+            addHalf(b, a, w, mid);
+        }
+
+        private void addHalf(int a, int b, int w, int mid) {
+            for (int i = 0; i < degree[a]; i++) {
+                if (to[a][i] == b) {
+                    if (w < weight[a][i]) {
+                        weight[a][i] = w;
+                        middle[a][i] = mid;
+                    }
+                    return;
+                }
+            }
+            if (degree[a] == to[a].length) {
+                int cap = degree[a] * 2;
+                to[a] = Arrays.copyOf(to[a], cap);
+                weight[a] = Arrays.copyOf(weight[a], cap);
+                middle[a] = Arrays.copyOf(middle[a], cap);
+            }
+            to[a][degree[a]] = b;
+            weight[a][degree[a]] = w;
+            middle[a][degree[a]] = mid;
+            degree[a]++;
+        }
+
+        void contractAll() {
+            IntMinHeap order = new IntMinHeap(n);
+            for (int v = 0; v < n; v++) {
+                order.offer(v, priority(v));
+            }
+            int next = 0;
+            while (!order.isEmpty()) {
+                int v = order.poll();
+                long p = priority(v);
+                if (!order.isEmpty() && p > order.peekKey()) {
+                    order.offer(v, p);
+                    continue;
+                }
+                contract(v, false);
+                rank[v] = next++;
+                // v keeps its list (now its upward edges); its neighbours forget it so later
+                // witness searches only scan the remaining graph.
+                for (int i = 0; i < degree[v]; i++) {
+                    int u = to[v][i];
+                    removeHalf(u, v);
+                    deletedNeighbors[u]++;
+                }
+            }
+        }
+
+        private void removeHalf(int a, int b) {
+            for (int i = 0; i < degree[a]; i++) {
+                if (to[a][i] == b) {
+                    int last = --degree[a];
+                    to[a][i] = to[a][last];
+                    weight[a][i] = weight[a][last];
+                    middle[a][i] = middle[a][last];
+                    return;
+                }
+            }
+        }
+
+        private long priority(int v) {
+            int shortcuts = contract(v, true);
+            return (long) shortcuts - degree[v] + deletedNeighbors[v];
+        }
+
+        /** Adds (or with {@code simulate}, only counts) the shortcuts needed to remove {@code v}. */
+        private int contract(int v, boolean simulate) {
+            int k = 0;
+            int maxWeight = 0;
+            for (int i = 0; i < degree[v]; i++) {
+                nbr[k] = to[v][i];
+                nbrWeight[k] = weight[v][i];
+                maxWeight = Math.max(maxWeight, weight[v][i]);
+                k++;
+            }
+
+            int shortcuts = 0;
+            for (int i = 0; i < k; i++) {
+                int u = nbr[i];
+                witnessSearch(u, v, (long) nbrWeight[i] + maxWeight,
+                    simulate ? SIMULATE_SETTLE_LIMIT : WITNESS_SETTLE_LIMIT);
+                for (int j = i + 1; j < k; j++) {
+                    long via = (long) nbrWeight[i] + nbrWeight[j];
+                    if (dist[nbr[j]] > via) {
+                        shortcuts++;
+                        if (!simulate) addEdge(u, nbr[j], (int) via, v);
+                    }
+                }
+                resetWitness();
+            }
+            return shortcuts;
+        }
+
+        private void witnessSearch(int source, int avoid, long limit, int settleLimit) {
+            witnessHeap.clear();
+            dist[source] = 0;
+            touched[touchedCount++] = source;
+            witnessHeap.offer(source, 0);
+            int settled = 0;
+            while (!witnessHeap.isEmpty() && settled < settleLimit) {
+                long d = witnessHeap.peekKey();
+                if (d > limit) break;
+                int x = witnessHeap.poll();
+                settled++;
+                for (int i = 0; i < degree[x]; i++) {
+                    int y = to[x][i];
+                    if (y == avoid) continue;
+                    long nd = d + weight[x][i];
+                    if (nd < dist[y]) {
+                        if (dist[y] == Long.MAX_VALUE) touched[touchedCount++] = y;
+                        dist[y] = nd;
+                        witnessHeap.offer(y, nd);
+                    }
+                }
+            }
+        }
+
+        private void resetWitness() {
+            for (int i = 0; i < touchedCount; i++) {
+                dist[touched[i]] = Long.MAX_VALUE;
+            }
+            touchedCount = 0;
+        }
+
+        ContractionHierarchy finish(TimeOptimalRouter router, RoutingMode mode) {
+            int[] offsets = new int[n + 1];
+            for (int v = 0; v < n; v++) {
+                int up = 0;
+                for (int i = 0; i < degree[v]; i++) {
+                    if (rank[to[v][i]] > rank[v]) up++;
+                }
+                offsets[v + 1] = offsets[v] + up;
+            }
+            int m = offsets[n];
+            int[] targets = new int[m];
+            int[] weights = new int[m];
+            int[] middles = new int[m];
+            for (int v = 0; v < n; v++) {
+                int e = offsets[v];
+                for (int i = 0; i < degree[v]; i++) {
+                    if (rank[to[v][i]] <= rank[v]) continue;
+                    targets[e] = to[v][i];
+                    weights[e] = weight[v][i];
+                    middles[e] = middle[v][i];
+                    e++;
+                }
+            }
+            return new ContractionHierarchy(router, mode, rank, offsets, targets, weights, middles);
+        }
+    }
+
+    // ---------------------------------------------------------------- queries
+
+    private static class QueryBuffers {
+        final long[] distF;
+        final long[] distB;
+        final int[] parentEdgeF;
+        final int[] parentEdgeB;
+        final int[] parentF;
+        final int[] parentB;
+        final int[] touched;
+        int touchedCount;
+        final IntMinHeap heapF;
+        final IntMinHeap heapB;
+
+        QueryBuffers(int n) {
+            distF = new long[n];
+            distB = new long[n];
+            Arrays.fill(distF, Long.MAX_VALUE);
+            Arrays.fill(distB, Long.MAX_VALUE);
+            parentEdgeF = new int[n];
+            parentEdgeB = new int[n];
+            parentF = new int[n];
+            parentB = new int[n];
+            touched = new int[2 * n];
+            heapF = new IntMinHeap(n);
+            heapB = new IntMinHeap(n);
+        }
+
+        void reset() {
+            for (int i = 0; i < touchedCount; i++) {
+                distF[touched[i]] = Long.MAX_VALUE;
+                distB[touched[i]] = Long.MAX_VALUE;
+            }
+            touchedCount = 0;
+            heapF.clear();
+            heapB.clear();
+        }
+    }
+
+    /**
+     * @return the station ids on the best path, or null if {@code to} is unreachable
+     */
+    public int[] shortestPath(int from, int to) {
+        QueryBuffers q = buffers.get();
+        try {
+            return search(from, to, q);
+        } finally {
+            q.reset();
+        }
+    }
+
+    private int[] search(int from, int to, QueryBuffers q) {
+        for (int s = router.firstState(from); s < router.endState(from); s++) {
+            seed(s, q.distF, q.parentF, q.heapF, q);
+        }
+        for (int s = router.firstState(to); s < router.endState(to); s++) {
+            seed(s, q.distB, q.parentB, q.heapB, q);
+        }
+
+        long best = Long.MAX_VALUE;
+        int meet = -1;
+        while (!q.heapF.isEmpty() || !q.heapB.isEmpty()) {
+            boolean forward;
+            if (q.heapF.isEmpty()) {
+                forward = false;
+            } else if (q.heapB.isEmpty()) {
+                forward = true;
+            } else {
+                forward = q.heapF.peekKey() <= q.heapB.peekKey();
+            }
+            IntMinHeap heap = forward ? q.heapF : q.heapB;
+            if (heap.peekKey() >= best) {
+                heap.clear();
+                continue;
+            }
+            long[] dist = forward ? q.distF : q.distB;
+            long[] other = forward ? q.distB : q.distF;
+            int[] parent = forward ? q.parentF : q.parentB;
+            int[] parentEdge = forward ? q.parentEdgeF : q.parentEdgeB;
+
+            long d = heap.peekKey();
+            int x = heap.poll();
+            if (other[x] != Long.MAX_VALUE && d + other[x] < best) {
+                best = d + other[x];
+                meet = x;
+            }
+            for (int e = upOffsets[x]; e < upOffsets[x + 1]; e++) {
+                int y = upTargets[e];
+                long nd = d + upWeights[e];
+                if (nd < dist[y]) {
+                    if (q.distF[y] == Long.MAX_VALUE && q.distB[y] == Long.MAX_VALUE) {
+                        q.touched[q.touchedCount++] = y;
+                    }
+                    dist[y] = nd;
+                    parent[y] = x;
+                    parentEdge[y] = e;
+                    heap.offer(y, nd);
+                }
+            }
+        }
+        if (meet < 0) return null;
+        return unpack(meet, q);
+    }
+
+    private static void seed(int s, long[] dist, int[] parent, IntMinHeap heap, QueryBuffers q) {
+        if (q.distF[s] == Long.MAX_VALUE && q.distB[s] == Long.MAX_VALUE) {
+            q.touched[q.touchedCount++] = s;
+        }
+        dist[s] = 0;
+        parent[s] = -1;
+        heap.offer(s, 0);
+    }
+
+    private int[] unpack(int meet, QueryBuffers q) {
+        // Forward half: walk the parents back from the meeting state, then expand source -> meet.
+        IntList chain = new IntList();
+        int source = meet;
+        while (q.parentF[source] >= 0) {
+            chain.add(source);
+            source = q.parentF[source];
+        }
+        IntList states = new IntList();
+        states.add(source);
+        int at = source;
+        for (int i = chain.size - 1; i >= 0; i--) {
+            int x = chain.data[i];
+            expand(at, x, q.parentEdgeF[x], states);
+            at = x;
+        }
+        // Backward half: parents already point towards the target.
+        for (int x = meet; q.parentB[x] >= 0; x = q.parentB[x]) {
+            expand(x, q.parentB[x], q.parentEdgeB[x], states);
+        }
+
+        IntList stations = new IntList();
+        for (int i = 0; i < states.size; i++) {
+            int station = router.stationOf(states.data[i]);
+            if (stations.size == 0 || stations.data[stations.size - 1] != station) stations.add(station);
+        }
+        return Arrays.copyOf(stations.data, stations.size);
+    }
+
+    /**
+     * Appends the states after {@code a} up to and including {@code b}, where {@code e} is the
+     * upward edge joining them (stored at either end), expanding shortcuts recursively.
+     */
+    private void expand(int a, int b, int e, IntList out) {
+        int mid = upMiddles[e];
+        if (mid < 0) {
+            out.add(b);
+            return;
+        }
+        // The bypassed state was contracted first, so both halves are upward edges from it.
+        expand(a, mid, upEdge(mid, a), out);
+        expand(mid, b, upEdge(mid, b), out);
+    }
+
+    private int upEdge(int from, int target) {
+        for (int e = upOffsets[from]; e < upOffsets[from + 1]; e++) {
+            if (upTargets[e] == target) return e;
+        }
+        throw new IllegalStateException("Missing hierarchy edge " + from + " -> " + target);
+    }
+
+    private static class IntList {
+        int[] data = new int[16];
+        int size;
+
+        void add(int v) {
+            if (size == data.length) data = Arrays.copyOf(data, size * 2);
+            data[size++] = v;
+        }
+    }
+
+    // ---------------------------------------------------------------- persistence
+
+    /**
+     * Identifies the state graph and weights a hierarchy was built for, so a stored file is
+     * only reused for the same network.
+     */
+    private static long fingerprint(TimeOptimalRouter router, RoutingMode mode) {
+        MetroGraph graph = router.getGraph();
+        long h = 1125899906842597L;
+        h = 31 * h + mode.ordinal();
+        h = 31 * h + router.stateCount();
+        h = 31 * h + router.getTransferPenalty();
+        for (int u = 0; u < graph.size(); u++) {
+            for (int e = graph.firstEdge(u); e < graph.endEdge(u); e++) {
+                h = 31 * h + graph.target(e);
+                h = 31 * h + graph.line(e);
+                h = 31 * h + graph.minutes(e);
+            }
+        }
+        return h;
+    }
+
+    public void write(Path file) throws IOException {
+        Path tmp = file.resolveSibling(file.getFileName() + ".tmp");
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(tmp)))) {
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeLong(fingerprint(router, mode));
+            out.writeInt(rank.length);
+            out.writeInt(upTargets.length);
+            for (int v : rank) out.writeInt(v);
+            for (int v : upOffsets) out.writeInt(v);
+            for (int v : upTargets) out.writeInt(v);
+            for (int v : upWeights) out.writeInt(v);
+            for (int v : upMiddles) out.writeInt(v);
+        }
+        try {
+            Files.move(tmp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (AtomicMoveNotSupportedException e) {
+            Files.move(tmp, file, StandardCopyOption.REPLACE_EXISTING);
+        }
+    }
+
+    /**
+     * The header is checked with a plain read before the arrays are mapped, so a file for
+     * another network is passed over without a mapping that would keep Windows from
+     * replacing it.
+     *
+     * @return the stored hierarchy, or null if the file is missing or was built for a
+     *         different network or mode
+     */
+    public static ContractionHierarchy read(Path file, TimeOptimalRouter router, RoutingMode mode) throws IOException {
+        if (!Files.exists(file)) return null;
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            ByteBuffer header = ByteBuffer.allocate(HEADER);
+            while (header.hasRemaining()) {
+                if (channel.read(header, header.position()) < 0) return null;
+            }
+            if (header.getInt(0) != MAGIC || header.getInt(4) != VERSION) return null;
+            if (header.getLong(8) != fingerprint(router, mode)) return null;
+            int n = header.getInt(16);
+            int m = header.getInt(20);
+            if (n != router.stateCount()) return null;
+            MappedByteBuffer buf = channel.map(FileChannel.MapMode.READ_ONLY, HEADER, channel.size() - HEADER);
+            IntBuffer ints = buf.asIntBuffer();
+            int[] rank = new int[n];
+            int[] offsets = new int[n + 1];
+            int[] targets = new int[m];
+            int[] weights = new int[m];
+            int[] middles = new int[m];
+            ints.get(rank).get(offsets).get(targets).get(weights).get(middles);
+            return new ContractionHierarchy(router, mode, rank, offsets, targets, weights, middles);
+        }
+    }
+
+    /** Reads {@code file} when it matches the network, otherwise builds and stores a new hierarchy. */
+    public static ContractionHierarchy loadOrBuild(Path file, TimeOptimalRouter router, RoutingMode mode) {
+        try {
+            ContractionHierarchy stored = read(file, router, mode);
+            if (stored != null) return stored;
+        } catch (IOException | RuntimeException e) {
+            // Unreadable file: rebuild below.
+        }
+        ContractionHierarchy built = build(router, mode);
+        try {
+            built.write(file);
+        } catch (IOException e) {
+            System.err.println("Error saving contraction hierarchy: " + e.getMessage());
+        }
+        return built;
+    }
+}
@@ -0,0 +1,105 @@
+package solvexis.service;
+
+import solvexis.data.NetworkDefinition;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Track distance between stations from per-corridor prefix sums: for each line, the metres
+ * from its first station to each stop. The distance between two stations on one line is the
+ * difference of their prefix sums, so a route costs one lookup per leg however many stops
+ * each leg has. Each station's position on every line that serves it is kept in CSR form,
+ * like the edges of {@link MetroGraph}.
+ */
+public final class CorridorDistances {
+    private final MetroGraph graph;
+    private final int[][] prefixMeters;
+    private final int[] entryOffsets;
+    private final int[] entryLines;
+    private final int[] entryPositions;
+
+    public CorridorDistances(NetworkDefinition definition, MetroGraph graph) {
+        this.graph = graph;
+        int lineCount = definition.lineCount();
+        prefixMeters = new int[lineCount][];
+        int[] degree = new int[graph.size()];
+        for (int li = 0; li < lineCount; li++) {
+            List<String> line = definition.getLines().get(li);
+            int[] prefix = new int[line.size()];
+            for (int i = 1; i < prefix.length; i++) {
+                prefix[i] = prefix[i - 1] + definition.getSegmentMeters(li, i - 1);
+            }
+            prefixMeters[li] = prefix;
+            for (String name : line) degree[graph.id(name)]++;
+        }
+
+        entryOffsets = new int[graph.size() + 1];
+        for (int u = 0; u < graph.size(); u++) {
+            entryOffsets[u + 1] = entryOffsets[u] + degree[u];
+        }
+        entryLines = new int[entryOffsets[graph.size()]];
+        entryPositions = new int[entryLines.length];
+        int[] fill = Arrays.copyOf(entryOffsets, graph.size());
+        for (int li = 0; li < lineCount; li++) {
+            List<String> line = definition.getLines().get(li);
+            for (int i = 0; i < line.size(); i++) {
+                int slot = fill[graph.id(line.get(i))]++;
+                entryLines[slot] = li;
+                entryPositions[slot] = i;
+            }
+        }
+    }
+
+    /** @return index of {@code station} among the stops of {@code line}, or -1 if not served */
+    public int positionOn(int line, int station) {
+        for (int i = entryOffsets[station]; i < entryOffsets[station + 1]; i++) {
+            if (entryLines[i] == line) return entryPositions[i];
+        }
+        return -1;
+    }
+
+    /** @return metres along {@code line} between two of its stations, or -1 if either is off it */
+    public int metersAlong(int line, int from, int to) {
+        int a = positionOn(line, from);
+        int b = positionOn(line, to);
+        if (a < 0 || b < 0) return -1;
+        return Math.abs(prefixMeters[line][b] - prefixMeters[line][a]);
+    }
+
+    /** Track metres along the first {@code length} station ids of {@code path}, on the fewest-transfer lines. */
+    public int pathMeters(int[] path, int length) {
+        return pathMeters(path, graph.assignLines(path, length, NetworkSnapshot.TRANSFER_PENALTY));
+    }
+
+    /**
+     * Track metres along {@code path} riding the given line per hop, one prefix-sum lookup per
+     * leg. A leg that does not run straight along its line, as on a line that passes a station
+     * twice, is summed hop by hop instead.
+     */
+    public int pathMeters(int[] path, int[] lines) {
+        int meters = 0;
+        int legStart = 0;
+        for (int i = 0; i < lines.length; i++) {
+            if (i + 1 < lines.length && lines[i + 1] == lines[i] && lines[i] >= 0) continue;
+            meters += legMeters(path, lines[i], legStart, i + 1);
+            legStart = i + 1;
+        }
+        return meters;
+    }
+
+    private int legMeters(int[] path, int line, int from, int to) {
+        if (line >= 0) {
+            int a = positionOn(line, path[from]);
+            int b = positionOn(line, path[to]);
+            if (a >= 0 && b >= 0 && Math.abs(b - a) == to - from) {
+                return Math.abs(prefixMeters[line][b] - prefixMeters[line][a]);
+            }
+        }
+        int meters = 0;
+        for (int i = from; i < to; i++) {
+            int e = graph.edgeBetween(path[i], path[i + 1]);
+            if (e >= 0) meters += graph.meters(e);
+        }
+        return meters;
+    }
+}
@@ -0,0 +1,53 @@
+package solvexis.service;
+
+/**
+ * Immutable per-station platform crowd densities (PCDI, persons per m²) indexed by
+ * {@link MetroGraph} station id. {@link PlatformCrowdDensityService} publishes a new
+ * snapshot on every update, so routing reads one without locking.
+ */
+public final class CrowdSnapshot {
+    /** Densities up to this level (PCDI levels 1 and 2) carry no routing penalty. */
+    public static final double COMFORTABLE_PCDI = 2.0;
+    /** Default penalty weight: minutes added per person/m² above {@link #COMFORTABLE_PCDI}. */
+    public static final double DEFAULT_WEIGHT = 2.0;
+
+    private final MetroGraph graph;
+    private final double[] density;
+    private final long version;
+
+    CrowdSnapshot(MetroGraph graph, double[] density, long version) {
+        this.graph = graph;
+        this.density = density;
+        this.version = version;
+    }
+
+    public MetroGraph getGraph() {
+        return graph;
+    }
+
+    public long getVersion() {
+        return version;
+    }
+
+    public double density(int station) {
+        return density[station];
+    }
+
+    /**
+     * Whole-minute penalty per station for changing lines on its platforms:
+     * {@code weight} minutes per person/m² above {@link #COMFORTABLE_PCDI}, rounded.
+     */
+    public int[] penaltyMinutes(double weight) {
+        int[] penalty = new int[density.length];
+        for (int i = 0; i < density.length; i++) {
+            penalty[i] = (int) Math.round(weight * Math.max(0.0, density[i] - COMFORTABLE_PCDI));
+        }
+        return penalty;
+    }
+
+    CrowdSnapshot with(int station, double pcdi) {
+        double[] next = density.clone();
+        next[station] = pcdi;
+        return new CrowdSnapshot(graph, next, version + 1);
+    }
+}
@@ -0,0 +1,47 @@
+package solvexis.service;
+
+import java.time.LocalTime;
+
+/**
+ * Answer to "when should I leave between A and B": trip length for every departure in the
+ * window from one profile search, the departure with the shortest trip and the route taken
+ * then. Under {@link RoutingMode#CROWD_AWARE} trip lengths include the crowding penalty, so
+ * the best departure is the least crowded quick trip rather than merely the quickest.
+ */
+public final class DepartureProfile {
+    private final RoutingMode mode;
+    private final ArrivalProfile arrivals;
+    private final LocalTime bestDeparture;
+    private final RouteResult bestRoute;
+
+    DepartureProfile(RoutingMode mode, ArrivalProfile arrivals, LocalTime bestDeparture, RouteResult bestRoute) {
+        this.mode = mode;
+        this.arrivals = arrivals;
+        this.bestDeparture = bestDeparture;
+        this.bestRoute = bestRoute;
+    }
+
+    public RoutingMode getMode() {
+        return mode;
+    }
+
+    /** Arrival second (penalties included under CROWD_AWARE) per departure second. */
+    public ArrivalProfile getArrivals() {
+        return arrivals;
+    }
+
+    public LocalTime getBestDeparture() {
+        return bestDeparture;
+    }
+
+    /** @return the route when leaving at {@link #getBestDeparture()}, with its real minutes */
+    public RouteResult getBestRoute() {
+        return bestRoute;
+    }
+
+    /** @return trip minutes, rounded up, when leaving at {@code departAt} within the window */
+    public int minutesIfLeavingAt(LocalTime departAt) {
+        double depart = departAt.toSecondOfDay();
+        return (int) Math.ceil((arrivals.arrivalAt(depart) - depart) / 60.0 - 1e-9);
+    }
+}
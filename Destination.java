@@ -0,0 +1,35 @@
+package solvexis.service.transport;
+
+import java.util.*;
+
+/**
+ * Where a rider is finally headed, beyond the metro: a place name and the road distance to it
+ * from each station it can be reached from. Any of those stations can serve as the exit.
+ */
+public final class Destination {
+    private final String name;
+    private final Map<String, Double> distanceFromStation;
+
+    /**
+     * @param distanceFromStation road kilometres from each candidate exit station
+     */
+    public Destination(String name, Map<String, Double> distanceFromStation) {
+        if (distanceFromStation.isEmpty())
+            throw new IllegalArgumentException("Destination needs at least one nearby station");
+        for (double km : distanceFromStation.values()) {
+            if (!(km >= 0))
+                throw new IllegalArgumentException("Distances must be non-negative");
+        }
+        this.name = name;
+        this.distanceFromStation = Collections.unmodifiableMap(new LinkedHashMap<>(distanceFromStation));
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    /** @return road kilometres to this destination per candidate exit station */
+    public Map<String, Double> getDistanceFromStation() {
+        return distanceFromStation;
+    }
+}
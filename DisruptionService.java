@@ -0,0 +1,94 @@
+package solvexis.service;
+
+import solvexis.exceptions.InvalidRouteException;
+import solvexis.exceptions.StationNotFoundException;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * Runtime closures of stations and segments. Every change publishes a new immutable
+ * {@link ClosureSet} in one volatile write, so a query that reads {@link #current()} once
+ * sees a single consistent version for its whole search. Listeners (route caches) are told
+ * the previous and new set and drop only the routes the change affects.
+ */
+public class DisruptionService {
+    /** Notified after each published change, on the thread that made it. */
+    public interface Listener {
+        void closuresChanged(ClosureSet previous, ClosureSet current);
+    }
+
+    private final MetroGraph graph;
+    private final List<Listener> listeners = new CopyOnWriteArrayList<>();
+    private volatile ClosureSet current;
+
+    public DisruptionService(MetroGraph graph) {
+        this.graph = graph;
+        this.current = ClosureSet.none(graph);
+    }
+
+    public ClosureSet current() {
+        return current;
+    }
+
+    public void addListener(Listener listener) {
+        listeners.add(listener);
+    }
+
+    public void removeListener(Listener listener) {
+        listeners.remove(listener);
+    }
+
+    public ClosureSet closeStation(String name) throws StationNotFoundException {
+        return setStation(name, true);
+    }
+
+    public ClosureSet reopenStation(String name) throws StationNotFoundException {
+        return setStation(name, false);
+    }
+
+    /** Closes the segment between two adjacent stations on every line that runs it. */
+    public ClosureSet closeSegment(String a, String b) throws StationNotFoundException, InvalidRouteException {
+        return setSegment(a, b, true);
+    }
+
+    public ClosureSet reopenSegment(String a, String b) throws StationNotFoundException, InvalidRouteException {
+        return setSegment(a, b, false);
+    }
+
+    private ClosureSet setStation(String name, boolean closed) throws StationNotFoundException {
+        int id = graph.id(name);
+        if (id < 0)
+            throw new StationNotFoundException("Station not found: " + name);
+        synchronized (this) {
+            if (current.isStationClosed(id) == closed) return current;
+            return publish(current.withStation(id, closed));
+        }
+    }
+
+    private ClosureSet setSegment(String a, String b, boolean closed)
+            throws StationNotFoundException, InvalidRouteException {
+        int from = graph.id(a);
+        int to = graph.id(b);
+        if (from < 0)
+            throw new StationNotFoundException("Station not found: " + a);
+        if (to < 0)
+            throw new StationNotFoundException("Station not found: " + b);
+        int edge = graph.edgeBetween(from, to);
+        if (edge < 0)
+            throw new InvalidRouteException("No direct segment between " + a + " and " + b);
+        synchronized (this) {
+            if (current.isEdgeClosed(edge) == closed) return current;
+            return publish(current.withSegment(from, to, closed));
+        }
+    }
+
+    private ClosureSet publish(ClosureSet next) {
+        ClosureSet previous = current;
+        current = next;
+        for (Listener listener : listeners) {
+            listener.closuresChanged(previous, next);
+        }
+        return next;
+    }
+}
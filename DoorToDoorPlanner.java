@@ -0,0 +1,191 @@
+package solvexis.service;
+
+import solvexis.exceptions.InvalidRouteException;
+import solvexis.exceptions.StationNotFoundException;
+import solvexis.model.GeoPoint;
+import solvexis.service.transport.Destination;
+import solvexis.service.transport.LastMileService;
+import solvexis.service.transport.LastMileService.TransportOption;
+import solvexis.service.transport.TransportMode;
+import java.time.LocalTime;
+import java.util.*;
+
+/**
+ * Plans a whole trip from a station to a place beyond the metro, choosing the exit station
+ * and the last-mile {@link TransportMode} together. One {@link IsochroneSearch} from the
+ * origin settles the candidate exits nearest first; each exit is combined with every mode as
+ * it is settled, and the search stops as soon as no exit still waiting could join the
+ * fare/time trade-off found so far, even with the quickest and cheapest ride from it.
+ *
+ * <p>Metro legs follow {@link RoutingMode#FASTEST}. Last-mile fares are priced for the time
+ * the rider reaches each exit.
+ */
+public class DoorToDoorPlanner {
+    /** Exits farther than this by road from the destination are not considered. */
+    public static final double MAX_EXIT_KM = 15.0;
+    /** Only this many exits, nearest to the destination first, are searched. */
+    public static final int MAX_EXITS = 8;
+
+    private final MetroRoutePlanner planner;
+    private final LastMileService lastMile;
+    private final NetworkSnapshot network;
+    private final MetroGraph graph;
+    private final ThreadLocal<IsochroneSearch> searches;
+
+    public DoorToDoorPlanner(MetroRoutePlanner planner, LastMileService lastMile) {
+        this.planner = planner;
+        this.lastMile = lastMile;
+        this.network = planner.getNetwork();
+        this.graph = network.getGraph();
+        TimeOptimalRouter router = network.getFastestRouter();
+        this.searches = ThreadLocal.withInitial(() -> new IsochroneSearch(router));
+    }
+
+    /**
+     * Destination at {@code point} whose candidate exits are the {@link #MAX_EXITS} stations
+     * nearest to it within {@link #MAX_EXIT_KM} by road, from the network's
+     * {@link StationIndex}.
+     *
+     * @throws InvalidRouteException if no station is that close
+     */
+    public Destination destinationAt(String name, GeoPoint point) throws InvalidRouteException {
+        StationIndex index = network.getStationIndex();
+        Map<String, Double> distances = new LinkedHashMap<>();
+        for (int station : index.nearest(point, MAX_EXITS)) {
+            double km = LastMileService.estimateRoadKm(index.location(station), point);
+            if (km > MAX_EXIT_KM) break;
+            distances.put(graph.name(station), km);
+        }
+        if (distances.isEmpty())
+            throw new InvalidRouteException("No station within " + MAX_EXIT_KM + " km of " + name);
+        return new Destination(name, distances);
+    }
+
+    public DoorToDoorRoutes plan(String origin, Destination destination)
+            throws StationNotFoundException, InvalidRouteException {
+        return plan(origin, destination, LocalTime.now());
+    }
+
+    /**
+     * Every combination of exit station and last-mile mode that no other beats on both total
+     * minutes and total fare, fastest first, for a rider entering {@code origin} at
+     * {@code departAt}. The origin itself is never an exit.
+     */
+    public DoorToDoorRoutes plan(String origin, Destination destination, LocalTime departAt)
+            throws StationNotFoundException, InvalidRouteException {
+        int from = graph.id(origin);
+        if (from < 0)
+            throw new StationNotFoundException("Start station not found: " + origin);
+        ClosureSet closures = network.getDisruptions().current();
+        if (closures.isStationClosed(from))
+            throw new InvalidRouteException("Station is closed: " + origin);
+        List<Exit> exits = exits(from, destination, closures);
+        if (exits.isEmpty())
+            throw new InvalidRouteException("No open station near " + destination.getName());
+
+        List<Combination> front = new ArrayList<>();
+        double minMetroFare = NetworkSnapshot.fareForStationCount(2);
+        searches.get().search(from, Integer.MAX_VALUE, closures.isEmpty() ? null : closures, (u, minutes, count) -> {
+            for (Exit exit : exits) {
+                if (exit.station != u) continue;
+                exit.settled = true;
+                double metroFare = NetworkSnapshot.fareForStationCount(count);
+                LocalTime arrive = departAt.plusMinutes(minutes);
+                for (TransportOption ride : lastMile.getAvailableOptions(destination.getName(), exit.km, arrive)) {
+                    offer(front, new Combination(exit, ride, minutes + ride.getEstimatedMinutes(),
+                        metroFare + ride.getFare()));
+                }
+            }
+            for (Exit exit : exits) {
+                if (!exit.settled && !dominated(front, minutes + exit.minMinutes, minMetroFare + exit.minFare)) {
+                    return true;
+                }
+            }
+            return false;
+        });
+        if (front.isEmpty())
+            throw new InvalidRouteException("No route found between " + origin + " and " + destination.getName());
+
+        front.sort(Comparator.comparingInt((Combination c) -> c.minutes).thenComparingDouble(c -> c.fare));
+        Map<String, RouteResult> routes = new HashMap<>();
+        List<DoorToDoorRoutes.Option> options = new ArrayList<>(front.size());
+        for (Combination c : front) {
+            RouteResult route = routes.get(c.exit.name);
+            if (route == null) {
+                route = planner.planJourney(origin, c.exit.name, RoutingMode.FASTEST);
+                routes.put(c.exit.name, route);
+            }
+            options.add(new DoorToDoorRoutes.Option(route, c.ride));
+        }
+        return new DoorToDoorRoutes(destination.getName(), options);
+    }
+
+    /**
+     * The open stations the destination can be reached from, nearest first and at most
+     * {@link #MAX_EXITS}, each with the quickest and cheapest last-mile ride any mode offers.
+     */
+    private List<Exit> exits(int from, Destination destination, ClosureSet closures) throws StationNotFoundException {
+        List<Exit> exits = new ArrayList<>();
+        for (Map.Entry<String, Double> entry : destination.getDistanceFromStation().entrySet()) {
+            int station = graph.id(entry.getKey());
+            if (station < 0)
+                throw new StationNotFoundException("Exit station not found: " + entry.getKey());
+            double km = entry.getValue();
+            if (station == from || km > MAX_EXIT_KM || closures.isStationClosed(station)) continue;
+            int minMinutes = Integer.MAX_VALUE;
+            double minFare = Double.MAX_VALUE;
+            for (TransportMode mode : TransportMode.values()) {
+                minMinutes = Math.min(minMinutes, lastMile.estimateMinutes(mode, km));
+                minFare = Math.min(minFare, mode.calculateFare(km, false));
+            }
+            exits.add(new Exit(station, graph.name(station), km, minMinutes, minFare));
+        }
+        exits.sort(Comparator.comparingDouble(e -> e.km));
+        return exits.size() > MAX_EXITS ? new ArrayList<>(exits.subList(0, MAX_EXITS)) : exits;
+    }
+
+    private static boolean dominated(List<Combination> front, int minutes, double fare) {
+        for (Combination c : front) {
+            if (c.minutes <= minutes && c.fare <= fare) return true;
+        }
+        return false;
+    }
+
+    /** Adds {@code candidate} unless matched or beaten, dropping whatever it beats. */
+    private static void offer(List<Combination> front, Combination candidate) {
+        if (dominated(front, candidate.minutes, candidate.fare)) return;
+        front.removeIf(c -> candidate.minutes <= c.minutes && candidate.fare <= c.fare);
+        front.add(candidate);
+    }
+
+    private static final class Exit {
+        final int station;
+        final String name;
+        final double km;
+        final int minMinutes;
+        final double minFare;
+        boolean settled;
+
+        Exit(int station, String name, double km, int minMinutes, double minFare) {
+            this.station = station;
+            this.name = name;
+            this.km = km;
+            this.minMinutes = minMinutes;
+            this.minFare = minFare;
+        }
+    }
+
+    private static final class Combination {
+        final Exit exit;
+        final TransportOption ride;
+        final int minutes;
+        final double fare;
+
+        Combination(Exit exit, TransportOption ride, int minutes, double fare) {
+            this.exit = exit;
+            this.ride = ride;
+            this.minutes = minutes;
+            this.fare = fare;
+        }
+    }
+}
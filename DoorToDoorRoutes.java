@@ -0,0 +1,78 @@
+package solvexis.service;
+
+import solvexis.service.transport.LastMileService.TransportOption;
+import java.util.*;
+
+/**
+ * Door-to-door trips from one {@link DoorToDoorPlanner} search: a metro ride to some exit
+ * station followed by a last-mile ride. No option is matched or beaten on both total time and
+ * total fare by another; options are ordered fastest first.
+ */
+public final class DoorToDoorRoutes {
+    private final String destination;
+    private final List<Option> options;
+
+    /** A metro route to an exit station and the ride from there to the destination. */
+    public static final class Option {
+        private final RouteResult metroRoute;
+        private final TransportOption lastMile;
+
+        public Option(RouteResult metroRoute, TransportOption lastMile) {
+            this.metroRoute = metroRoute;
+            this.lastMile = lastMile;
+        }
+
+        public RouteResult getMetroRoute() {
+            return metroRoute;
+        }
+
+        public TransportOption getLastMile() {
+            return lastMile;
+        }
+
+        public String getExitStation() {
+            return metroRoute.getEnd();
+        }
+
+        public int getMinutes() {
+            return metroRoute.getMinutes() + lastMile.getEstimatedMinutes();
+        }
+
+        public double getFare() {
+            return metroRoute.getFare() + lastMile.getFare();
+        }
+
+        @Override
+        public String toString() {
+            return String.format("%s to %s, then %s: %d min, ₹%.0f", metroRoute.getStart(), getExitStation(),
+                lastMile.getMode().getDisplayName(), getMinutes(), getFare());
+        }
+    }
+
+    public DoorToDoorRoutes(String destination, List<Option> options) {
+        this.destination = destination;
+        this.options = Collections.unmodifiableList(new ArrayList<>(options));
+    }
+
+    public String getDestination() {
+        return destination;
+    }
+
+    public List<Option> getOptions() {
+        return options;
+    }
+
+    public boolean isEmpty() {
+        return options.isEmpty();
+    }
+
+    /** @return the option with the fewest minutes, or null if there are none */
+    public Option fastest() {
+        return options.isEmpty() ? null : options.get(0);
+    }
+
+    /** @return the option with the lowest fare, or null if there are none */
+    public Option cheapest() {
+        return options.isEmpty() ? null : options.get(options.size() - 1);
+    }
+}
@@ -1,13 +1,12 @@
 package solvexis.service;
 
+import solvexis.data.LegacyPage;
 import solvexis.data.TripHistory;
+import solvexis.data.TripPage;
 import solvexis.model.Station;
 import solvexis.service.transport.LastMileService;
 
 import java.io.IOException;
-import java.nio.file.Files;
-import java.nio.file.Path;
-import java.nio.file.Paths;
 import java.util.List;
 
 public class FileHandler {
@@ -20,39 +19,43 @@ public class FileHandler {
         TripHistory.saveCompleteTripForUser(userName, route, lastMile, destination, metroFare);
     }
 
+    /** The user's live stats, shared with every later {@link #recordTrip}. */
     public static UserStatsService loadStats(String userName) {
-        return new UserStatsService(userName);
+        return UserStatsManager.get().statsFor(userName);
     }
 
     public static void recordTrip(String userName,
                                   List<Station> route,
                                   double lastMileDistance,
                                   double co2Saved) {
-        UserStatsService stats = new UserStatsService(userName);
-        stats.recordTrip(route, lastMileDistance, co2Saved);
+        UserStatsManager.get().recordTrip(userName, route, lastMileDistance, co2Saved);
     }
 
-    public static String loadTripHistory(String userName) {
-        String fileName;
-        if (userName != null && !userName.trim().isEmpty()) {
-            fileName = "trip_history_" + userName.trim() + ".txt";
-        } else {
-            fileName = "trip_history.txt";
-        }
-        try {
-            Path p = Paths.get(fileName);
-            if (!Files.exists(p)) {
-                return "No trip history yet.";
-            }
-            List<String> lines = Files.readAllLines(p);
-            StringBuilder sb = new StringBuilder();
-            for (String l : lines) {
-                sb.append(l).append("\n");
-            }
-            return sb.toString();
-        } catch (IOException e) {
-            return "Error reading trip history: " + e.getMessage();
-        }
+    /** Saves the user's stats now and drops them from memory, as on logout. */
+    public static void releaseStats(String userName) {
+        UserStatsManager.get().release(userName);
+    }
+
+    /** Trips shown per page of history. */
+    public static final int HISTORY_PAGE_SIZE = 20;
+
+    /**
+     * @param newer the page shown last, or null for the newest page
+     * @return the next {@link #HISTORY_PAGE_SIZE} trips back in time, newest first
+     */
+    public static TripPage loadTripPage(String userName, TripPage newer) throws IOException {
+        if (newer == null) return TripHistory.newestTrips(userName, HISTORY_PAGE_SIZE);
+        return TripHistory.olderTrips(userName, newer, HISTORY_PAGE_SIZE);
+    }
+
+    /**
+     * Pages through text history from before the trip log, which follows its oldest page.
+     *
+     * @param newer the legacy page shown last, or null for the newest one
+     */
+    public static LegacyPage loadLegacyPage(String userName, LegacyPage newer) throws IOException {
+        if (newer == null) return TripHistory.newestLegacyTrips(userName, HISTORY_PAGE_SIZE);
+        return TripHistory.olderLegacyTrips(userName, newer, HISTORY_PAGE_SIZE);
     }
 }
 
@@ -0,0 +1,65 @@
+package solvexis.model;
+
+import java.util.Locale;
+
+/** A position on the earth in decimal degrees (WGS 84). */
+public final class GeoPoint {
+    public static final double EARTH_RADIUS_KM = 6371.0088;
+
+    private final double latitude;
+    private final double longitude;
+
+    public GeoPoint(double latitude, double longitude) {
+        if (!(latitude >= -90 && latitude <= 90) || !(longitude >= -180 && longitude <= 180))
+            throw new IllegalArgumentException("Coordinates out of range: " + latitude + ", " + longitude);
+        this.latitude = latitude;
+        this.longitude = longitude;
+    }
+
+    /** @return the point written as "latitude, longitude", or null if {@code text} is not one */
+    public static GeoPoint parse(String text) {
+        String[] parts = text.split(",");
+        if (parts.length != 2) return null;
+        try {
+            return new GeoPoint(Double.parseDouble(parts[0].trim()), Double.parseDouble(parts[1].trim()));
+        } catch (IllegalArgumentException e) {
+            return null;
+        }
+    }
+
+    public double getLatitude() {
+        return latitude;
+    }
+
+    public double getLongitude() {
+        return longitude;
+    }
+
+    /** Great-circle distance in kilometres (haversine). */
+    public double distanceKm(GeoPoint other) {
+        double dLat = Math.toRadians(other.latitude - latitude);
+        double dLon = Math.toRadians(other.longitude - longitude);
+        double a = Math.sin(dLat / 2) * Math.sin(dLat / 2)
+            + Math.cos(Math.toRadians(latitude)) * Math.cos(Math.toRadians(other.latitude))
+            * Math.sin(dLon / 2) * Math.sin(dLon / 2);
+        return 2 * EARTH_RADIUS_KM * Math.asin(Math.min(1, Math.sqrt(a)));
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (!(o instanceof GeoPoint)) return false;
+        GeoPoint p = (GeoPoint) o;
+        return Double.compare(latitude, p.latitude) == 0 && Double.compare(longitude, p.longitude) == 0;
+    }
+
+    @Override
+    public int hashCode() {
+        return 31 * Double.hashCode(latitude) + Double.hashCode(longitude);
+    }
+
+    @Override
+    public String toString() {
+        return String.format(Locale.ROOT, "%.6f, %.6f", latitude, longitude);
+    }
+}
@@ -0,0 +1,105 @@
+package solvexis.service;
+
+import java.util.Arrays;
+
+/**
+ * Indexed binary min-heap over int ids {@code 0..capacity-1} with long keys. Keeps a
+ * position table so {@link #offer} can lower the key of an id already in the heap.
+ * Nothing is boxed and nothing is allocated after construction.
+ */
+public class IntMinHeap {
+    private final int[] heap;
+    private final int[] pos;
+    private final long[] keys;
+    private int size;
+
+    public IntMinHeap(int capacity) {
+        heap = new int[capacity];
+        pos = new int[capacity];
+        keys = new long[capacity];
+        Arrays.fill(pos, -1);
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public void clear() {
+        for (int i = 0; i < size; i++) {
+            pos[heap[i]] = -1;
+        }
+        size = 0;
+    }
+
+    /**
+     * Inserts {@code id} with {@code key}, or lowers its key if it is already queued.
+     *
+     * @return false if the id was queued with a key that is not larger
+     */
+    public boolean offer(int id, long key) {
+        int i = pos[id];
+        if (i < 0) {
+            i = size++;
+            heap[i] = id;
+            pos[id] = i;
+        } else if (keys[id] <= key) {
+            return false;
+        }
+        keys[id] = key;
+        siftUp(i);
+        return true;
+    }
+
+    public long peekKey() {
+        return keys[heap[0]];
+    }
+
+    public int poll() {
+        int top = heap[0];
+        pos[top] = -1;
+        size--;
+        if (size > 0) {
+            heap[0] = heap[size];
+            pos[heap[0]] = 0;
+            siftDown(0);
+        }
+        return top;
+    }
+
+    private void siftUp(int i) {
+        int id = heap[i];
+        long key = keys[id];
+        while (i > 0) {
+            int parent = (i - 1) >>> 1;
+            int p = heap[parent];
+            if (keys[p] <= key) break;
+            heap[i] = p;
+            pos[p] = i;
+            i = parent;
+        }
+        heap[i] = id;
+        pos[id] = i;
+    }
+
+    private void siftDown(int i) {
+        int id = heap[i];
+        long key = keys[id];
+        int half = size >>> 1;
+        while (i < half) {
+            int child = 2 * i + 1;
+            int right = child + 1;
+            if (right < size && keys[heap[right]] < keys[heap[child]]) child = right;
+            int c = heap[child];
+            if (key <= keys[c]) break;
+            heap[i] = c;
+            pos[c] = i;
+            i = child;
+        }
+        heap[i] = id;
+        pos[id] = i;
+    }
+}
@@ -0,0 +1,72 @@
+package solvexis.service;
+
+/**
+ * Stations reachable from one source within a time budget, as primitive arrays indexed by
+ * {@link MetroGraph} station id. Times follow {@link RoutingMode#FASTEST}: riding minutes
+ * plus the transfer penalty per change of lines.
+ */
+public final class Isochrone {
+    public static final int UNREACHED = -1;
+
+    private final int source;
+    private final int budgetMinutes;
+    private final int[] minutes;
+    private final int[] stationCounts;
+    private final int[] order;
+
+    Isochrone(int source, int budgetMinutes, int[] minutes, int[] stationCounts, int[] order) {
+        this.source = source;
+        this.budgetMinutes = budgetMinutes;
+        this.minutes = minutes;
+        this.stationCounts = stationCounts;
+        this.order = order;
+    }
+
+    public int getSource() {
+        return source;
+    }
+
+    public int getBudgetMinutes() {
+        return budgetMinutes;
+    }
+
+    /** @return minutes to {@code station}, or {@link #UNREACHED} if not within the budget */
+    public int minutesTo(int station) {
+        return minutes[station];
+    }
+
+    public boolean isReachable(int station) {
+        return minutes[station] != UNREACHED;
+    }
+
+    /** Number of stations within the budget, the source included. */
+    public int reachableCount() {
+        return order.length;
+    }
+
+    /** @return the reachable station ids, nearest first */
+    public int[] reachableStations() {
+        return order.clone();
+    }
+
+    /** @return minutes per station id; {@link #UNREACHED} beyond the budget */
+    public int[] minutesByStation() {
+        return minutes.clone();
+    }
+
+    public boolean hasFares() {
+        return stationCounts != null;
+    }
+
+    /**
+     * @return fare of the fastest route to {@code station}
+     * @throws IllegalStateException if fares were not requested or the station is unreached
+     */
+    public double fareTo(int station) {
+        if (stationCounts == null)
+            throw new IllegalStateException("Isochrone was computed without fares");
+        if (minutes[station] == UNREACHED)
+            throw new IllegalStateException("Station is not reachable within the budget");
+        return NetworkSnapshot.fareForStationCount(stationCounts[station]);
+    }
+}
@@ -0,0 +1,100 @@
+package solvexis.service;
+
+import solvexis.exceptions.InvalidRouteException;
+import solvexis.exceptions.StationNotFoundException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * Reachability queries on the shared network: every station within a time budget of one
+ * source, or isochrones for many sources at once on a {@link ForkJoinPool}. Each worker
+ * thread keeps its own {@link IsochroneSearch}, and every query avoids the closures in force
+ * when it starts.
+ */
+public class IsochronePlanner {
+    private static final int LEAF_SIZE = 8;
+
+    private final NetworkSnapshot network;
+    private final MetroGraph graph;
+    private final ForkJoinPool pool;
+    private final ThreadLocal<IsochroneSearch> searches;
+
+    public IsochronePlanner(NetworkSnapshot network) {
+        this(network, ForkJoinPool.commonPool());
+    }
+
+    public IsochronePlanner(NetworkSnapshot network, ForkJoinPool pool) {
+        this.network = network;
+        this.graph = network.getGraph();
+        this.pool = pool;
+        TimeOptimalRouter router = network.getFastestRouter();
+        this.searches = ThreadLocal.withInitial(() -> new IsochroneSearch(router));
+    }
+
+    /** Every station reachable from {@code station} within {@code budgetMinutes}. */
+    public Isochrone from(String station, int budgetMinutes, boolean withFares)
+            throws StationNotFoundException, InvalidRouteException {
+        int source = graph.id(station);
+        if (source < 0)
+            throw new StationNotFoundException("Start station not found: " + station);
+        ClosureSet closures = network.getDisruptions().current();
+        if (closures.isStationClosed(source))
+            throw new InvalidRouteException("Station is closed: " + station);
+        return searches.get().from(source, budgetMinutes, withFares, closures.isEmpty() ? null : closures);
+    }
+
+    /**
+     * Isochrones for many source station ids in parallel, in the order of {@code sources}. A
+     * closed source yields an isochrone that reaches nothing.
+     */
+    public Isochrone[] fromAll(int[] sources, int budgetMinutes, boolean withFares) {
+        Isochrone[] out = new Isochrone[sources.length];
+        ClosureSet closures = network.getDisruptions().current();
+        pool.invoke(new Slice(sources, out, budgetMinutes, withFares, closures.isEmpty() ? null : closures,
+            0, sources.length));
+        return out;
+    }
+
+    private Isochrone resolve(int source, int budgetMinutes, boolean withFares, ClosureSet closures) {
+        if (closures != null && closures.isStationClosed(source)) {
+            return searches.get().from(source, -1, withFares, closures);
+        }
+        return searches.get().from(source, budgetMinutes, withFares, closures);
+    }
+
+    private class Slice extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+
+        private final int[] sources;
+        private final Isochrone[] out;
+        private final int budgetMinutes;
+        private final boolean withFares;
+        private final ClosureSet closures;
+        private final int lo;
+        private final int hi;
+
+        Slice(int[] sources, Isochrone[] out, int budgetMinutes, boolean withFares, ClosureSet closures,
+              int lo, int hi) {
+            this.sources = sources;
+            this.out = out;
+            this.budgetMinutes = budgetMinutes;
+            this.withFares = withFares;
+            this.closures = closures;
+            this.lo = lo;
+            this.hi = hi;
+        }
+
+        @Override
+        protected void compute() {
+            if (hi - lo <= LEAF_SIZE) {
+                for (int i = lo; i < hi; i++) {
+                    out[i] = resolve(sources[i], budgetMinutes, withFares, closures);
+                }
+                return;
+            }
+            int mid = (lo + hi) >>> 1;
+            invokeAll(new Slice(sources, out, budgetMinutes, withFares, closures, lo, mid),
+                new Slice(sources, out, budgetMinutes, withFares, closures, mid, hi));
+        }
+    }
+}
@@ -0,0 +1,113 @@
+package solvexis.service;
+
+import java.util.Arrays;
+
+/**
+ * One-to-all Dijkstra over the (station, line) states of {@link TimeOptimalRouter} that stops
+ * as soon as the next state lies beyond the time budget. Scratch arrays are allocated once and
+ * reset through a touched list, so a small budget on a large network costs only what it
+ * reaches. One instance per thread.
+ */
+public class IsochroneSearch {
+    private final TimeOptimalRouter router;
+    private final MetroGraph graph;
+    private final long[] dist;
+    private final int[] hops;
+    private final int[] touched;
+    private final int[] order;
+    private final boolean[] settled;
+    private final int[] settledStations;
+    private int touchedCount;
+    private int settledCount;
+    private final IntMinHeap heap;
+
+    public IsochroneSearch(TimeOptimalRouter router) {
+        this.router = router;
+        this.graph = router.getGraph();
+        int states = router.stateCount();
+        dist = new long[states];
+        Arrays.fill(dist, Long.MAX_VALUE);
+        hops = new int[states];
+        touched = new int[states];
+        order = new int[graph.size()];
+        settled = new boolean[graph.size()];
+        settledStations = new int[graph.size()];
+        heap = new IntMinHeap(states);
+    }
+
+    /** Receives each station as the search settles it, nearest first. */
+    interface Visitor {
+        /**
+         * @param stationCount stations on the fastest route, both ends included
+         * @return false to stop the search
+         */
+        boolean settled(int station, int minutes, int stationCount);
+    }
+
+    /**
+     * @param withFares also record the station count of each fastest route, for fares
+     * @param closures  closed elements to avoid, or null
+     */
+    public Isochrone from(int source, int budgetMinutes, boolean withFares, ClosureSet closures) {
+        int[] minutes = new int[graph.size()];
+        Arrays.fill(minutes, Isochrone.UNREACHED);
+        int[] stationCounts = withFares ? new int[graph.size()] : null;
+        int[] reached = new int[1];
+        search(source, budgetMinutes, closures, (station, d, count) -> {
+            minutes[station] = d;
+            if (stationCounts != null) stationCounts[station] = count;
+            order[reached[0]++] = station;
+            return true;
+        });
+        return new Isochrone(source, budgetMinutes, minutes, stationCounts, Arrays.copyOf(order, reached[0]));
+    }
+
+    /**
+     * Settles stations nearest first until the budget is spent or {@code visitor} asks to
+     * stop, handing each to {@code visitor} once.
+     */
+    void search(int source, int budgetMinutes, ClosureSet closures, Visitor visitor) {
+        heap.clear();
+        for (int s = router.firstState(source); s < router.endState(source); s++) {
+            relax(s, 0, 0);
+        }
+        while (!heap.isEmpty() && heap.peekKey() <= budgetMinutes) {
+            long d = heap.peekKey();
+            int s = heap.poll();
+            int u = router.stationOf(s);
+            if (!settled[u]) {
+                settled[u] = true;
+                settledStations[settledCount++] = u;
+                if (!visitor.settled(u, (int) d, hops[s] + 1)) break;
+            }
+            int line = router.lineOf(s);
+            for (int e = graph.firstEdge(u); e < graph.endEdge(u); e++) {
+                if (graph.line(e) != line || (closures != null && closures.blocksEdge(e))) continue;
+                relax(router.edgeTargetState(e), d + graph.minutes(e), hops[s] + 1);
+            }
+            long transfer = d + router.getTransferPenalty();
+            for (int t = router.firstState(u); t < router.endState(u); t++) {
+                if (t != s) relax(t, transfer, hops[s]);
+            }
+        }
+
+        for (int i = 0; i < touchedCount; i++) {
+            dist[touched[i]] = Long.MAX_VALUE;
+        }
+        touchedCount = 0;
+        for (int i = 0; i < settledCount; i++) {
+            settled[settledStations[i]] = false;
+        }
+        settledCount = 0;
+    }
+
+    private void relax(int state, long nd, int h) {
+        if (nd >= dist[state]) return;
+        if (dist[state] == Long.MAX_VALUE) {
+            touched[touchedCount++] = state;
+        }
+        dist[state] = nd;
+        hops[state] = h;
+        heap.offer(state, nd);
+    }
+}
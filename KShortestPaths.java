@@ -0,0 +1,295 @@
+package solvexis.service;
+
+import java.util.*;
+
+/**
+ * Yen's k-shortest loopless station paths over the (station, line) state graph of
+ * {@link TimeOptimalRouter}, so transfers are charged inside every spur search rather than
+ * after it.
+ *
+ * <p>One full Dijkstra from the target gives every state its exact distance to the target.
+ * Spur searches are A* on those distances: the bans Yen adds only lengthen paths, so the
+ * distances stay admissible, and where the ban does not touch the shortest-path tree the
+ * search walks straight down it. Distance, predecessor and ban arrays are allocated once per
+ * query and reset through touched lists between spurs.
+ */
+public class KShortestPaths {
+    private static final int TIE_BITS = 21;
+    private static final long TIE_MASK = (1L << TIE_BITS) - 1;
+
+    private final TimeOptimalRouter router;
+    private final MetroGraph graph;
+    private final boolean timed;
+
+    private final long[] toTarget;
+    private final long[] dist;
+    private final int[] prev;
+    private final IntMinHeap heap;
+    private final int[] touched;
+    private int touchedCount;
+    private final boolean[] bannedStation;
+    private final boolean[] bannedNext;
+    private int target;
+
+    /**
+     * @param mode {@link RoutingMode#FASTEST} ranks by minutes plus transfer penalties,
+     *             {@link RoutingMode#FEWEST_STATIONS} by the number of stops;
+     *             {@link RoutingMode#CROWD_AWARE} ranks like FASTEST
+     */
+    public KShortestPaths(TimeOptimalRouter router, RoutingMode mode) {
+        this.router = router;
+        this.graph = router.getGraph();
+        this.timed = mode != RoutingMode.FEWEST_STATIONS;
+        int states = router.stateCount();
+        toTarget = new long[states];
+        dist = new long[states];
+        Arrays.fill(dist, Long.MAX_VALUE);
+        prev = new int[states];
+        heap = new IntMinHeap(states);
+        touched = new int[states];
+        bannedStation = new boolean[graph.size()];
+        bannedNext = new boolean[graph.size()];
+    }
+
+    private long rideCost(int edge) {
+        return timed ? graph.minutes(edge) : 1;
+    }
+
+    private long transferCost() {
+        return timed ? router.getTransferPenalty() : 0;
+    }
+
+    /**
+     * @param closures closed elements to avoid, or null
+     * @return up to {@code k} loopless station paths from {@code from} to {@code to}, cheapest first
+     */
+    public List<int[]> find(int from, int to, int k, ClosureSet closures) {
+        List<int[]> accepted = new ArrayList<>();
+        if (k <= 0) return accepted;
+        distancesToTarget(to, closures);
+
+        int[] first = spur(new int[]{from}, 1, closures);
+        if (first == null) return accepted;
+        accepted.add(first);
+
+        PriorityQueue<Candidate> candidates = new PriorityQueue<>();
+        Set<PathKey> seen = new HashSet<>();
+        seen.add(new PathKey(first));
+
+        while (accepted.size() < k) {
+            int[] last = accepted.get(accepted.size() - 1);
+            for (int i = 0; i < last.length - 1; i++) {
+                // Root path last[0..i]; no accepted path sharing it may take the same next hop.
+                for (int[] p : accepted) {
+                    if (p.length > i + 1 && sharesPrefix(p, last, i + 1)) bannedNext[p[i + 1]] = true;
+                }
+                for (int j = 0; j < i; j++) bannedStation[last[j]] = true;
+
+                int[] path = spur(last, i + 1, closures);
+
+                for (int j = 0; j < i; j++) bannedStation[last[j]] = false;
+                for (int[] p : accepted) {
+                    if (p.length > i + 1) bannedNext[p[i + 1]] = false;
+                }
+
+                if (path != null && seen.add(new PathKey(path))) {
+                    candidates.add(new Candidate(path, pathCost(path)));
+                }
+            }
+            Candidate best = candidates.poll();
+            if (best == null) break;
+            accepted.add(best.path);
+        }
+        return accepted;
+    }
+
+    /** Exact cost of a station path under this ranking, with the best choice of lines. */
+    public long pathCost(int[] path) {
+        if (timed) return graph.travelMinutes(path, path.length, router.getTransferPenalty());
+        return path.length - 1;
+    }
+
+    private static boolean sharesPrefix(int[] a, int[] b, int length) {
+        for (int i = 0; i < length; i++) {
+            if (a[i] != b[i]) return false;
+        }
+        return true;
+    }
+
+    /** Full Dijkstra from the target's states; the state graph is symmetric, so this is distance to it. */
+    private void distancesToTarget(int target, ClosureSet closures) {
+        this.target = target;
+        Arrays.fill(toTarget, Long.MAX_VALUE);
+        heap.clear();
+        for (int s = router.firstState(target); s < router.endState(target); s++) {
+            toTarget[s] = 0;
+            heap.offer(s, 0);
+        }
+        while (!heap.isEmpty()) {
+            long d = heap.peekKey();
+            int s = heap.poll();
+            int u = router.stationOf(s);
+            for (int e = graph.firstEdge(u); e < graph.endEdge(u); e++) {
+                if (graph.line(e) != router.lineOf(s)) continue;
+                if (closures != null && closures.blocksEdge(e)) continue;
+                int t = router.edgeTargetState(e);
+                long nd = d + rideCost(e);
+                if (nd < toTarget[t]) {
+                    toTarget[t] = nd;
+                    heap.offer(t, nd);
+                }
+            }
+            for (int t = router.firstState(u); t < router.endState(u); t++) {
+                long nd = d + transferCost();
+                if (t != s && nd < toTarget[t]) {
+                    toTarget[t] = nd;
+                    heap.offer(t, nd);
+                }
+            }
+        }
+    }
+
+    /**
+     * A* from the end of {@code root[0..rootLength)} to the target, seeded with the cheapest
+     * cost of riding the root into each line state of the spur station.
+     *
+     * @return the root followed by the spur path, or null
+     */
+    private int[] spur(int[] root, int rootLength, ClosureSet closures) {
+        int spurStation = root[rootLength - 1];
+        heap.clear();
+        long[] seeds = rootCosts(root, rootLength);
+        for (int s = router.firstState(spurStation); s < router.endState(spurStation); s++) {
+            long g = seeds == null ? 0 : seeds[s - router.firstState(spurStation)];
+            if (g == Long.MAX_VALUE || toTarget[s] == Long.MAX_VALUE) continue;
+            touch(s);
+            dist[s] = g;
+            prev[s] = -1;
+            heap.offer(s, key(g, toTarget[s]));
+        }
+
+        int end = -1;
+        while (!heap.isEmpty()) {
+            int s = heap.poll();
+            int u = router.stationOf(s);
+            if (u == target) {
+                end = s;
+                break;
+            }
+            long d = dist[s];
+            for (int e = graph.firstEdge(u); e < graph.endEdge(u); e++) {
+                if (graph.line(e) != router.lineOf(s)) continue;
+                int v = graph.target(e);
+                if (v == spurStation || bannedStation[v] || (u == spurStation && bannedNext[v])) continue;
+                if (closures != null && closures.blocksEdge(e)) continue;
+                relax(s, router.edgeTargetState(e), d + rideCost(e));
+            }
+            for (int t = router.firstState(u); t < router.endState(u); t++) {
+                if (t != s) relax(s, t, d + transferCost());
+            }
+        }
+
+        int[] path = null;
+        if (end >= 0) {
+            int[] tail = router.stationPath(end, prev);
+            path = Arrays.copyOf(root, rootLength - 1 + tail.length);
+            System.arraycopy(tail, 0, path, rootLength - 1, tail.length);
+        }
+        for (int i = 0; i < touchedCount; i++) {
+            dist[touched[i]] = Long.MAX_VALUE;
+        }
+        touchedCount = 0;
+        return path;
+    }
+
+    private void relax(int from, int to, long nd) {
+        if (toTarget[to] == Long.MAX_VALUE || nd >= dist[to]) return;
+        if (dist[to] == Long.MAX_VALUE) touch(to);
+        dist[to] = nd;
+        prev[to] = from;
+        heap.offer(to, key(nd, toTarget[to]));
+    }
+
+    private void touch(int state) {
+        touched[touchedCount++] = state;
+    }
+
+    /** A* priority; among equal estimates the state furthest along is expanded first. */
+    private static long key(long g, long h) {
+        return ((g + h) << TIE_BITS) | (TIE_MASK - Math.min(g, TIE_MASK));
+    }
+
+    /**
+     * Cheapest cost of riding {@code root} into each state of its last station, indexed from
+     * that station's first state; null for a root of one station (every state costs 0).
+     */
+    private long[] rootCosts(int[] root, int rootLength) {
+        if (rootLength == 1) return null;
+        long[] cost = new long[graph.lineCount()];
+        long[] next = new long[graph.lineCount()];
+        Arrays.fill(cost, Long.MAX_VALUE);
+        for (int i = 0; i + 1 < rootLength; i++) {
+            Arrays.fill(next, Long.MAX_VALUE);
+            long cheapest = Long.MAX_VALUE;
+            for (long c : cost) cheapest = Math.min(cheapest, c);
+            for (int e = graph.firstEdge(root[i]); e < graph.endEdge(root[i]); e++) {
+                if (graph.target(e) != root[i + 1]) continue;
+                int line = graph.line(e);
+                long board;
+                if (i == 0) {
+                    board = 0;
+                } else {
+                    board = cost[line];
+                    if (cheapest != Long.MAX_VALUE) board = Math.min(board, cheapest + transferCost());
+                    if (board == Long.MAX_VALUE) continue;
+                }
+                next[line] = Math.min(next[line], board + rideCost(e));
+            }
+            long[] t = cost;
+            cost = next;
+            next = t;
+        }
+        int station = root[rootLength - 1];
+        long[] seeds = new long[router.endState(station) - router.firstState(station)];
+        for (int s = router.firstState(station); s < router.endState(station); s++) {
+            seeds[s - router.firstState(station)] = cost[router.lineOf(s)];
+        }
+        return seeds;
+    }
+
+    private static class Candidate implements Comparable<Candidate> {
+        final int[] path;
+        final long cost;
+
+        Candidate(int[] path, long cost) {
+            this.path = path;
+            this.cost = cost;
+        }
+
+        @Override
+        public int compareTo(Candidate o) {
+            if (cost != o.cost) return Long.compare(cost, o.cost);
+            return Integer.compare(path.length, o.path.length);
+        }
+    }
+
+    private static class PathKey {
+        final int[] path;
+        final int hash;
+
+        PathKey(int[] path) {
+            this.path = path;
+            this.hash = Arrays.hashCode(path);
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            return o instanceof PathKey && Arrays.equals(path, ((PathKey) o).path);
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+    }
+}
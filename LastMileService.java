@@ -1,17 +1,27 @@
 package solvexis.service.transport;
 
+import solvexis.model.GeoPoint;
+import solvexis.service.ServiceProfile;
 import java.time.LocalTime;
 import java.util.*;
 
 public class LastMileService {
-    private static final int MORNING_PEAK_START = 8;
-    private static final int MORNING_PEAK_END = 11;
-    private static final int EVENING_PEAK_START = 17;
-    private static final int EVENING_PEAK_END = 21;
+    /** Typical ratio of road distance to straight-line distance within the city. */
+    public static final double ROAD_DETOUR_FACTOR = 1.3;
+
+    /** @return estimated road kilometres between two points, to the nearest 100 m */
+    public static double estimateRoadKm(GeoPoint from, GeoPoint to) {
+        return Math.max(0.1, Math.round(from.distanceKm(to) * ROAD_DETOUR_FACTOR * 10) / 10.0);
+    }
 
     public List<TransportOption> getAvailableOptions(String destination, double distance) {
+        return getAvailableOptions(destination, distance, LocalTime.now());
+    }
+
+    /** Options for a ride starting at {@code startAt}, cheapest first, priced for that time. */
+    public List<TransportOption> getAvailableOptions(String destination, double distance, LocalTime startAt) {
         List<TransportOption> options = new ArrayList<>();
-        boolean isPeakHour = isPeakHour();
+        boolean isPeakHour = ServiceProfile.isPeakHour(startAt);
         
         for (TransportMode mode : TransportMode.values()) {
             double fare = mode.calculateFare(distance, isPeakHour);
@@ -23,12 +33,9 @@ public class LastMileService {
         return options;
     }
 
-    private boolean isPeakHour() {
-        LocalTime now = LocalTime.now();
-        int hour = now.getHour();
-        
-        return (hour >= MORNING_PEAK_START && hour < MORNING_PEAK_END) ||
-               (hour >= EVENING_PEAK_START && hour < EVENING_PEAK_END);
+    /** @return minutes a ride of {@code distance} km takes with {@code mode}, pickup included */
+    public int estimateMinutes(TransportMode mode, double distance) {
+        return calculateEstimatedTime(mode, distance);
     }
 
     private int calculateEstimatedTime(TransportMode mode, double distance) {
@@ -78,6 +85,10 @@ public class LastMileService {
             return estimatedMinutes;
         }
 
+        public double getDistance() {
+            return distance;
+        }
+
         @Override
         public int compareTo(TransportOption other) {
             return Double.compare(this.fare, other.fare);
@@ -0,0 +1,46 @@
+package solvexis.data;
+
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * One page of a legacy text history read from the end: the trips' text blocks newest first,
+ * and where in the file the next older page ends. Pass it back to
+ * {@link TripHistory#olderLegacyTrips(String, LegacyPage, int)} for that page.
+ */
+public final class LegacyPage {
+    /** A page with no trips and nothing older, as for a user without a legacy history. */
+    public static final LegacyPage EMPTY = new LegacyPage(Collections.emptyList(), 0);
+
+    private final List<String> trips;
+    private final long olderPosition;
+
+    LegacyPage(List<String> trips, long olderPosition) {
+        this.trips = Collections.unmodifiableList(trips);
+        this.olderPosition = olderPosition;
+    }
+
+    /** The decorated text block of each trip on this page, newest first. */
+    public List<String> getTrips() {
+        return trips;
+    }
+
+    /** The page's blocks in page order, as shown. */
+    public String getText() {
+        return String.join("", trips);
+    }
+
+    public boolean isEmpty() {
+        return trips.isEmpty();
+    }
+
+    /** Whether the file holds trips older than this page. */
+    public boolean hasOlder() {
+        return olderPosition > 0;
+    }
+
+    /** File offset where this page's oldest trip starts, and so where the older page ends. */
+    public long getOlderPosition() {
+        return olderPosition;
+    }
+}
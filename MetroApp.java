@@ -2,7 +2,9 @@ package solvexis.app;
 import solvexis.service.*;
 import solvexis.service.transport.*;
 import solvexis.data.TripHistory;
+import solvexis.data.TripPage;
 import solvexis.exceptions.*;
+import solvexis.model.GeoPoint;
 import solvexis.model.Station;
 
 import java.util.*;
@@ -19,12 +21,14 @@ public class MetroApp {
 
     public static void main(String[] args) {
         Scanner sc = new Scanner(System.in);
-        MetroRoutePlanner planner = new MetroRoutePlanner();
+        MetroRoutePlanner planner = new MetroRoutePlanner(true);
         alertsService = new AlertsService();
         lastMileService = new LastMileService();
+        DoorToDoorPlanner doorToDoor = new DoorToDoorPlanner(planner, lastMileService);
         crowdService = new PlatformCrowdDensityService();
+        planner.setCrowdService(crowdService);
         carbonService = new CarbonFootprintService();
-        statsService = new UserStatsService();
+        statsService = UserStatsManager.get().statsFor(null);
 
         System.out.println("========================================");
         System.out.println("   SOLVEXIS Metro Route Planner");
@@ -50,18 +54,19 @@ public class MetroApp {
                 String end = sc.nextLine().trim();
                 
                 try {
-                    List<String> path = planner.findRoute(start, end);
-                    double fare = planner.calculateFareBetween(start, end);
-                    int minutes = planner.estimateTimeMinutes(path);
+                    RouteResult route = planner.planJourney(start, end);
+                    List<String> path = route.getPath();
+                    double fare = route.getFare();
+                    int minutes = route.getMinutes();
 
                     System.out.println("\n--- Route Details ---");
                     System.out.println("Route: " + String.join(" -> ", path));
                     System.out.println("Estimated time: " + minutes + " minutes");
                     System.out.println("Metro Fare: ₹" + String.format("%.0f", fare));
                     
-                    List<Station> stations = planner.getStationsOnRoute(start, end);
+                    List<Station> stations = route.getStations();
                     crowdService.displayCrowdDensityForStations(stations);
-                    carbonService.displayCO2Saved(stations);
+                    carbonService.displayCO2Saved(route.getDistanceKm());
                     
                     System.out.println("------------------------");
 
@@ -84,21 +89,39 @@ public class MetroApp {
                                 Thread.currentThread().interrupt();
                             }
                             System.out.println("\n===== Last Mile Connection =====");
-                            System.out.print("Enter your home/final destination address: ");
+                            System.out.print("Enter your home/final destination address (or latitude, longitude): ");
                             String finalDest = sc.nextLine().trim();
                             
                             if (!finalDest.isEmpty()) {
-                                System.out.print("Enter distance in kilometers: ");
+                                GeoPoint point = GeoPoint.parse(finalDest);
+                                GeoPoint exit = stations.get(stations.size() - 1).getLocation();
                                 double lastMileDistance = 0;
-                                try {
-                                    lastMileDistance = Double.parseDouble(sc.nextLine().trim());
-                                    if (lastMileDistance <= 0) {
-                                        System.out.println("Invalid distance. Using default 2 km.");
+                                if (point != null && exit != null) {
+                                    lastMileDistance = LastMileService.estimateRoadKm(exit, point);
+                                    System.out.println("Distance from " + route.getEnd() + ": "
+                                        + String.format("%.1f km by road", lastMileDistance));
+                                    try {
+                                        DoorToDoorRoutes doorOptions = doorToDoor.plan(route.getStart(),
+                                            doorToDoor.destinationAt(finalDest, point));
+                                        System.out.println("\n--- Door to Door from " + route.getStart() + " ---");
+                                        for (DoorToDoorRoutes.Option doorOption : doorOptions.getOptions()) {
+                                            System.out.println("  • " + doorOption);
+                                        }
+                                    } catch (StationNotFoundException | InvalidRouteException e) {
+                                        System.out.println("No door-to-door options: " + e.getMessage());
+                                    }
+                                } else {
+                                    System.out.print("Enter distance in kilometers: ");
+                                    try {
+                                        lastMileDistance = Double.parseDouble(sc.nextLine().trim());
+                                        if (lastMileDistance <= 0) {
+                                            System.out.println("Invalid distance. Using default 2 km.");
+                                            lastMileDistance = 2.0;
+                                        }
+                                    } catch (NumberFormatException e) {
+                                        System.out.println("Invalid input. Using default 2 km.");
                                         lastMileDistance = 2.0;
                                     }
-                                } catch (NumberFormatException e) {
-                                    System.out.println("Invalid input. Using default 2 km.");
-                                    lastMileDistance = 2.0;
                                 }
                                 
                                 List<LastMileService.TransportOption> options = lastMileService.getAvailableOptions(finalDest, lastMileDistance);
@@ -134,27 +157,27 @@ public class MetroApp {
                                         System.out.println("  Estimated Time: " + selectedOption.getEstimatedMinutes() + " minutes");
                                     }
                                     
-                                    double metroDistance = carbonService.calculateDistance(stations);
+                                    double metroDistance = route.getDistanceKm();
                                     double lastMileDist = selectedOption != null ? lastMileDistance : 0;
                                     double co2Saved = carbonService.calculateCO2Saved(metroDistance);
                                     
                                     statsService.recordTrip(stations, lastMileDist, co2Saved);
                                     
                                     TripHistory.saveCompleteTrip(stations, selectedOption, finalDest, fare);
-                                    System.out.println("\n✓ Trip completed and saved to trip_history.txt");
+                                    System.out.println("\n✓ Trip completed and saved to trip_history.log");
                                     int points = (int)((metroDistance + lastMileDist) * 10 + 5);
                                     System.out.println("✓ Stats updated! Earned #" + points + " points!");
                                     
                                 } catch (NumberFormatException e) {
                                     System.out.println("Invalid selection. Skipping last-mile booking.");
-                                    double metroDistance = carbonService.calculateDistance(stations);
+                                    double metroDistance = route.getDistanceKm();
                                     double co2Saved = carbonService.calculateCO2Saved(metroDistance);
                                     statsService.recordTrip(stations, 0, co2Saved);
                                     TripHistory.saveCompleteTrip(stations, null, finalDest, fare);
                                 }
                             } else {
                                 System.out.println("No destination entered. Saving metro trip only.");
-                                double metroDistance = carbonService.calculateDistance(stations);
+                                double metroDistance = route.getDistanceKm();
                                 double co2Saved = carbonService.calculateCO2Saved(metroDistance);
                                 statsService.recordTrip(stations, 0, co2Saved);
                                 TripHistory.saveCompleteTrip(stations, null, null, fare);
@@ -178,17 +201,10 @@ public class MetroApp {
             } else if (opt.equals("3")) {
                 System.out.println("\n===== Recent Trips =====");
                 try {
-                    java.nio.file.Path p = java.nio.file.Paths.get("trip_history.txt");
-                    if (!java.nio.file.Files.exists(p)) {
-                        System.out.println("No trip history found.");
-                    } else {
-                        java.util.List<String> lines = java.nio.file.Files.readAllLines(p);
-                        if (lines.isEmpty()) {
-                            System.out.println("No trips recorded yet.");
-                        } else {
-                            for (String l : lines) System.out.println(l);
-                        }
-                    }
+                    TripPage recent = TripHistory.newestTrips(null, 10);
+                    String history = TripHistory.render(recent);
+                    if (!recent.hasOlder()) history += TripHistory.newestLegacyTrips(null, 10).getText();
+                    System.out.println(history.isEmpty() ? "No trip history found." : history);
                 } catch (java.io.IOException e) {
                     System.out.println("Error reading trip history: " + e.getMessage());
                 }
@@ -204,7 +220,7 @@ public class MetroApp {
                     System.out.print("Enter end station: ");
                     String end = sc.nextLine().trim();
                     try {
-                        List<Station> stations = planner.getStationsOnRoute(start, end);
+                        List<Station> stations = planner.planJourney(start, end).getStations();
                         crowdService.displayCrowdDensityForStations(stations);
                     } catch (Exception e) {
                         System.out.println("Error: " + e.getMessage());
@@ -0,0 +1,364 @@
+package solvexis.service;
+
+import solvexis.data.NetworkDefinition;
+import java.util.*;
+
+/**
+ * Integer-indexed metro graph stored in compressed sparse row form. Stations are
+ * dense ids {@code 0..size-1}; the edges of station {@code u} occupy
+ * {@code [offsets[u], offsets[u + 1])} of the parallel target, line and weight arrays.
+ */
+public class MetroGraph {
+    private final String[] names;
+    private final HashMap<String, Integer> ids;
+    private final int lineCount;
+    private final int[] offsets;
+    private final int[] targets;
+    private final int[] edgeLines;
+    private final int[] edgeMinutes;
+    private final int[] edgeMeters;
+
+    private MetroGraph(String[] names, HashMap<String, Integer> ids, int lineCount,
+                       int[] offsets, int[] targets, int[] edgeLines, int[] edgeMinutes, int[] edgeMeters) {
+        this.names = names;
+        this.ids = ids;
+        this.lineCount = lineCount;
+        this.offsets = offsets;
+        this.targets = targets;
+        this.edgeLines = edgeLines;
+        this.edgeMinutes = edgeMinutes;
+        this.edgeMeters = edgeMeters;
+    }
+
+    /**
+     * Builds the graph from ordered station lists, one per line. Consecutive stations on a
+     * line are joined in both directions; a station on several lines gets a single id.
+     */
+    public static MetroGraph fromLines(List<List<String>> lines, int minutesPerStop) {
+        List<int[]> meters = new ArrayList<>();
+        for (List<String> line : lines) {
+            int[] m = new int[Math.max(0, line.size() - 1)];
+            Arrays.fill(m, NetworkDefinition.DEFAULT_SEGMENT_METERS);
+            meters.add(m);
+        }
+        return fromLines(lines, meters, minutesPerStop);
+    }
+
+    public static MetroGraph fromDefinition(NetworkDefinition definition, int minutesPerStop) {
+        List<int[]> meters = new ArrayList<>();
+        for (int li = 0; li < definition.lineCount(); li++) {
+            meters.add(definition.getSegmentMeters(li));
+        }
+        return fromLines(definition.getLines(), meters, minutesPerStop);
+    }
+
+    /**
+     * @param segmentMeters per line, the distance from station {@code i} to {@code i + 1}
+     */
+    public static MetroGraph fromLines(List<List<String>> lines, List<int[]> segmentMeters, int minutesPerStop) {
+        HashMap<String, Integer> ids = new HashMap<>();
+        List<String> names = new ArrayList<>();
+        for (List<String> line : lines) {
+            for (String s : line) {
+                if (!ids.containsKey(s)) {
+                    ids.put(s, names.size());
+                    names.add(s);
+                }
+            }
+        }
+
+        int[] degree = new int[names.size()];
+        for (List<String> line : lines) {
+            for (int i = 0; i + 1 < line.size(); i++) {
+                degree[ids.get(line.get(i))]++;
+                degree[ids.get(line.get(i + 1))]++;
+            }
+        }
+
+        int[] offsets = new int[names.size() + 1];
+        for (int u = 0; u < names.size(); u++) {
+            offsets[u + 1] = offsets[u] + degree[u];
+        }
+        int edgeCount = offsets[names.size()];
+        int[] targets = new int[edgeCount];
+        int[] edgeLines = new int[edgeCount];
+        int[] edgeMinutes = new int[edgeCount];
+        int[] edgeMeters = new int[edgeCount];
+        int[] fill = Arrays.copyOf(offsets, names.size());
+        for (int li = 0; li < lines.size(); li++) {
+            List<String> line = lines.get(li);
+            int[] meters = segmentMeters.get(li);
+            for (int i = 0; i + 1 < line.size(); i++) {
+                int a = ids.get(line.get(i));
+                int b = ids.get(line.get(i + 1));
+                int ea = fill[a]++;
+                targets[ea] = b;
+                edgeLines[ea] = li;
+                edgeMinutes[ea] = minutesPerStop;
+                edgeMeters[ea] = meters[i];
+                int eb = fill[b]++;
+                targets[eb] = a;
+                edgeLines[eb] = li;
+                edgeMinutes[eb] = minutesPerStop;
+                edgeMeters[eb] = meters[i];
+            }
+        }
+
+        return new MetroGraph(names.toArray(new String[0]), ids, lines.size(),
+            offsets, targets, edgeLines, edgeMinutes, edgeMeters);
+    }
+
+    public int size() {
+        return names.length;
+    }
+
+    public int lineCount() {
+        return lineCount;
+    }
+
+    public int edgeCount() {
+        return targets.length;
+    }
+
+    /** @return the station id, or -1 if the name is unknown */
+    public int id(String name) {
+        Integer id = ids.get(name);
+        return id == null ? -1 : id;
+    }
+
+    public String name(int id) {
+        return names[id];
+    }
+
+    public boolean contains(String name) {
+        return ids.containsKey(name);
+    }
+
+    public int firstEdge(int u) {
+        return offsets[u];
+    }
+
+    public int endEdge(int u) {
+        return offsets[u + 1];
+    }
+
+    public int target(int edge) {
+        return targets[edge];
+    }
+
+    public int line(int edge) {
+        return edgeLines[edge];
+    }
+
+    public int minutes(int edge) {
+        return edgeMinutes[edge];
+    }
+
+    public int meters(int edge) {
+        return edgeMeters[edge];
+    }
+
+    /** @return the edge index from {@code a} to {@code b}, or -1 if they are not adjacent */
+    public int edgeBetween(int a, int b) {
+        if (a < 0 || b < 0) return -1;
+        for (int e = offsets[a]; e < offsets[a + 1]; e++) {
+            if (targets[e] == b) return e;
+        }
+        return -1;
+    }
+
+    /** @return the line index of the edge between {@code a} and {@code b}, or -1 */
+    public int lineBetween(int a, int b) {
+        int e = edgeBetween(a, b);
+        return e < 0 ? -1 : edgeLines[e];
+    }
+
+    /**
+     * Fewest-stations search from {@code from} to {@code to}.
+     *
+     * @return the station ids on the path, or null if {@code to} is unreachable
+     */
+    public int[] shortestPath(int from, int to) {
+        return shortestPath(from, to, (ClosureSet) null);
+    }
+
+    public int[] shortestPath(int from, int to, ClosureSet closures) {
+        int[] prev = new int[names.length];
+        Arrays.fill(prev, -1);
+        return shortestPath(from, to, prev, new int[names.length], closures);
+    }
+
+    /**
+     * Same search on caller-owned scratch arrays of length {@link #size()}. {@code prev} must
+     * be all -1 on entry and is left that way, so the arrays can be reused across queries.
+     */
+    public int[] shortestPath(int from, int to, int[] prev, int[] queue) {
+        return shortestPath(from, to, prev, queue, null);
+    }
+
+    /** Same search that never enters an element closed in {@code closures} (null: none). */
+    public int[] shortestPath(int from, int to, int[] prev, int[] queue, ClosureSet closures) {
+        prev[from] = from;
+        int head = 0, tail = 0;
+        queue[tail++] = from;
+        while (head < tail) {
+            int cur = queue[head++];
+            if (cur == to) break;
+            for (int e = offsets[cur]; e < offsets[cur + 1]; e++) {
+                int nb = targets[e];
+                if (prev[nb] < 0 && (closures == null || !closures.blocksEdge(e))) {
+                    prev[nb] = cur;
+                    queue[tail++] = nb;
+                }
+            }
+        }
+        int[] path = prev[to] < 0 ? null : unwind(prev, from, to);
+        for (int i = 0; i < tail; i++) {
+            prev[queue[i]] = -1;
+        }
+        return path;
+    }
+
+    static int[] unwind(int[] prev, int from, int to) {
+        int length = 1;
+        for (int cur = to; cur != from; cur = prev[cur]) length++;
+        int[] path = new int[length];
+        int cur = to;
+        for (int i = length - 1; i >= 0; i--) {
+            path[i] = cur;
+            cur = prev[cur];
+        }
+        return path;
+    }
+
+    /**
+     * Line ridden from {@code a} to {@code b}. Where several lines share the segment the
+     * one matching {@code preferredLine} wins, so a through journey is not counted as a transfer.
+     */
+    public int lineBetween(int a, int b, int preferredLine) {
+        if (a < 0 || b < 0) return -1;
+        int found = -1;
+        for (int e = offsets[a]; e < offsets[a + 1]; e++) {
+            if (targets[e] != b) continue;
+            if (edgeLines[e] == preferredLine) return preferredLine;
+            if (found < 0) found = edgeLines[e];
+        }
+        return found;
+    }
+
+    /** Number of line changes along a path of station ids. */
+    public int countTransfers(int[] path) {
+        return countTransfers(path, path.length);
+    }
+
+    /** Fewest line changes along the first {@code length} station ids of {@code path}. */
+    public int countTransfers(int[] path, int length) {
+        return transfersIn(assignLines(path, length, 1));
+    }
+
+    private static int transfersIn(int[] lines) {
+        int transfers = 0;
+        int prevLine = -1;
+        for (int line : lines) {
+            if (line < 0) continue;
+            if (prevLine >= 0 && line != prevLine) transfers++;
+            prevLine = line;
+        }
+        return transfers;
+    }
+
+    /** Riding time along the first {@code length} station ids of {@code path}, transfers included. */
+    public int travelMinutes(int[] path, int length, int transferPenalty) {
+        return travelMinutes(path, assignLines(path, length, transferPenalty), transferPenalty);
+    }
+
+    /** Riding time along {@code path} on the given line per hop, transfers included. */
+    public int travelMinutes(int[] path, int[] lines, int transferPenalty) {
+        int minutes = 0;
+        for (int i = 0; i < lines.length; i++) {
+            if (lines[i] >= 0) minutes += edgeMinutes[edgeOnLine(path[i], path[i + 1], lines[i])];
+        }
+        return minutes + transfersIn(lines) * transferPenalty;
+    }
+
+    private int edgeOnLine(int a, int b, int line) {
+        for (int e = offsets[a]; e < offsets[a + 1]; e++) {
+            if (targets[e] == b && edgeLines[e] == line) return e;
+        }
+        return -1;
+    }
+
+    /**
+     * Line ridden on each hop of the first {@code length} station ids of {@code path}, chosen
+     * so that riding time plus {@code transferPenalty} per change is smallest; -1 for a hop
+     * with no edge. Only segments shared by several lines leave a choice, so a path without
+     * them is answered by a single scan.
+     */
+    public int[] assignLines(int[] path, int length, int transferPenalty) {
+        int hops = Math.max(0, length - 1);
+        int[] lines = new int[hops];
+        boolean shared = false;
+        for (int i = 0; i < hops; i++) {
+            int count = 0;
+            lines[i] = -1;
+            for (int e = offsets[path[i]]; e < offsets[path[i] + 1]; e++) {
+                if (targets[e] != path[i + 1]) continue;
+                if (count++ == 0) lines[i] = edgeLines[e];
+            }
+            if (count > 1) shared = true;
+        }
+        if (!shared) return lines;
+
+        // Dynamic programme over (hop, edge taken): cost[i][j] is the cheapest way to ride
+        // hop i on its j-th candidate edge.
+        int[][] edges = new int[hops][];
+        long[][] cost = new long[hops][];
+        int[][] back = new int[hops][];
+        int prevHop = -1;
+        for (int i = 0; i < hops; i++) {
+            int count = 0;
+            for (int e = offsets[path[i]]; e < offsets[path[i] + 1]; e++) {
+                if (targets[e] == path[i + 1]) count++;
+            }
+            edges[i] = new int[count];
+            cost[i] = new long[count];
+            back[i] = new int[count];
+            int j = 0;
+            for (int e = offsets[path[i]]; e < offsets[path[i] + 1]; e++) {
+                if (targets[e] == path[i + 1]) edges[i][j++] = e;
+            }
+            for (j = 0; j < count; j++) {
+                int e = edges[i][j];
+                long best = 0;
+                back[i][j] = -1;
+                if (prevHop >= 0) {
+                    best = Long.MAX_VALUE;
+                    for (int k = 0; k < edges[prevHop].length; k++) {
+                        long c = cost[prevHop][k]
+                            + (edgeLines[edges[prevHop][k]] == edgeLines[e] ? 0 : transferPenalty);
+                        if (c < best) {
+                            best = c;
+                            back[i][j] = k;
+                        }
+                    }
+                }
+                cost[i][j] = best + edgeMinutes[e];
+            }
+            if (count > 0) prevHop = i;
+        }
+        if (prevHop < 0) return lines;
+
+        int j = 0;
+        for (int k = 1; k < cost[prevHop].length; k++) {
+            if (cost[prevHop][k] < cost[prevHop][j]) j = k;
+        }
+        for (int i = prevHop; i >= 0 && j >= 0; ) {
+            lines[i] = edgeLines[edges[i][j]];
+            j = back[i][j];
+            do {
+                i--;
+            } while (i >= 0 && edges[i].length == 0);
+        }
+        return lines;
+    }
+}
@@ -3,131 +3,131 @@ import solvexis.exceptions.InvalidRouteException;
 import solvexis.exceptions.StationNotFoundException;
 import solvexis.model.*;
 import solvexis.data.TripHistory;
+import java.time.LocalTime;
 import java.util.Arrays;
 
 import java.util.*;
 
-public class MetroRoutePlanner implements RoutePlanner {
-
-    private HashMap<String, Station> stations = new HashMap<>();
-    private HashMap<String, List<String>> adj = new HashMap<>();
-    private HashMap<String, Integer> edgeLine = new HashMap<>();
-    private List<List<String>> lines = new ArrayList<>();
+public class MetroRoutePlanner implements RoutePlanner, AutoCloseable {
+    private final NetworkSnapshot network;
+    private final MetroGraph graph;
+    private final TimeOptimalRouter fastestRouter;
+    private final RouteIndex index;
+    private final EnumMap<RoutingMode, RouteTable> routeTables = new EnumMap<>(RoutingMode.class);
+    private final EnumMap<RoutingMode, ContractionHierarchy> hierarchies = new EnumMap<>(RoutingMode.class);
+    private final RouteCache cache;
+    private final DisruptionService disruptions;
+    private final DisruptionService.Listener cacheInvalidator;
+    private volatile PlatformCrowdDensityService crowdService;
+    private volatile double crowdWeight = CrowdSnapshot.DEFAULT_WEIGHT;
+    private volatile CrowdPenalties crowdPenalties;
+    private volatile TimeDependentRouter timetableRouter;
 
     public MetroRoutePlanner() {
-        stations.put("Miyapur", new TerminalStation("Miyapur", 1));
-        stations.put("JNTU College", new NormalStation("JNTU College", 1));
-        stations.put("KPHB Colony", new NormalStation("KPHB Colony", 1));
-        stations.put("Kukatpally", new NormalStation("Kukatpally", 1));
-        stations.put("Balanagar", new NormalStation("Balanagar", 1));
-        stations.put("Moosapet", new NormalStation("Moosapet", 1));
-        stations.put("Bharat Nagar", new NormalStation("Bharat Nagar", 1));
-        stations.put("Erragadda", new NormalStation("Erragadda", 1));
-        stations.put("ESI Hospital", new NormalStation("ESI Hospital", 1));
-        stations.put("SR Nagar", new NormalStation("SR Nagar", 1));
-        stations.put("Ameerpet", new JunctionStation("Ameerpet", Arrays.asList(1, 2)));
-        stations.put("Punjagutta", new NormalStation("Punjagutta", 1));
-        stations.put("Irrum Manzil", new NormalStation("Irrum Manzil", 1));
-        stations.put("Khairatabad", new NormalStation("Khairatabad", 1));
-        stations.put("Lakdi-ka-pul", new NormalStation("Lakdi-ka-pul", 1));
-        stations.put("Assembly", new NormalStation("Assembly", 1));
-        stations.put("Nampally", new NormalStation("Nampally", 1));
-        stations.put("Gandhi Bhavan", new NormalStation("Gandhi Bhavan", 1));
-        stations.put("Osmania Medical College", new NormalStation("Osmania Medical College", 1));
-        stations.put("MGBS", new JunctionStation("MGBS", Arrays.asList(1, 3)));
-        stations.put("Malakpet", new NormalStation("Malakpet", 1));
-        stations.put("New Market", new NormalStation("New Market", 1));
-        stations.put("Musarambagh", new NormalStation("Musarambagh", 1));
-        stations.put("Dilsukhnagar", new NormalStation("Dilsukhnagar", 1));
-        stations.put("Chaitanyapuri", new NormalStation("Chaitanyapuri", 1));
-        stations.put("Victoria Memorial", new NormalStation("Victoria Memorial", 1));
-        stations.put("LB Nagar", new TerminalStation("LB Nagar", 1));
-
-        // Corridor II (Blue Line) - Nagole ↔ Raidurg
-        stations.put("Nagole", new TerminalStation("Nagole", 2));
-        stations.put("Uppal", new NormalStation("Uppal", 2));
-        stations.put("Stadium", new NormalStation("Stadium", 2));
-        stations.put("NGRI", new NormalStation("NGRI", 2));
-        stations.put("Habsiguda", new NormalStation("Habsiguda", 2));
-        stations.put("Tarnaka", new NormalStation("Tarnaka", 2));
-        stations.put("Mettuguda", new NormalStation("Mettuguda", 2));
-        stations.put("Secunderabad East", new NormalStation("Secunderabad East", 2));
-        stations.put("Parade Ground", new NormalStation("Parade Ground", 2));
-        stations.put("Paradise", new NormalStation("Paradise", 2));
-        stations.put("Rasoolpura", new NormalStation("Rasoolpura", 2));
-        stations.put("Prakash Nagar", new NormalStation("Prakash Nagar", 2));
-        stations.put("Begumpet", new NormalStation("Begumpet", 2));
-        stations.put("Madhura Nagar", new NormalStation("Madhura Nagar", 2));
-        stations.put("Yusufguda", new NormalStation("Yusufguda", 2));
-        stations.put("Road No. 5 Jubilee Hills", new NormalStation("Road No. 5 Jubilee Hills", 2));
-        stations.put("Jubilee Hills Check Post", new NormalStation("Jubilee Hills Check Post", 2));
-        stations.put("Peddamma Gudi", new NormalStation("Peddamma Gudi", 2));
-        stations.put("Madhapur", new NormalStation("Madhapur", 2));
-        stations.put("Durgam Cheruvu", new NormalStation("Durgam Cheruvu", 2));
-        stations.put("Hitec City", new NormalStation("Hitec City", 2));
-        stations.put("Raidurg", new TerminalStation("Raidurg", 2));
-
-        // Corridor III (Green Line) - JBS Parade Ground ↔ MGBS
-        stations.put("JBS Parade Ground", new TerminalStation("JBS Parade Ground", 3));
-        stations.put("Secunderabad West", new NormalStation("Secunderabad West", 3));
-        stations.put("Gandhi Hospital", new NormalStation("Gandhi Hospital", 3));
-        stations.put("Musheerabad", new NormalStation("Musheerabad", 3));
-        stations.put("RTC Cross Roads", new NormalStation("RTC Cross Roads", 3));
-        stations.put("Chikkadpally", new NormalStation("Chikkadpally", 3));
-        stations.put("Narayanaguda", new NormalStation("Narayanaguda", 3));
-        stations.put("Sultan Bazaar", new NormalStation("Sultan Bazaar", 3));
-    }
-
-    {
-        List<String> red = Arrays.asList(
-            "Miyapur", "JNTU College", "KPHB Colony", "Kukatpally", "Balanagar", 
-            "Moosapet", "Bharat Nagar", "Erragadda", "ESI Hospital", "SR Nagar", 
-            "Ameerpet", "Punjagutta", "Irrum Manzil", "Khairatabad", "Lakdi-ka-pul", 
-            "Assembly", "Nampally", "Gandhi Bhavan", "Osmania Medical College", 
-            "MGBS", "Malakpet", "New Market", "Musarambagh", "Dilsukhnagar", 
-            "Chaitanyapuri", "Victoria Memorial", "LB Nagar"
-        );
-        
-        List<String> blue = Arrays.asList(
-            "Nagole", "Uppal", "Stadium", "NGRI", "Habsiguda", "Tarnaka", 
-            "Mettuguda", "Secunderabad East", "Parade Ground", "Paradise", "Rasoolpura", 
-            "Prakash Nagar", "Begumpet", "Ameerpet", "Madhura Nagar", "Yusufguda", 
-            "Road No. 5 Jubilee Hills", "Jubilee Hills Check Post", "Peddamma Gudi", 
-            "Madhapur", "Durgam Cheruvu", "Hitec City", "Raidurg"
-        );
-        
-        List<String> green = Arrays.asList(
-            "JBS Parade Ground", "Secunderabad West", "Gandhi Hospital", "Musheerabad", 
-            "RTC Cross Roads", "Chikkadpally", "Narayanaguda", "Sultan Bazaar", "MGBS"
-        );
-
-        lines.add(red);
-        lines.add(blue);
-        lines.add(green);
-
-        for (int li = 0; li < lines.size(); li++) {
-            List<String> line = lines.get(li);
-            for (int i = 0; i < line.size(); i++) {
-                String s = line.get(i);
-                adj.putIfAbsent(s, new ArrayList<>());
-                if (i + 1 < line.size()) {
-                    String t = line.get(i + 1);
-                    adj.get(s).add(t);
-                    adj.putIfAbsent(t, new ArrayList<>());
-                    adj.get(t).add(s);
-                    String key = makeEdgeKey(s, t);
-                    edgeLine.put(key, li);
-                }
+        this(false);
+    }
+
+    /**
+     * @param precomputeRoutes use the shared all-pairs {@link RouteTable} of each {@link RoutingMode}
+     *                         so queries become table lookups; live searches are used when false
+     */
+    public MetroRoutePlanner(boolean precomputeRoutes) {
+        this(NetworkSnapshot.get(), precomputeRoutes);
+    }
+
+    public MetroRoutePlanner(NetworkSnapshot network, boolean precomputeRoutes) {
+        this(network, precomputeRoutes ? RouteIndex.PRECOMPUTED_TABLE : RouteIndex.LIVE_SEARCH);
+    }
+
+    public MetroRoutePlanner(NetworkSnapshot network, RouteIndex index) {
+        this(network, index, null);
+    }
+
+    /**
+     * @param cache routes already planned are answered from here; null disables caching.
+     *              Mostly useful with {@link RouteIndex#LIVE_SEARCH}
+     */
+    public MetroRoutePlanner(NetworkSnapshot network, RouteIndex index, RouteCache cache) {
+        this.network = network;
+        this.cache = cache;
+        this.disruptions = network.getDisruptions();
+        this.cacheInvalidator = cache == null ? null : this::invalidateCache;
+        if (cacheInvalidator != null) {
+            disruptions.addListener(cacheInvalidator);
+        }
+        this.graph = network.getGraph();
+        this.fastestRouter = network.getFastestRouter();
+        this.index = index;
+        this.timetableRouter = new TimeDependentRouter(fastestRouter, network.getServiceProfile());
+        for (RoutingMode mode : RoutingMode.values()) {
+            if (mode.usesLiveData()) continue;
+            if (index == RouteIndex.PRECOMPUTED_TABLE) {
+                routeTables.put(mode, network.getRouteTable(mode));
+            } else if (index == RouteIndex.CONTRACTION_HIERARCHY) {
+                hierarchies.put(mode, network.getContractionHierarchy(mode));
             }
         }
     }
 
+    public boolean isPrecomputed() {
+        return !routeTables.isEmpty();
+    }
+
+    public RouteIndex getRouteIndex() {
+        return index;
+    }
+
+    /**
+     * Stops listening for closure changes. A planner with a cache registers with the
+     * network's shared {@link DisruptionService}, which would otherwise keep it reachable.
+     */
+    @Override
+    public void close() {
+        if (cacheInvalidator != null) {
+            disruptions.removeListener(cacheInvalidator);
+        }
+    }
+
+    /** @return the route cache, or null when caching is off */
+    public RouteCache getCache() {
+        return cache;
+    }
+
+    /**
+     * Crowd densities read by {@link RoutingMode#CROWD_AWARE}; without a service that mode
+     * plans like {@link RoutingMode#FASTEST}.
+     */
+    public void setCrowdService(PlatformCrowdDensityService crowdService) {
+        this.crowdService = crowdService;
+    }
+
+    /** @param minutesPerPcdi minutes charged per person/m² above the comfortable platform density */
+    public void setCrowdWeight(double minutesPerPcdi) {
+        if (minutesPerPcdi < 0)
+            throw new IllegalArgumentException("Crowd weight cannot be negative");
+        this.crowdWeight = minutesPerPcdi;
+    }
+
+    /** Replaces the service pattern used by departure-time queries. */
+    public void setServiceProfile(ServiceProfile profile) {
+        this.timetableRouter = new TimeDependentRouter(fastestRouter, profile);
+    }
+
+    public ServiceProfile getServiceProfile() {
+        return timetableRouter.getProfile();
+    }
+
+    public NetworkSnapshot getNetwork() {
+        return network;
+    }
+
     public Set<String> getStationNames() {
-        return stations.keySet();
+        return network.getStationNames();
     }
 
     public void printStations() {
         System.out.println("\nCorridor I (Red Line) - Miyapur ↔ LB Nagar:");
+        List<List<String>> lines = network.getLines();
         List<String> redLine = lines.get(0);
         for (String name : redLine) {
             System.out.println("  • " + name);
@@ -147,104 +147,362 @@ public class MetroRoutePlanner implements RoutePlanner {
     }
 
     public List<Station> getStationsOnRoute(String start, String end) throws StationNotFoundException, InvalidRouteException {
-        List<String> pathNames = findRoute(start, end);
-        List<Station> stationsList = new ArrayList<>();
-        for (String name : pathNames) {
-            stationsList.add(stations.get(name));
+        return planJourney(start, end).getStations();
+    }
+
+    public RouteResult planJourney(String start, String end) throws StationNotFoundException, InvalidRouteException {
+        return planJourney(start, end, RoutingMode.FEWEST_STATIONS);
+    }
+
+    public RouteResult planJourney(String start, String end, RoutingMode mode)
+            throws StationNotFoundException, InvalidRouteException {
+        if (cache == null) {
+            return buildResult(resolveRoute(start, end, mode));
         }
-        return stationsList;
+        ClosureSet closures = disruptions.current();
+        int[] ids = stationIds(start, end, closures);
+        RouteResult route = plan(start, end, ids[0], ids[1], mode, null, closures);
+        if (route == null)
+            throw new InvalidRouteException("No route found between " + start + " and " + end);
+        return route;
+    }
+
+    /**
+     * Route arriving earliest for a rider reaching the start platforms at {@code departAt}.
+     * Waits, dwells and interchange walks follow the service profile at the time each is
+     * incurred, and the minutes of the result include them. Such routes are never cached.
+     */
+    public RouteResult planJourney(String start, String end, LocalTime departAt)
+            throws StationNotFoundException, InvalidRouteException {
+        ClosureSet closures = disruptions.current();
+        int[] ids = stationIds(start, end, closures);
+        TimeDependentRouter.Journey journey = timetableRouter.earliestArrival(ids[0], ids[1],
+            departAt.toSecondOfDay(), closures.isEmpty() ? null : closures);
+        if (journey == null)
+            throw new InvalidRouteException("No route found between " + start + " and " + end);
+        return buildResult(journey.getPath(), journey.getLines(), journey.getMinutes());
+    }
+
+    /**
+     * Trip length for every departure from {@code earliest} to {@code latest} in one profile
+     * search, with the best departure and its route. {@code mode} is
+     * {@link RoutingMode#FASTEST}, or {@link RoutingMode#CROWD_AWARE} to also charge crowded
+     * interchanges.
+     */
+    public DepartureProfile profileJourney(String start, String end, LocalTime earliest, LocalTime latest,
+                                           RoutingMode mode) throws StationNotFoundException, InvalidRouteException {
+        if (mode == RoutingMode.FEWEST_STATIONS)
+            throw new IllegalArgumentException("Departure profiles need a time-based routing mode");
+        if (latest.isBefore(earliest))
+            throw new IllegalArgumentException("Departure window ends before it starts");
+        ClosureSet closures = disruptions.current();
+        int[] ids = stationIds(start, end, closures);
+        ClosureSet skip = closures.isEmpty() ? null : closures;
+        int[] penalty = mode == RoutingMode.CROWD_AWARE ? crowdPenalties() : null;
+        TimeDependentRouter timetable = timetableRouter;
+        ArrivalProfile arrivals = new ProfileRouter(fastestRouter, timetable.getProfile())
+            .profile(ids[0], ids[1], earliest.toSecondOfDay(), latest.toSecondOfDay(), skip, penalty);
+        if (arrivals == null)
+            throw new InvalidRouteException("No route found between " + start + " and " + end);
+
+        LocalTime best = LocalTime.ofSecondOfDay((long) Math.ceil(arrivals.bestDeparture()));
+        TimeDependentRouter.Journey journey = timetable.earliestArrival(ids[0], ids[1], best.toSecondOfDay(), skip, penalty);
+        RouteResult route = buildResult(journey.getPath(), journey.getLines(), journey.getMinutes());
+        return new DepartureProfile(mode, arrivals, best, route);
     }
 
     public List<String> findRoute(String start, String end) throws StationNotFoundException, InvalidRouteException {
-        if (!stations.containsKey(start))
+        return findRoute(start, end, RoutingMode.FEWEST_STATIONS);
+    }
+
+    public List<String> findRoute(String start, String end, RoutingMode mode)
+            throws StationNotFoundException, InvalidRouteException {
+        if (cache != null) {
+            return new ArrayList<>(planJourney(start, end, mode).getPath());
+        }
+        return toNames(resolveRoute(start, end, mode));
+    }
+
+    private int[] resolveRoute(String start, String end, RoutingMode mode) throws StationNotFoundException, InvalidRouteException {
+        ClosureSet closures = disruptions.current();
+        int[] ids = stationIds(start, end, closures);
+        int[] path = route(ids[0], ids[1], mode, null, closures);
+        if (path == null)
+            throw new InvalidRouteException("No route found between " + start + " and " + end);
+        return path;
+    }
+
+    /**
+     * Up to {@code k} loopless alternatives from {@code start} to {@code end}, best first under
+     * {@code mode}. The first is the optimal route; later ones are the next cheapest routes that
+     * differ from every earlier one in at least one station.
+     */
+    public List<RouteResult> findAlternatives(String start, String end, RoutingMode mode, int k)
+            throws StationNotFoundException, InvalidRouteException {
+        ClosureSet closures = disruptions.current();
+        int[] ids = stationIds(start, end, closures);
+        List<int[]> paths = new KShortestPaths(fastestRouter, mode)
+            .find(ids[0], ids[1], k, closures.isEmpty() ? null : closures);
+        if (paths.isEmpty())
+            throw new InvalidRouteException("No route found between " + start + " and " + end);
+        List<RouteResult> routes = new ArrayList<>(paths.size());
+        for (int[] path : paths) {
+            routes.add(buildResult(path));
+        }
+        return routes;
+    }
+
+    /**
+     * Every route from {@code start} to {@code end} that no other route matches or beats on
+     * travel time, fare, transfers and crowd exposure, from one multi-criteria search. Crowd
+     * exposure is read from the crowd service, and counts as zero without one.
+     */
+    public ParetoRoutes findParetoRoutes(String start, String end)
+            throws StationNotFoundException, InvalidRouteException {
+        ClosureSet closures = disruptions.current();
+        int[] ids = stationIds(start, end, closures);
+        PlatformCrowdDensityService service = crowdService;
+        List<ParetoRouter.Journey> journeys = new ParetoRouter(fastestRouter, service == null ? null : service.getSnapshot())
+            .find(ids[0], ids[1], closures.isEmpty() ? null : closures);
+        if (journeys.isEmpty())
+            throw new InvalidRouteException("No route found between " + start + " and " + end);
+        List<ParetoRoutes.Option> options = new ArrayList<>(journeys.size());
+        for (ParetoRouter.Journey journey : journeys) {
+            options.add(new ParetoRoutes.Option(buildResult(journey.getPath(), journey.getLines()),
+                journey.getCrowdExposure()));
+        }
+        return new ParetoRoutes(options);
+    }
+
+    private int[] stationIds(String start, String end, ClosureSet closures)
+            throws StationNotFoundException, InvalidRouteException {
+        int from = graph.id(start);
+        int to = graph.id(end);
+        if (from < 0)
             throw new StationNotFoundException("Start station not found: " + start);
 
-        if (!stations.containsKey(end))
+        if (to < 0)
             throw new StationNotFoundException("End station not found: " + end);
 
         if (start.equalsIgnoreCase(end))
             throw new InvalidRouteException("Start and end stations cannot be the same!");
 
-        List<String> q = new ArrayList<>();
-        Map<String, String> prev = new HashMap<>();
-        q.add(start);
-        prev.put(start, null);
-
-        int index = 0;
-        while (index < q.size()) {
-            String cur = q.get(index);
-            index++;
-            if (cur.equals(end)) break;
-            List<String> neighbors = adj.getOrDefault(cur, Collections.emptyList());
-            for (String nb : neighbors) {
-                if (!prev.containsKey(nb)) {
-                    prev.put(nb, cur);
-                    q.add(nb);
-                }
+        if (closures.isStationClosed(from))
+            throw new InvalidRouteException("Station is closed: " + start);
+
+        if (closures.isStationClosed(to))
+            throw new InvalidRouteException("Station is closed: " + end);
+
+        return new int[]{from, to};
+    }
+
+    /**
+     * Scratch space for live searches, owned by one thread and reused across its queries.
+     */
+    static final class SearchBuffers {
+        final int[] prev;
+        final int[] queue;
+        final long[] dist;
+        final int[] statePrev;
+        final IntMinHeap heap;
+
+        SearchBuffers(MetroGraph graph, TimeOptimalRouter router) {
+            prev = new int[graph.size()];
+            Arrays.fill(prev, -1);
+            queue = new int[graph.size()];
+            dist = new long[router.stateCount()];
+            statePrev = new int[router.stateCount()];
+            heap = new IntMinHeap(router.stateCount());
+        }
+    }
+
+    SearchBuffers newSearchBuffers() {
+        return new SearchBuffers(graph, fastestRouter);
+    }
+
+    /**
+     * Station ids from {@code from} to {@code to} under {@code mode} avoiding {@code closures},
+     * or null if unreachable. A precomputed route is used as long as the closures do not touch
+     * it (removing elements cannot make another route better); otherwise, and without an index,
+     * a live search runs on {@code buffers} when given and on its own arrays otherwise.
+     */
+    int[] route(int from, int to, RoutingMode mode, SearchBuffers buffers, ClosureSet closures) {
+        RouteTable routeTable = routeTables.get(mode);
+        ContractionHierarchy hierarchy = hierarchies.get(mode);
+        if (routeTable != null || hierarchy != null) {
+            int[] path;
+            if (routeTable != null) {
+                path = routeTable.isReachable(from, to) ? routeTable.path(from, to) : null;
+            } else {
+                path = hierarchy.shortestPath(from, to);
             }
+            if (path == null || !closures.blocks(path)) return path;
         }
 
-        if (!prev.containsKey(end)) {
-            throw new InvalidRouteException("No route found between " + start + " and " + end);
+        ClosureSet skip = closures.isEmpty() ? null : closures;
+        if (mode == RoutingMode.CROWD_AWARE) {
+            int[] penalty = crowdPenalties();
+            if (buffers == null) return fastestRouter.shortestPath(from, to, skip, penalty);
+            int end = fastestRouter.search(from, to, buffers.dist, buffers.statePrev, buffers.heap, skip, penalty);
+            return end < 0 ? null : fastestRouter.stationPath(end, buffers.statePrev);
+        } else if (buffers == null) {
+            return mode == RoutingMode.FASTEST
+                ? fastestRouter.shortestPath(from, to, skip) : graph.shortestPath(from, to, skip);
+        } else if (mode == RoutingMode.FASTEST) {
+            int end = fastestRouter.search(from, to, buffers.dist, buffers.statePrev, buffers.heap, skip);
+            return end < 0 ? null : fastestRouter.stationPath(end, buffers.statePrev);
+        } else {
+            return graph.shortestPath(from, to, buffers.prev, buffers.queue, skip);
         }
+    }
 
-        List<String> path = new ArrayList<>();
-        String cur = end;
-        while (cur != null) {
-            path.add(cur);
-            cur = prev.get(cur);
+    /**
+     * Interchange penalties for the current crowd snapshot and weight, recomputed only when
+     * either has changed since the last query; null without a crowd service.
+     */
+    private int[] crowdPenalties() {
+        PlatformCrowdDensityService service = crowdService;
+        if (service == null) return null;
+        CrowdSnapshot snapshot = service.getSnapshot();
+        double weight = crowdWeight;
+        CrowdPenalties memo = crowdPenalties;
+        if (memo == null || memo.snapshot != snapshot || memo.weight != weight) {
+            memo = new CrowdPenalties(snapshot, weight, snapshot.penaltyMinutes(weight));
+            crowdPenalties = memo;
         }
-        Collections.reverse(path);
-        return path;
+        return memo.penalty;
     }
 
-    public int estimateTimeMinutes(List<String> path) {
-        if (path == null || path.size() <= 1) return 0;
-        int hops = path.size() - 1;
-        int timePerStop = 2;
-        int transferPenalty = 3;
+    private static final class CrowdPenalties {
+        final CrowdSnapshot snapshot;
+        final double weight;
+        final int[] penalty;
 
+        CrowdPenalties(CrowdSnapshot snapshot, double weight, int[] penalty) {
+            this.snapshot = snapshot;
+            this.weight = weight;
+            this.penalty = penalty;
+        }
+    }
+
+    /**
+     * Cached route, or a fresh one that is then cached; null if unreachable. Modes that read
+     * live data are never cached. A change is published before the cache is swept, so a hit
+     * is checked against {@code closures} rather than trusted; and a change published while
+     * searching may already have swept the cache, so the new entry is withdrawn again if the
+     * closures moved on in the meantime.
+     */
+    RouteResult plan(String start, String end, int from, int to, RoutingMode mode,
+                     SearchBuffers buffers, ClosureSet closures) {
+        RouteCache cache = mode.usesLiveData() ? null : this.cache;
+        RouteResult route = cache == null ? null : cache.get(start, end, mode, closures);
+        if (route != null) return route;
+
+        int[] path = route(from, to, mode, buffers, closures);
+        if (path == null) return null;
+        route = buildResult(path);
+        if (cache != null) {
+            cache.put(start, end, mode, route, path, closures);
+            if (disruptions.current() != closures) cache.remove(start, end, mode);
+        }
+        return route;
+    }
+
+    /**
+     * Drops cached routes through newly closed elements, and the detours planned around an
+     * element that has reopened; detours around closures still in force stay.
+     */
+    private void invalidateCache(ClosureSet previous, ClosureSet current) {
+        cache.invalidateStale(current);
+    }
+
+    private List<String> toNames(int[] path) {
+        List<String> names = new ArrayList<>(path.length);
+        for (int id : path) {
+            names.add(graph.name(id));
+        }
+        return names;
+    }
+
+    RouteResult buildResult(int[] path) {
+        return buildResult(path, graph.assignLines(path, path.length, NetworkSnapshot.TRANSFER_PENALTY));
+    }
+
+    /** @param lines line ridden on each hop of {@code path} */
+    private RouteResult buildResult(int[] path, int[] lines) {
+        return buildResult(path, lines, graph.travelMinutes(path, lines, NetworkSnapshot.TRANSFER_PENALTY));
+    }
+
+    private RouteResult buildResult(int[] path, int[] lines, int minutes) {
+        List<String> names = toNames(path);
+        List<Station> stationsList = new ArrayList<>(path.length);
+        for (String name : names) {
+            stationsList.add(network.getStation(name));
+        }
+
+        List<RouteResult.Leg> legs = new ArrayList<>();
         int transfers = 0;
-        Integer prevLine = null;
-        for (int i = 0; i < path.size() - 1; i++) {
-            String a = path.get(i);
-            String b = path.get(i + 1);
-            String key = makeEdgeKey(a, b);
-            Integer lineIdx = edgeLine.get(key);
-            if (lineIdx == null) continue;
-            if (prevLine != null && !prevLine.equals(lineIdx)) transfers++; 
+        int legStart = 0;
+        int prevLine = -1;
+        for (int i = 0; i < path.length - 1; i++) {
+            int lineIdx = lines[i];
+            if (lineIdx < 0) continue;
+            if (prevLine >= 0 && prevLine != lineIdx) {
+                transfers++;
+                legs.add(new RouteResult.Leg(prevLine + 1, names.get(legStart), names.get(i), i - legStart));
+                legStart = i;
+            }
             prevLine = lineIdx;
         }
+        if (prevLine >= 0) {
+            legs.add(new RouteResult.Leg(prevLine + 1, names.get(legStart), names.get(path.length - 1),
+                path.length - 1 - legStart));
+        }
 
-        return hops * timePerStop + transfers * transferPenalty;
+        double fare = NetworkSnapshot.fareForStationCount(path.length);
+        double distance = network.getCorridorDistances().pathMeters(path, lines) / 1000.0;
+        return new RouteResult(names, stationsList, legs, transfers, minutes, fare, distance);
     }
 
-    private String makeEdgeKey(String a, String b) {
-        if (a.compareTo(b) <= 0) return a + "|" + b;
-        return b + "|" + a;
+    public int estimateTimeMinutes(List<String> path) {
+        if (path == null || path.size() <= 1) return 0;
+
+        int[] ids = new int[path.size()];
+        for (int i = 0; i < ids.length; i++) {
+            ids[i] = graph.id(path.get(i));
+        }
+        return graph.travelMinutes(ids, ids.length, NetworkSnapshot.TRANSFER_PENALTY);
+    }
+
+    /** Minutes to ride {@code path} leaving its first platform at {@code departAt}, waits included. */
+    public int estimateTimeMinutes(List<String> path, LocalTime departAt) {
+        if (path == null || path.size() <= 1) return 0;
+
+        int[] ids = new int[path.size()];
+        for (int i = 0; i < ids.length; i++) {
+            ids[i] = graph.id(path.get(i));
+        }
+        int[] lines = graph.assignLines(ids, ids.length, NetworkSnapshot.TRANSFER_PENALTY);
+        long depart = departAt.toSecondOfDay();
+        return (int) ((timetableRouter.arrivalAlong(ids, lines, depart) - depart + 59) / 60);
     }
 
     public double calculateFareBetween(String start, String end) throws StationNotFoundException {
-        if (!stations.containsKey(start))
+        int from = graph.id(start);
+        int to = graph.id(end);
+        if (from < 0)
             throw new StationNotFoundException("Start station not found: " + start);
-        if (!stations.containsKey(end))
+        if (to < 0)
             throw new StationNotFoundException("End station not found: " + end);
-        
+
+        RouteTable routeTable = routeTables.get(RoutingMode.FEWEST_STATIONS);
+        if (routeTable != null && disruptions.current().isEmpty()) {
+            if (from == to || !routeTable.isReachable(from, to)) return 20.0;
+            return routeTable.fare(from, to);
+        }
+
         try {
-            List<String> path = findRoute(start, end);
-            int numStations = path.size();
-            
-            if (numStations <= 2) {
-                return 10.0;
-            } else if (numStations <= 5) {
-                return 15.0;
-            } else if (numStations <= 9) {
-                return 20.0;
-            } else if (numStations <= 16) {
-                return 30.0;
-            } else {
-                return 40.0;
-            }
+            return NetworkSnapshot.fareForStationCount(resolveRoute(start, end, RoutingMode.FEWEST_STATIONS).length);
         } catch (InvalidRouteException e) {
             return 20.0;
         }
@@ -253,17 +511,17 @@ public class MetroRoutePlanner implements RoutePlanner {
     @Override
     public void planRoute(String start, String end) {
         try {
-            if (!stations.containsKey(start))
+            if (!graph.contains(start))
                 throw new StationNotFoundException("Start station not found: " + start);
 
-            if (!stations.containsKey(end))
+            if (!graph.contains(end))
                 throw new StationNotFoundException("End station not found: " + end);
 
             if (start.equalsIgnoreCase(end))
                 throw new InvalidRouteException("Start and end stations cannot be the same!");
 
-            Station s1 = stations.get(start);
-            Station s2 = stations.get(end);
+            Station s1 = network.getStation(start);
+            Station s2 = network.getStation(end);
 
             double fare = s1.calculateFare() + s2.calculateFare();
 
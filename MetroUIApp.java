@@ -1,7 +1,13 @@
 package solvexis.ui;
 
+import solvexis.data.TripHistory;
+import solvexis.data.LegacyPage;
+import solvexis.data.TripPage;
+import solvexis.exceptions.InvalidRouteException;
+import solvexis.exceptions.StationNotFoundException;
 import solvexis.service.*;
 import solvexis.service.transport.*;
+import solvexis.model.GeoPoint;
 import solvexis.model.Station;
 
 import javax.swing.*;
@@ -11,14 +17,20 @@ import java.awt.event.ActionEvent;
 import java.awt.event.ActionListener;
 import java.awt.event.WindowAdapter;
 import java.awt.event.WindowEvent;
+import java.time.LocalTime;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.ExecutionException;
 
 public class MetroUIApp extends JFrame {
+    /** Mode of the route shown and of the alternatives listed beside it. */
+    private static final RoutingMode ROUTE_MODE = RoutingMode.FEWEST_STATIONS;
 
     private final MetroRoutePlanner planner;
     private final LastMileService lastMileService;
+    private final DoorToDoorPlanner doorToDoor;
     private final PlatformCrowdDensityService crowdService;
     private final CarbonFootprintService carbonService;
     private UserStatsService statsService;
@@ -34,12 +46,16 @@ public class MetroUIApp extends JFrame {
     private JTextField lastMileAddressField;
     private JTextField lastMileDistanceField;
 
+    private RouteResult currentRoute;
     private List<Station> currentRouteStations = new ArrayList<>();
     private List<LastMileService.TransportOption> currentLastMileOptions = new ArrayList<>();
     private double currentMetroFare = 0.0;
     
     private JTextArea detailsArea;
     private JTextArea historyArea;
+    private JButton olderTripsButton;
+    private TripPage historyPage;
+    private LegacyPage legacyPage;
     private JTextArea carbonArea;
 
     private JMenuBar menuBar;
@@ -47,9 +63,11 @@ public class MetroUIApp extends JFrame {
     private JMenuItem logoutItem;
 
     public MetroUIApp() {
-        this.planner = new MetroRoutePlanner();
+        this.planner = new MetroRoutePlanner(true);
         this.lastMileService = new LastMileService();
+        this.doorToDoor = new DoorToDoorPlanner(planner, lastMileService);
         this.crowdService = new PlatformCrowdDensityService();
+        planner.setCrowdService(crowdService);
         this.carbonService = new CarbonFootprintService();
         this.statsService = null;
 
@@ -237,9 +255,11 @@ public class MetroUIApp extends JFrame {
     }
 
     private void handleLogout() {
+        if (currentUser != null) FileHandler.releaseStats(currentUser);
         currentUser = null;
         statsService = null;
-        currentRouteStations.clear();
+        currentRoute = null;
+        currentRouteStations = new ArrayList<>();
         currentLastMileOptions.clear();
         currentMetroFare = 0.0;
         logoutItem.setEnabled(false);
@@ -326,7 +346,7 @@ public class MetroUIApp extends JFrame {
         panel.add(bottomPanel, BorderLayout.SOUTH);
 
         // Button actions
-        findRouteButton.addActionListener(e -> handleFindRoute());
+        findRouteButton.addActionListener(e -> handleFindRoute(findRouteButton));
         startRideButton.addActionListener(e -> startRideSimulation());
         saveMetroButton.addActionListener(e -> handleSaveMetroOnlyTrip());
 
@@ -356,7 +376,21 @@ public class MetroUIApp extends JFrame {
         return label;
     }
 
-    private void handleFindRoute() {
+    private void addRouteOption(DefaultTableModel model, String label, ParetoRoutes.Option option) {
+        RouteResult route = option.getRoute();
+        model.addRow(new Object[]{
+            label + ": " + route.getHops() + " stops",
+            route.getMinutes() + " min / " + route.getTransfers() + " transfer" + (route.getTransfers() == 1 ? "" : "s"),
+            String.format("₹%.0f / %.1f", route.getFare(), option.getCrowdExposure())
+        });
+    }
+
+    /**
+     * Searches off the event thread: the route from the planner's precomputed tables, then as
+     * extras the alternatives ranked by {@link #ROUTE_MODE}, the Pareto options and the time if
+     * leaving now. The results are shown once all are in.
+     */
+    private void handleFindRoute(JButton findRouteButton) {
         String startStation = (String) startBox.getSelectedItem();
         String endStation = (String) endBox.getSelectedItem();
         
@@ -364,44 +398,117 @@ public class MetroUIApp extends JFrame {
             showAlert(JOptionPane.WARNING_MESSAGE, "Selection Error", "Please select both start and end stations.");
             return;
         }
-        
-        try {
-            List<String> routePath = planner.findRoute(startStation, endStation);
-            currentMetroFare = planner.calculateFareBetween(startStation, endStation);
-            int estimatedTime = planner.estimateTimeMinutes(routePath);
-            currentRouteStations = planner.getStationsOnRoute(startStation, endStation);
 
-            // Populate table
-            DefaultTableModel model = new DefaultTableModel();
-            model.addColumn("Station");
-            model.addColumn("Metro Line");
-            model.addColumn("Type");
+        findRouteButton.setEnabled(false);
+        detailsArea.setText("Finding route from " + startStation + " to " + endStation + "...");
+        LocalTime now = LocalTime.now();
+        new SwingWorker<RouteSearch, Void>() {
+            @Override
+            protected RouteSearch doInBackground() throws Exception {
+                RouteResult route = planner.planJourney(startStation, endStation, ROUTE_MODE);
+                List<RouteResult> alternatives = new ArrayList<>();
+                for (RouteResult alt : planner.findAlternatives(startStation, endStation, ROUTE_MODE, 4)) {
+                    if (!alt.getPath().equals(route.getPath()) && alternatives.size() < 3) alternatives.add(alt);
+                }
+                ParetoRoutes options = planner.findParetoRoutes(startStation, endStation);
+                int leavingNow = planner.estimateTimeMinutes(route.getPath(), now);
+                return new RouteSearch(route, alternatives, options, leavingNow);
+            }
 
-            for (Station station : currentRouteStations) {
-                String line = getLineNameForCorridor(station.getCorridorNumber());
-                String type = station.getClass().getSimpleName();
-                model.addRow(new Object[]{station.getName(), line, type});
+            @Override
+            protected void done() {
+                findRouteButton.setEnabled(true);
+                try {
+                    showRoute(get(), now);
+                } catch (ExecutionException ex) {
+                    detailsArea.setText("");
+                    showAlert(JOptionPane.ERROR_MESSAGE, "Route Error", "Error finding route: " + ex.getCause().getMessage());
+                } catch (InterruptedException ex) {
+                    Thread.currentThread().interrupt();
+                }
             }
-            routeTable.setModel(model);
+        }.execute();
+    }
 
-            // Update details
-            double distance = carbonService.calculateDistance(currentRouteStations);
-            double co2Saved = carbonService.calculateCO2Saved(distance);
-            
-            StringBuilder details = new StringBuilder();
-            details.append("═══════════════════ JOURNEY DETAILS ═══════════════════\n\n");
-            details.append("Total Stations:  ").append(currentRouteStations.size()).append("\n");
-            details.append("Total Distance:  ").append(String.format("%.1f km", distance)).append("\n");
-            details.append("Estimated Time:  ").append(estimatedTime).append(" minutes\n");
-            details.append("Metro Fare:      ₹").append(String.format("%.0f", currentMetroFare)).append("\n");
-            details.append("CO₂ Saved:       ").append(carbonService.formatCO2Saved(co2Saved)).append("\n\n");
-            details.append("Route: ").append(String.join(" → ", routePath));
+    /** Results of one Find Route click, computed off the event thread. */
+    private static final class RouteSearch {
+        final RouteResult route;
+        final List<RouteResult> alternatives;
+        final ParetoRoutes options;
+        final int minutesLeavingNow;
+
+        RouteSearch(RouteResult route, List<RouteResult> alternatives, ParetoRoutes options, int minutesLeavingNow) {
+            this.route = route;
+            this.alternatives = alternatives;
+            this.options = options;
+            this.minutesLeavingNow = minutesLeavingNow;
+        }
+    }
 
-            detailsArea.setText(details.toString());
+    private void showRoute(RouteSearch search, LocalTime now) {
+        currentRoute = search.route;
+        List<String> routePath = currentRoute.getPath();
+        currentMetroFare = currentRoute.getFare();
+        int estimatedTime = currentRoute.getMinutes();
+        currentRouteStations = currentRoute.getStations();
 
-        } catch (Exception ex) {
-            showAlert(JOptionPane.ERROR_MESSAGE, "Route Error", "Error finding route: " + ex.getMessage());
+        // Populate table
+        DefaultTableModel model = new DefaultTableModel();
+        model.addColumn("Station");
+        model.addColumn("Metro Line");
+        model.addColumn("Type");
+
+        for (Station station : currentRouteStations) {
+            String line = getLineNameForCorridor(station.getCorridorNumber());
+            String type = station.getClass().getSimpleName();
+            model.addRow(new Object[]{station.getName(), line, type});
+        }
+
+        List<RouteResult> alternatives = search.alternatives;
+        if (!alternatives.isEmpty()) {
+            model.addRow(new Object[]{"", "", ""});
+            model.addRow(new Object[]{"ALTERNATIVE ROUTES", "Time / Transfers", "Fare"});
+            for (int i = 0; i < alternatives.size(); i++) {
+                RouteResult alt = alternatives.get(i);
+                String via = alt.getLegs().size() > 1 ? " via " + alt.getLegs().get(1).getFrom() : "";
+                model.addRow(new Object[]{
+                    "Option " + (i + 1) + ": " + alt.getHops() + " stops" + via,
+                    alt.getMinutes() + " min / " + alt.getTransfers() + " transfer" + (alt.getTransfers() == 1 ? "" : "s"),
+                    String.format("₹%.0f", alt.getFare())
+                });
+            }
+        }
+        ParetoRoutes options = search.options;
+        if (options.getOptions().size() > 1) {
+            model.addRow(new Object[]{"", "", ""});
+            model.addRow(new Object[]{"ROUTE OPTIONS", "Time / Transfers", "Fare / Crowding"});
+            addRouteOption(model, "Fastest", options.fastest());
+            addRouteOption(model, "Cheapest", options.cheapest());
+            addRouteOption(model, "Least crowded", options.leastCrowded());
         }
+        routeTable.setModel(model);
+
+        // Update details
+        double distance = currentRoute.getDistanceKm();
+        double co2Saved = carbonService.calculateCO2Saved(distance);
+        
+        StringBuilder details = new StringBuilder();
+        details.append("═══════════════════ JOURNEY DETAILS ═══════════════════\n\n");
+        details.append("Total Stations:  ").append(currentRouteStations.size()).append("\n");
+        details.append("Total Distance:  ").append(String.format("%.1f km", distance)).append("\n");
+        details.append("Estimated Time:  ").append(estimatedTime).append(" minutes\n");
+        if (ServiceProfile.isInService(now)) {
+            details.append("Leaving Now:     ").append(search.minutesLeavingNow)
+                .append(" minutes (").append(ServiceProfile.isPeakHour(now) ? "peak" : "off-peak")
+                .append(" service, waits included)\n");
+        } else {
+            details.append("Leaving Now:     no service until ").append(ServiceProfile.firstTrain()).append("\n");
+        }
+        details.append("Metro Fare:      ₹").append(String.format("%.0f", currentMetroFare)).append("\n");
+        details.append("CO₂ Saved:       ").append(carbonService.formatCO2Saved(co2Saved)).append("\n\n");
+        details.append("Route: ").append(String.join(" → ", routePath));
+
+        detailsArea.setText(details.toString());
     }
 
     private void startRideSimulation() {
@@ -457,7 +564,7 @@ public class MetroUIApp extends JFrame {
         }
         
         try {
-            double metroDistance = carbonService.calculateDistance(currentRouteStations);
+            double metroDistance = currentRoute.getDistanceKm();
             double co2Saved = carbonService.calculateCO2Saved(metroDistance);
             
             FileHandler.recordTrip(currentUser, currentRouteStations, 0.0, co2Saved);
@@ -484,7 +591,7 @@ public class MetroUIApp extends JFrame {
 
         inputPanel.add(createLabel("Destination Address:"));
         inputPanel.add(lastMileAddressField);
-        inputPanel.add(createLabel("Distance (km):"));
+        inputPanel.add(createLabel("Distance (km, filled in if address is lat, lon):"));
         inputPanel.add(lastMileDistanceField);
 
         JPanel buttonPanelTop = new JPanel(new FlowLayout(FlowLayout.CENTER));
@@ -548,15 +655,28 @@ public class MetroUIApp extends JFrame {
         }
         
         double distance;
-        try {
-            distance = Double.parseDouble(lastMileDistanceField.getText().trim());
-            if (distance <= 0) {
-                showAlert(JOptionPane.WARNING_MESSAGE, "Input Error", "Distance must be a positive number.");
+        String distanceText = lastMileDistanceField.getText().trim();
+        GeoPoint point = GeoPoint.parse(destination);
+        GeoPoint exit = currentRouteStations.get(currentRouteStations.size() - 1).getLocation();
+        if (point != null && exit != null) {
+            // Recomputed on every load, so the field follows a changed destination or route.
+            distance = LastMileService.estimateRoadKm(exit, point);
+            lastMileDistanceField.setText(String.format(Locale.ROOT, "%.1f", distance));
+        } else if (distanceText.isEmpty()) {
+            showAlert(JOptionPane.WARNING_MESSAGE, "Input Error",
+                "Enter a distance, or the destination as 'latitude, longitude'.");
+            return;
+        } else {
+            try {
+                distance = Double.parseDouble(distanceText);
+                if (distance <= 0) {
+                    showAlert(JOptionPane.WARNING_MESSAGE, "Input Error", "Distance must be a positive number.");
+                    return;
+                }
+            } catch (NumberFormatException ex) {
+                showAlert(JOptionPane.WARNING_MESSAGE, "Input Error", "Invalid distance. Please enter a number.");
                 return;
             }
-        } catch (NumberFormatException ex) {
-            showAlert(JOptionPane.WARNING_MESSAGE, "Input Error", "Invalid distance. Please enter a number.");
-            return;
         }
 
         List<LastMileService.TransportOption> options =
@@ -589,11 +709,35 @@ public class MetroUIApp extends JFrame {
         if (model.getRowCount() == 0) {
             model.addRow(new Object[]{"No options", "—", "—", "—"});
         }
+        if (point != null) addDoorToDoorOptions(model, destination, point);
         
         lastMileTable.setModel(model);
         showAlert(JOptionPane.INFORMATION_MESSAGE, "Success", "✓ Transport options loaded!");
     }
 
+    /**
+     * Lists below the rides from the route's last station the door-to-door trips from its
+     * first, which may leave the metro at another exit. These rows are for comparison only.
+     */
+    private void addDoorToDoorOptions(DefaultTableModel model, String destination, GeoPoint point) {
+        String origin = currentRouteStations.get(0).getName();
+        model.addRow(new Object[]{"", "", "", ""});
+        model.addRow(new Object[]{"DOOR TO DOOR FROM " + origin, "Total Fare", "Total Time", "Exit"});
+        try {
+            DoorToDoorRoutes routes = doorToDoor.plan(origin, doorToDoor.destinationAt(destination, point));
+            for (DoorToDoorRoutes.Option option : routes.getOptions()) {
+                model.addRow(new Object[]{
+                    option.getLastMile().getMode().getDisplayName(),
+                    String.format("₹%.0f", option.getFare()),
+                    option.getMinutes() + " min",
+                    option.getExitStation()
+                });
+            }
+        } catch (StationNotFoundException | InvalidRouteException ex) {
+            model.addRow(new Object[]{ex.getMessage(), "—", "—", "—"});
+        }
+    }
+
     private void startLastMileRide() {
         int idx = lastMileTable.getSelectedRow();
         if (idx < 0 || idx >= currentLastMileOptions.size()) {
@@ -630,7 +774,7 @@ public class MetroUIApp extends JFrame {
         }
 
         try {
-            double metroDistance = carbonService.calculateDistance(currentRouteStations);
+            double metroDistance = currentRoute.getDistanceKm();
             double co2Saved = carbonService.calculateCO2Saved(metroDistance);
             
             FileHandler.recordTrip(currentUser, currentRouteStations, lastMileDistance, co2Saved);
@@ -732,7 +876,7 @@ public class MetroUIApp extends JFrame {
             return;
         }
         
-        double distance = carbonService.calculateDistance(currentRouteStations);
+        double distance = currentRoute.getDistanceKm();
         double co2Saved = carbonService.calculateCO2Saved(distance);
         
         StringBuilder info = new StringBuilder();
@@ -764,27 +908,15 @@ public class MetroUIApp extends JFrame {
         JPanel linesPanel = new JPanel(new GridLayout(1, 3, 15, 0));
         linesPanel.setBackground(new Color(245, 248, 255));
 
-        linesPanel.add(buildLinePanel("🔴 Red Line", "Miyapur → LB Nagar", new String[]{
-            "Miyapur", "JNTU College", "KPHB Colony", "Kukatpally", "Balanagar",
-            "Moosapet", "Bharat Nagar", "Erragadda", "ESI Hospital", "SR Nagar",
-            "Ameerpet", "Punjagutta", "Irrum Manzil", "Khairatabad", "Lakdi-ka-pul",
-            "Assembly", "Nampally", "Gandhi Bhavan", "Osmania Medical College",
-            "MGBS", "Malakpet", "New Market", "Musarambagh", "Dilsukhnagar",
-            "Chaitanyapuri", "Victoria Memorial", "LB Nagar"
-        }, new Color(0xB71C1C), new Color(255, 200, 200)));
-
-        linesPanel.add(buildLinePanel("🔵 Blue Line", "Nagole → Raidurg", new String[]{
-            "Nagole", "Uppal", "Stadium", "NGRI", "Habsiguda", "Tarnaka",
-            "Mettuguda", "Secunderabad East", "Parade Ground", "Paradise", "Rasoolpura",
-            "Prakash Nagar", "Begumpet", "Ameerpet", "Madhura Nagar", "Yusufguda",
-            "Road No. 5 Jubilee Hills", "Jubilee Hills Check Post", "Peddamma Gudi",
-            "Madhapur", "Durgam Cheruvu", "Hitec City", "Raidurg"
-        }, new Color(0x0D47A1), new Color(173, 216, 230)));
-
-        linesPanel.add(buildLinePanel("🟢 Green Line", "JBS Parade → MGBS", new String[]{
-            "JBS Parade Ground", "Secunderabad West", "Gandhi Hospital", "Musheerabad",
-            "RTC Cross Roads", "Chikkadpally", "Narayanaguda", "Sultan Bazaar", "MGBS"
-        }, new Color(0x1B5E20), new Color(144, 238, 144)));
+        List<List<String>> lines = planner.getNetwork().getLines();
+        linesPanel.add(buildLinePanel("🔴 Red Line", "Miyapur → LB Nagar", lines.get(0).toArray(new String[0]),
+            new Color(0xB71C1C), new Color(255, 200, 200)));
+
+        linesPanel.add(buildLinePanel("🔵 Blue Line", "Nagole → Raidurg", lines.get(1).toArray(new String[0]),
+            new Color(0x0D47A1), new Color(173, 216, 230)));
+
+        linesPanel.add(buildLinePanel("🟢 Green Line", "JBS Parade → MGBS", lines.get(2).toArray(new String[0]),
+            new Color(0x1B5E20), new Color(144, 238, 144)));
 
         panel.add(linesPanel, BorderLayout.CENTER);
 
@@ -893,17 +1025,47 @@ public class MetroUIApp extends JFrame {
         refreshButton.setFont(new Font("Segoe UI", Font.BOLD, 12));
         refreshButton.setCursor(Cursor.getPredefinedCursor(Cursor.HAND_CURSOR));
         buttonPanel.add(refreshButton);
+        olderTripsButton = new JButton("Load Older Trips");
+        olderTripsButton.setFont(new Font("Segoe UI", Font.BOLD, 12));
+        olderTripsButton.setCursor(Cursor.getPredefinedCursor(Cursor.HAND_CURSOR));
+        buttonPanel.add(olderTripsButton);
         panel.add(buttonPanel, BorderLayout.SOUTH);
 
         refreshButton.addActionListener(e -> loadTripHistory());
+        olderTripsButton.addActionListener(e -> loadOlderTrips());
         loadTripHistory();
 
         return panel;
     }
 
+    /** Shows the newest page of trips; older ones are read a page at a time on request. */
     private void loadTripHistory() {
-        String text = FileHandler.loadTripHistory(currentUser);
-        historyArea.setText(text);
+        historyPage = null;
+        legacyPage = null;
+        historyArea.setText("");
+        loadOlderTrips();
+        if (historyArea.getText().isEmpty()) historyArea.setText("No trip history yet.");
+        historyArea.setCaretPosition(0);
+    }
+
+    /** The next page of logged trips; past the oldest, pages of any legacy text history. */
+    private void loadOlderTrips() {
+        try {
+            if (historyPage == null || historyPage.hasOlder()) {
+                historyPage = FileHandler.loadTripPage(currentUser, historyPage);
+                historyArea.append(TripHistory.render(historyPage));
+                if (historyPage.hasOlder()) {
+                    olderTripsButton.setEnabled(true);
+                    return;
+                }
+            }
+            legacyPage = FileHandler.loadLegacyPage(currentUser, legacyPage);
+            historyArea.append(legacyPage.getText());
+            olderTripsButton.setEnabled(legacyPage.hasOlder());
+        } catch (java.io.IOException e) {
+            historyArea.append("Error reading trip history: " + e.getMessage() + "\n");
+            olderTripsButton.setEnabled(false);
+        }
     }
 
     private JPanel buildStatsPanel() {
@@ -0,0 +1,187 @@
+package solvexis.data;
+
+import solvexis.model.GeoPoint;
+import java.util.*;
+
+/**
+ * Source description of a metro network: the ordered stations of every line and the
+ * distance of each segment, plus where each station is when that is known. A station listed
+ * on several lines is an interchange.
+ */
+public final class NetworkDefinition {
+    public static final int DEFAULT_SEGMENT_METERS = 1500;
+    /** Track length over straight-line distance between neighbouring platforms, for curves. */
+    private static final double TRACK_CURVATURE = 1.1;
+
+    private final List<String> lineNames;
+    private final List<List<String>> lines;
+    private final List<int[]> segmentMeters;
+    private final Map<String, GeoPoint> locations;
+
+    /**
+     * @param segmentMeters per line, the distance from station {@code i} to {@code i + 1}
+     */
+    public NetworkDefinition(List<String> lineNames, List<List<String>> lines, List<int[]> segmentMeters) {
+        this(lineNames, lines, segmentMeters, Collections.emptyMap());
+    }
+
+    /**
+     * @param locations position of each station by name; stations left out have none
+     */
+    public NetworkDefinition(List<String> lineNames, List<List<String>> lines, List<int[]> segmentMeters,
+                             Map<String, GeoPoint> locations) {
+        if (lineNames.size() != lines.size() || segmentMeters.size() != lines.size())
+            throw new IllegalArgumentException("Line names, stations and distances must cover the same lines");
+        List<List<String>> lineCopies = new ArrayList<>();
+        List<int[]> meterCopies = new ArrayList<>();
+        for (int li = 0; li < lines.size(); li++) {
+            List<String> line = lines.get(li);
+            int[] meters = segmentMeters.get(li);
+            if (line.size() < 2)
+                throw new IllegalArgumentException("Line " + lineNames.get(li) + " needs at least two stations");
+            if (meters.length != line.size() - 1)
+                throw new IllegalArgumentException("Line " + lineNames.get(li) + " needs one distance per segment");
+            lineCopies.add(Collections.unmodifiableList(new ArrayList<>(line)));
+            meterCopies.add(meters.clone());
+        }
+        this.lineNames = Collections.unmodifiableList(new ArrayList<>(lineNames));
+        this.lines = Collections.unmodifiableList(lineCopies);
+        this.segmentMeters = meterCopies;
+
+        Set<String> stations = new HashSet<>();
+        for (List<String> line : lineCopies) stations.addAll(line);
+        for (String name : locations.keySet()) {
+            if (!stations.contains(name))
+                throw new IllegalArgumentException("Location given for unknown station " + name);
+        }
+        this.locations = Collections.unmodifiableMap(new LinkedHashMap<>(locations));
+    }
+
+    /** This definition with station positions added. */
+    public NetworkDefinition withLocations(Map<String, GeoPoint> locations) {
+        return new NetworkDefinition(lineNames, lines, segmentMeters, locations);
+    }
+
+    /** Definition with every segment at {@link #DEFAULT_SEGMENT_METERS}. */
+    public static NetworkDefinition ofLines(List<String> lineNames, List<List<String>> lines) {
+        List<int[]> meters = new ArrayList<>();
+        for (List<String> line : lines) {
+            int[] m = new int[Math.max(0, line.size() - 1)];
+            Arrays.fill(m, DEFAULT_SEGMENT_METERS);
+            meters.add(m);
+        }
+        return new NetworkDefinition(lineNames, lines, meters);
+    }
+
+    /** Built-in Hyderabad Metro network, used when no definition file is supplied. */
+    public static NetworkDefinition hyderabad() {
+        List<String> red = Arrays.asList(
+            "Miyapur", "JNTU College", "KPHB Colony", "Kukatpally", "Balanagar",
+            "Moosapet", "Bharat Nagar", "Erragadda", "ESI Hospital", "SR Nagar",
+            "Ameerpet", "Punjagutta", "Irrum Manzil", "Khairatabad", "Lakdi-ka-pul",
+            "Assembly", "Nampally", "Gandhi Bhavan", "Osmania Medical College",
+            "MGBS", "Malakpet", "New Market", "Musarambagh", "Dilsukhnagar",
+            "Chaitanyapuri", "Victoria Memorial", "LB Nagar"
+        );
+
+        List<String> blue = Arrays.asList(
+            "Nagole", "Uppal", "Stadium", "NGRI", "Habsiguda", "Tarnaka",
+            "Mettuguda", "Secunderabad East", "Parade Ground", "Paradise", "Rasoolpura",
+            "Prakash Nagar", "Begumpet", "Ameerpet", "Madhura Nagar", "Yusufguda",
+            "Road No. 5 Jubilee Hills", "Jubilee Hills Check Post", "Peddamma Gudi",
+            "Madhapur", "Durgam Cheruvu", "Hitec City", "Raidurg"
+        );
+
+        List<String> green = Arrays.asList(
+            "JBS Parade Ground", "Secunderabad West", "Gandhi Hospital", "Musheerabad",
+            "RTC Cross Roads", "Chikkadpally", "Narayanaguda", "Sultan Bazaar", "MGBS"
+        );
+
+        List<List<String>> lines = Arrays.asList(red, blue, green);
+        Map<String, GeoPoint> locations = hyderabadLocations();
+        List<int[]> meters = new ArrayList<>();
+        for (List<String> line : lines) {
+            int[] m = new int[line.size() - 1];
+            for (int i = 0; i < m.length; i++) {
+                double km = locations.get(line.get(i)).distanceKm(locations.get(line.get(i + 1)));
+                m[i] = (int) Math.round(km * TRACK_CURVATURE * 100) * 10;
+            }
+            meters.add(m);
+        }
+        return new NetworkDefinition(Arrays.asList("Red Line", "Blue Line", "Green Line"), lines, meters, locations);
+    }
+
+    /** Approximate platform positions of the built-in network. */
+    private static Map<String, GeoPoint> hyderabadLocations() {
+        Object[][] points = {
+            {"Miyapur", 17.4968, 78.3734}, {"JNTU College", 17.4930, 78.3910},
+            {"KPHB Colony", 17.4937, 78.4013}, {"Kukatpally", 17.4850, 78.4115},
+            {"Balanagar", 17.4770, 78.4235}, {"Moosapet", 17.4720, 78.4270},
+            {"Bharat Nagar", 17.4640, 78.4340}, {"Erragadda", 17.4575, 78.4390},
+            {"ESI Hospital", 17.4475, 78.4430}, {"SR Nagar", 17.4415, 78.4460},
+            {"Ameerpet", 17.4350, 78.4447}, {"Punjagutta", 17.4285, 78.4510},
+            {"Irrum Manzil", 17.4205, 78.4545}, {"Khairatabad", 17.4120, 78.4600},
+            {"Lakdi-ka-pul", 17.4035, 78.4655}, {"Assembly", 17.3990, 78.4710},
+            {"Nampally", 17.3920, 78.4720}, {"Gandhi Bhavan", 17.3875, 78.4775},
+            {"Osmania Medical College", 17.3820, 78.4810}, {"MGBS", 17.3780, 78.4860},
+            {"Malakpet", 17.3760, 78.4960}, {"New Market", 17.3710, 78.5040},
+            {"Musarambagh", 17.3700, 78.5120}, {"Dilsukhnagar", 17.3690, 78.5260},
+            {"Chaitanyapuri", 17.3680, 78.5360}, {"Victoria Memorial", 17.3575, 78.5450},
+            {"LB Nagar", 17.3490, 78.5480},
+            {"Nagole", 17.3910, 78.5590}, {"Uppal", 17.4010, 78.5590},
+            {"Stadium", 17.4030, 78.5480}, {"NGRI", 17.4060, 78.5400},
+            {"Habsiguda", 17.4110, 78.5340}, {"Tarnaka", 17.4280, 78.5330},
+            {"Mettuguda", 17.4340, 78.5210}, {"Secunderabad East", 17.4340, 78.5080},
+            {"Parade Ground", 17.4440, 78.4970}, {"Paradise", 17.4430, 78.4870},
+            {"Rasoolpura", 17.4440, 78.4770}, {"Prakash Nagar", 17.4450, 78.4680},
+            {"Begumpet", 17.4400, 78.4580}, {"Madhura Nagar", 17.4380, 78.4380},
+            {"Yusufguda", 17.4350, 78.4270}, {"Road No. 5 Jubilee Hills", 17.4320, 78.4190},
+            {"Jubilee Hills Check Post", 17.4300, 78.4090}, {"Peddamma Gudi", 17.4330, 78.4000},
+            {"Madhapur", 17.4370, 78.3950}, {"Durgam Cheruvu", 17.4430, 78.3880},
+            {"Hitec City", 17.4480, 78.3810}, {"Raidurg", 17.4420, 78.3770},
+            {"JBS Parade Ground", 17.4480, 78.4980}, {"Secunderabad West", 17.4380, 78.4960},
+            {"Gandhi Hospital", 17.4240, 78.5010}, {"Musheerabad", 17.4170, 78.4990},
+            {"RTC Cross Roads", 17.4060, 78.4970}, {"Chikkadpally", 17.3990, 78.4960},
+            {"Narayanaguda", 17.3930, 78.4880}, {"Sultan Bazaar", 17.3840, 78.4840}
+        };
+        Map<String, GeoPoint> locations = new LinkedHashMap<>();
+        for (Object[] p : points) {
+            locations.put((String) p[0], new GeoPoint((Double) p[1], (Double) p[2]));
+        }
+        return locations;
+    }
+
+    public int lineCount() {
+        return lines.size();
+    }
+
+    public String getLineName(int line) {
+        return lineNames.get(line);
+    }
+
+    public List<String> getLineNames() {
+        return lineNames;
+    }
+
+    public List<List<String>> getLines() {
+        return lines;
+    }
+
+    public int[] getSegmentMeters(int line) {
+        return segmentMeters.get(line).clone();
+    }
+
+    public int getSegmentMeters(int line, int segment) {
+        return segmentMeters.get(line)[segment];
+    }
+
+    /** @return where {@code station} is, or null if not known */
+    public GeoPoint getLocation(String station) {
+        return locations.get(station);
+    }
+
+    /** Station positions by name; empty when the definition has none. */
+    public Map<String, GeoPoint> getLocations() {
+        return locations;
+    }
+}
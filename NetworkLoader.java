@@ -0,0 +1,266 @@
+package solvexis.data;
+
+import solvexis.model.GeoPoint;
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.util.*;
+
+/**
+ * Reads a network definition from its human-editable text form and keeps a compiled
+ * binary copy next to it, so later starts map the binary file instead of parsing text.
+ *
+ * <p>Text format, one entry per line:
+ * <pre>
+ * # comment
+ * line Red Line
+ * Miyapur @ 17.4968, 78.3734
+ * JNTU College | 1.2      (km from the previous station; 1.5 when omitted)
+ * </pre>
+ * A station name that appears on more than one line is an interchange. An optional
+ * {@code @ latitude, longitude} suffix places the station; an interchange needs it only once.
+ *
+ * <p>Binary format (big-endian): magic, version, station count, station names
+ * (u16 length + UTF-8), the latitude and longitude of each station (NaN when unknown), line
+ * count, then per line its name, station count, station ids and segment distances in metres.
+ */
+public class NetworkLoader {
+    public static final String DEFAULT_FILE = "metro_network.txt";
+    public static final String FILE_PROPERTY = "solvexis.network";
+
+    private static final int MAGIC = 0x53565853; // "SVXS"
+    private static final int VERSION = 2;
+    private static final String BINARY_SUFFIX = ".bin";
+
+    /**
+     * Loads the network named by the {@code solvexis.network} system property, or
+     * {@value #DEFAULT_FILE} in the working directory, falling back to the built-in
+     * Hyderabad network when neither exists or the file cannot be read.
+     */
+    public static NetworkDefinition loadDefault() {
+        Path text = defaultFile();
+        if (!Files.exists(text)) {
+            return NetworkDefinition.hyderabad();
+        }
+        try {
+            return load(text, binaryPathFor(text));
+        } catch (IOException | IllegalArgumentException e) {
+            System.err.println("Error loading network " + text + ": " + e.getMessage());
+            return NetworkDefinition.hyderabad();
+        }
+    }
+
+    /** The network file named by the {@code solvexis.network} property, or {@value #DEFAULT_FILE}. */
+    public static Path defaultFile() {
+        return Paths.get(System.getProperty(FILE_PROPERTY, DEFAULT_FILE));
+    }
+
+    public static Path binaryPathFor(Path text) {
+        return text.resolveSibling(text.getFileName() + BINARY_SUFFIX);
+    }
+
+    /**
+     * Returns the compiled snapshot when it is at least as new as the text definition,
+     * otherwise parses the text and rewrites the snapshot.
+     */
+    public static NetworkDefinition load(Path text, Path binary) throws IOException {
+        if (Files.exists(binary)
+                && Files.getLastModifiedTime(binary).compareTo(Files.getLastModifiedTime(text)) >= 0) {
+            try {
+                return readBinary(binary);
+            } catch (IOException | RuntimeException e) {
+                // Stale or foreign snapshot: rebuild it from the text below.
+            }
+        }
+        NetworkDefinition definition = parseText(text);
+        try {
+            writeBinary(definition, binary);
+        } catch (IOException e) {
+            System.err.println("Error writing network snapshot: " + e.getMessage());
+        }
+        return definition;
+    }
+
+    public static NetworkDefinition parseText(Path text) throws IOException {
+        List<String> lineNames = new ArrayList<>();
+        List<List<String>> lines = new ArrayList<>();
+        List<List<Integer>> meters = new ArrayList<>();
+        Map<String, GeoPoint> locations = new LinkedHashMap<>();
+
+        List<String> rows = Files.readAllLines(text, StandardCharsets.UTF_8);
+        for (int row = 0; row < rows.size(); row++) {
+            String entry = rows.get(row).trim();
+            if (entry.isEmpty() || entry.startsWith("#")) continue;
+
+            if (entry.regionMatches(true, 0, "line ", 0, 5)) {
+                lineNames.add(entry.substring(5).trim());
+                lines.add(new ArrayList<>());
+                meters.add(new ArrayList<>());
+                continue;
+            }
+            if (lines.isEmpty())
+                throw new IllegalArgumentException(text + ":" + (row + 1) + ": station before first 'line'");
+
+            int at = entry.indexOf('@');
+            if (at >= 0) {
+                GeoPoint location = parseLocation(entry.substring(at + 1), text, row);
+                entry = entry.substring(0, at).trim();
+                String station = entry.indexOf('|') >= 0 ? entry.substring(0, entry.indexOf('|')).trim() : entry;
+                GeoPoint previous = locations.putIfAbsent(station, location);
+                if (previous != null && !previous.equals(location))
+                    throw new IllegalArgumentException(text + ":" + (row + 1) + ": conflicting location for " + station);
+            }
+
+            String name = entry;
+            int meter = NetworkDefinition.DEFAULT_SEGMENT_METERS;
+            int bar = entry.indexOf('|');
+            if (bar >= 0) {
+                name = entry.substring(0, bar).trim();
+                try {
+                    meter = (int) Math.round(Double.parseDouble(entry.substring(bar + 1).trim()) * 1000);
+                } catch (NumberFormatException e) {
+                    throw new IllegalArgumentException(text + ":" + (row + 1) + ": invalid distance");
+                }
+            }
+            List<String> current = lines.get(lines.size() - 1);
+            if (!current.isEmpty()) meters.get(meters.size() - 1).add(meter);
+            current.add(name);
+        }
+
+        List<int[]> segmentMeters = new ArrayList<>();
+        for (List<Integer> m : meters) {
+            int[] arr = new int[m.size()];
+            for (int i = 0; i < arr.length; i++) arr[i] = m.get(i);
+            segmentMeters.add(arr);
+        }
+        return new NetworkDefinition(lineNames, lines, segmentMeters, locations);
+    }
+
+    private static GeoPoint parseLocation(String value, Path text, int row) {
+        String[] parts = value.split(",");
+        try {
+            if (parts.length != 2) throw new IllegalArgumentException();
+            return new GeoPoint(Double.parseDouble(parts[0].trim()), Double.parseDouble(parts[1].trim()));
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException(text + ":" + (row + 1) + ": invalid location");
+        }
+    }
+
+    public static void writeText(NetworkDefinition definition, Path text) throws IOException {
+        try (PrintWriter writer = new PrintWriter(Files.newBufferedWriter(text, StandardCharsets.UTF_8))) {
+            writer.println("# SOLVEXIS network definition");
+            writer.println("# 'line <name>' starts a line; 'Station | km' gives the distance from the previous station.");
+            writer.println("# A station listed on more than one line is an interchange.");
+            writer.println("# An optional '@ latitude, longitude' after a station places it.");
+            Set<String> placed = new HashSet<>();
+            for (int li = 0; li < definition.lineCount(); li++) {
+                writer.println();
+                writer.println("line " + definition.getLineName(li));
+                List<String> line = definition.getLines().get(li);
+                for (int i = 0; i < line.size(); i++) {
+                    String name = line.get(i);
+                    GeoPoint location = definition.getLocation(name);
+                    String suffix = location != null && placed.add(name) ? " @ " + location : "";
+                    if (i == 0) {
+                        writer.println(name + suffix);
+                    } else {
+                        writer.printf(Locale.ROOT, "%s | %.3f%s%n", name,
+                            definition.getSegmentMeters(li, i - 1) / 1000.0, suffix);
+                    }
+                }
+            }
+        }
+    }
+
+    public static void writeBinary(NetworkDefinition definition, Path binary) throws IOException {
+        Map<String, Integer> ids = new LinkedHashMap<>();
+        for (List<String> line : definition.getLines()) {
+            for (String name : line) ids.putIfAbsent(name, ids.size());
+        }
+
+        Path tmp = binary.resolveSibling(binary.getFileName() + ".tmp");
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(tmp)))) {
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeInt(ids.size());
+            for (String name : ids.keySet()) writeName(out, name);
+            for (String name : ids.keySet()) {
+                GeoPoint location = definition.getLocation(name);
+                out.writeDouble(location == null ? Double.NaN : location.getLatitude());
+                out.writeDouble(location == null ? Double.NaN : location.getLongitude());
+            }
+            out.writeInt(definition.lineCount());
+            for (int li = 0; li < definition.lineCount(); li++) {
+                List<String> line = definition.getLines().get(li);
+                writeName(out, definition.getLineName(li));
+                out.writeInt(line.size());
+                for (String name : line) out.writeInt(ids.get(name));
+                for (int m : definition.getSegmentMeters(li)) out.writeInt(m);
+            }
+        }
+        try {
+            Files.move(tmp, binary, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (AtomicMoveNotSupportedException e) {
+            Files.move(tmp, binary, StandardCopyOption.REPLACE_EXISTING);
+        }
+    }
+
+    /**
+     * Maps and decodes a snapshot. The header is checked with a plain read first, so a
+     * snapshot of another version is rejected without a mapping that would keep Windows from
+     * replacing the file.
+     */
+    public static NetworkDefinition readBinary(Path binary) throws IOException {
+        try (FileChannel channel = FileChannel.open(binary, StandardOpenOption.READ)) {
+            ByteBuffer header = ByteBuffer.allocate(8);
+            while (header.hasRemaining()) {
+                if (channel.read(header, header.position()) < 0) throw new IOException("Not a network snapshot: " + binary);
+            }
+            if (header.getInt(0) != MAGIC) throw new IOException("Not a network snapshot: " + binary);
+            int version = header.getInt(4);
+            if (version != VERSION) throw new IOException("Unsupported network snapshot version " + version);
+
+            MappedByteBuffer buf = channel.map(FileChannel.MapMode.READ_ONLY, 8, channel.size() - 8);
+
+            String[] names = new String[buf.getInt()];
+            for (int i = 0; i < names.length; i++) names[i] = readName(buf);
+            Map<String, GeoPoint> locations = new LinkedHashMap<>();
+            for (String name : names) {
+                double latitude = buf.getDouble();
+                double longitude = buf.getDouble();
+                if (!Double.isNaN(latitude)) locations.put(name, new GeoPoint(latitude, longitude));
+            }
+
+            int lineCount = buf.getInt();
+            List<String> lineNames = new ArrayList<>(lineCount);
+            List<List<String>> lines = new ArrayList<>(lineCount);
+            List<int[]> meters = new ArrayList<>(lineCount);
+            for (int li = 0; li < lineCount; li++) {
+                lineNames.add(readName(buf));
+                String[] line = new String[buf.getInt()];
+                for (int i = 0; i < line.length; i++) line[i] = names[buf.getInt()];
+                int[] m = new int[Math.max(0, line.length - 1)];
+                buf.asIntBuffer().get(m);
+                buf.position(buf.position() + m.length * 4);
+                lines.add(Arrays.asList(line));
+                meters.add(m);
+            }
+            return new NetworkDefinition(lineNames, lines, meters, locations);
+        }
+    }
+
+    private static void writeName(DataOutputStream out, String name) throws IOException {
+        byte[] bytes = name.getBytes(StandardCharsets.UTF_8);
+        out.writeShort(bytes.length);
+        out.write(bytes);
+    }
+
+    private static String readName(ByteBuffer buf) {
+        byte[] bytes = new byte[buf.getShort() & 0xFFFF];
+        buf.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,241 @@
+package solvexis.service;
+
+import solvexis.data.NetworkDefinition;
+import solvexis.data.NetworkLoader;
+import solvexis.model.*;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.*;
+
+/**
+ * Immutable view of the metro network shared by every service in the JVM: the station
+ * objects, the ordered station list of each corridor, the routing graph, per-corridor
+ * distance prefix sums, the spatial index of station positions and the precomputed route
+ * tables and contraction hierarchies. {@link #get()} builds it once on first use from
+ * the network file named by {@link NetworkLoader#defaultFile()}, or the built-in network. Runtime closures are not part of the snapshot; they
+ * are layered on top by its {@link DisruptionService}.
+ */
+public final class NetworkSnapshot {
+    public static final int TIME_PER_STOP = 2;
+    public static final int TRANSFER_PENALTY = 3;
+
+    private final NetworkDefinition definition;
+    private final Map<String, Station> stations;
+    private final List<List<String>> lines;
+    private final List<List<Station>> corridors;
+    private final MetroGraph graph;
+    private final TimeOptimalRouter fastestRouter;
+    private final DisruptionService disruptions;
+    private final ServiceProfile serviceProfile;
+    private final StationIndex stationIndex;
+    private final CorridorDistances distances;
+    private final EnumMap<RoutingMode, RouteTable> routeTables = new EnumMap<>(RoutingMode.class);
+    private final EnumMap<RoutingMode, ContractionHierarchy> hierarchies = new EnumMap<>(RoutingMode.class);
+    private final Path hierarchyBase;
+
+    private static class Holder {
+        static final NetworkSnapshot INSTANCE = load();
+
+        /**
+         * Loads the network file as {@link NetworkLoader#loadDefault()} does, storing hierarchies
+         * beside it. The built-in network keeps them in memory, as it has no file of its own.
+         */
+        private static NetworkSnapshot load() {
+            Path file = NetworkLoader.defaultFile();
+            if (Files.exists(file)) {
+                try {
+                    return new NetworkSnapshot(NetworkLoader.load(file, NetworkLoader.binaryPathFor(file)), file);
+                } catch (IOException | IllegalArgumentException e) {
+                    System.err.println("Error loading network " + file + ": " + e.getMessage());
+                }
+            }
+            return new NetworkSnapshot(NetworkDefinition.hyderabad(), null);
+        }
+    }
+
+    public static NetworkSnapshot get() {
+        return Holder.INSTANCE;
+    }
+
+    /**
+     * Builds a snapshot from a network definition; corridor numbers are the line positions
+     * starting at 1. A station on several corridors becomes a {@link JunctionStation}, the
+     * ends of a corridor become {@link TerminalStation}s.
+     */
+    public NetworkSnapshot(NetworkDefinition definition) {
+        this(definition, null);
+    }
+
+    /**
+     * @param hierarchyBase contraction hierarchies are stored next to this file as
+     *                      {@code <name>.<mode>.ch}; null keeps them in memory only
+     */
+    public NetworkSnapshot(NetworkDefinition definition, Path hierarchyBase) {
+        this.definition = definition;
+        this.hierarchyBase = hierarchyBase;
+        this.lines = definition.getLines();
+
+        Map<String, List<Integer>> corridorsByStation = new LinkedHashMap<>();
+        Set<String> terminals = new HashSet<>();
+        for (int li = 0; li < lines.size(); li++) {
+            List<String> line = lines.get(li);
+            for (String name : line) {
+                List<Integer> served = corridorsByStation.computeIfAbsent(name, k -> new ArrayList<>());
+                if (!served.contains(li + 1)) served.add(li + 1);
+            }
+            terminals.add(line.get(0));
+            terminals.add(line.get(line.size() - 1));
+        }
+
+        Map<String, Station> stationMap = new LinkedHashMap<>();
+        for (Map.Entry<String, List<Integer>> e : corridorsByStation.entrySet()) {
+            String name = e.getKey();
+            List<Integer> served = e.getValue();
+            Station station;
+            if (served.size() > 1) {
+                station = new JunctionStation(name, Collections.unmodifiableList(served));
+            } else if (terminals.contains(name)) {
+                station = new TerminalStation(name, served.get(0));
+            } else {
+                station = new NormalStation(name, served.get(0));
+            }
+            station.setLocation(definition.getLocation(name));
+            stationMap.put(name, station);
+        }
+        this.stations = Collections.unmodifiableMap(stationMap);
+
+        List<List<Station>> corridorList = new ArrayList<>();
+        for (List<String> line : lines) {
+            List<Station> corridor = new ArrayList<>(line.size());
+            for (int i = 0; i < line.size(); i++) {
+                Station current = stationMap.get(line.get(i));
+                corridor.add(current);
+                if (i > 0) {
+                    Station previous = corridor.get(i - 1);
+                    previous.addConnection(current);
+                    current.addConnection(previous);
+                }
+            }
+            corridorList.add(Collections.unmodifiableList(corridor));
+        }
+        this.corridors = Collections.unmodifiableList(corridorList);
+
+        this.graph = MetroGraph.fromDefinition(definition, TIME_PER_STOP);
+        this.fastestRouter = new TimeOptimalRouter(graph, TRANSFER_PENALTY);
+        this.distances = new CorridorDistances(definition, graph);
+        this.disruptions = new DisruptionService(graph);
+        this.serviceProfile = ServiceProfile.standard(graph.lineCount());
+
+        GeoPoint[] locations = new GeoPoint[graph.size()];
+        for (int id = 0; id < locations.length; id++) {
+            locations[id] = definition.getLocation(graph.name(id));
+        }
+        this.stationIndex = new StationIndex(locations);
+    }
+
+    public NetworkDefinition getDefinition() {
+        return definition;
+    }
+
+    public Station getStation(String name) {
+        return stations.get(name);
+    }
+
+    public Set<String> getStationNames() {
+        return stations.keySet();
+    }
+
+    public Collection<Station> getAllStations() {
+        return stations.values();
+    }
+
+    /** Station names of each corridor in running order. */
+    public List<List<String>> getLines() {
+        return lines;
+    }
+
+    public List<List<Station>> getCorridors() {
+        return corridors;
+    }
+
+    public MetroGraph getGraph() {
+        return graph;
+    }
+
+    public TimeOptimalRouter getFastestRouter() {
+        return fastestRouter;
+    }
+
+    /** Default time-of-day service pattern for departure-time queries. */
+    public ServiceProfile getServiceProfile() {
+        return serviceProfile;
+    }
+
+    /** Track distances between stations, one lookup per leg. */
+    public CorridorDistances getCorridorDistances() {
+        return distances;
+    }
+
+    /** Nearest-station and radius lookups over the stations whose position is known. */
+    public StationIndex getStationIndex() {
+        return stationIndex;
+    }
+
+    /** Station and segment closures in force on this network. */
+    public DisruptionService getDisruptions() {
+        return disruptions;
+    }
+
+    /** Precomputed all-pairs table for {@code mode}, built on first request and then shared. */
+    public synchronized RouteTable getRouteTable(RoutingMode mode) {
+        if (mode.usesLiveData())
+            throw new IllegalArgumentException(mode + " routes cannot be precomputed");
+        RouteTable table = routeTables.get(mode);
+        if (table == null) {
+            if (mode == RoutingMode.FASTEST) {
+                table = RouteTable.fastest(fastestRouter, NetworkSnapshot::fareForStationCount);
+            } else {
+                table = RouteTable.fewestStations(graph, TRANSFER_PENALTY, NetworkSnapshot::fareForStationCount);
+            }
+            routeTables.put(mode, table);
+        }
+        return table;
+    }
+
+    /**
+     * Contraction hierarchy for {@code mode}, read from its stored file when that matches this
+     * network and built (and stored) otherwise.
+     */
+    public synchronized ContractionHierarchy getContractionHierarchy(RoutingMode mode) {
+        if (mode.usesLiveData())
+            throw new IllegalArgumentException(mode + " routes cannot be precomputed");
+        ContractionHierarchy hierarchy = hierarchies.get(mode);
+        if (hierarchy == null) {
+            if (hierarchyBase == null) {
+                hierarchy = ContractionHierarchy.build(fastestRouter, mode);
+            } else {
+                Path file = hierarchyBase.resolveSibling(
+                    hierarchyBase.getFileName() + "." + mode.name().toLowerCase(Locale.ROOT) + ".ch");
+                hierarchy = ContractionHierarchy.loadOrBuild(file, fastestRouter, mode);
+            }
+            hierarchies.put(mode, hierarchy);
+        }
+        return hierarchy;
+    }
+
+    /** Metro fare for a trip passing through {@code numStations} stations, ends included. */
+    public static double fareForStationCount(int numStations) {
+        if (numStations <= 2) {
+            return 10.0;
+        } else if (numStations <= 5) {
+            return 15.0;
+        } else if (numStations <= 9) {
+            return 20.0;
+        } else if (numStations <= 16) {
+            return 30.0;
+        } else {
+            return 40.0;
+        }
+    }
+}
@@ -0,0 +1,292 @@
+package solvexis.service;
+
+import java.util.*;
+
+/**
+ * Multi-criteria label-setting search over the (station, line) state graph of
+ * {@link TimeOptimalRouter}. Every label carries travel minutes, stations passed, transfers
+ * and crowd exposure; a label is kept only while no other label at the same state (or at the
+ * target) is at least as good on all four, so one search yields every Pareto-optimal journey.
+ *
+ * <p>Stations passed stand in for fare during the search: fares only rise with the station
+ * count, so a route with fewer stations is never dearer whatever is appended to it. Crowd
+ * exposure is the platform density, in tenths of a person per m², summed over every station
+ * the train stops at and counted once more at each interchange where the rider waits. A
+ * journey that passes a station twice then never beats changing lines there directly, so
+ * every journey found is loopless.
+ *
+ * <p>Labels live in parallel int arrays grown by doubling, and the queue is a binary heap of
+ * longs packing (minutes, label), so nothing is boxed per label.
+ */
+public class ParetoRouter {
+    private static final int INDEX_BITS = 32;
+
+    private final TimeOptimalRouter router;
+    private final MetroGraph graph;
+    private final int[] crowdUnits;
+
+    private int[] labelState;
+    private int[] labelMinutes;
+    private int[] labelStations;
+    private int[] labelTransfers;
+    private int[] labelCrowd;
+    private int[] labelParent;
+    private int[] labelNext;
+    private boolean[] labelDead;
+    private int labelCount;
+
+    private final int[] bagHead;
+    private long[] queue;
+    private int queueSize;
+    private int target;
+
+    /**
+     * @param crowd densities charged as crowd exposure, or null to ignore crowding
+     */
+    public ParetoRouter(TimeOptimalRouter router, CrowdSnapshot crowd) {
+        this.router = router;
+        this.graph = router.getGraph();
+        crowdUnits = new int[graph.size()];
+        if (crowd != null) {
+            for (int i = 0; i < crowdUnits.length; i++) {
+                crowdUnits[i] = (int) Math.round(crowd.density(i) * 10);
+            }
+        }
+        int capacity = 1024;
+        labelState = new int[capacity];
+        labelMinutes = new int[capacity];
+        labelStations = new int[capacity];
+        labelTransfers = new int[capacity];
+        labelCrowd = new int[capacity];
+        labelParent = new int[capacity];
+        labelNext = new int[capacity];
+        labelDead = new boolean[capacity];
+        // One bag per state plus a shared bag for all states of the target station.
+        bagHead = new int[router.stateCount() + 1];
+        queue = new long[capacity];
+    }
+
+    /** One Pareto-optimal journey: its station path, lines ridden and criteria. */
+    public static final class Journey {
+        private final int[] path;
+        private final int[] lines;
+        private final int minutes;
+        private final int transfers;
+        private final double crowdExposure;
+
+        Journey(int[] path, int[] lines, int minutes, int transfers, double crowdExposure) {
+            this.path = path;
+            this.lines = lines;
+            this.minutes = minutes;
+            this.transfers = transfers;
+            this.crowdExposure = crowdExposure;
+        }
+
+        /** @return station ids from origin to destination */
+        public int[] getPath() {
+            return path.clone();
+        }
+
+        /** @return line ridden on each hop of {@link #getPath()} */
+        public int[] getLines() {
+            return lines.clone();
+        }
+
+        public int getMinutes() {
+            return minutes;
+        }
+
+        public int getTransfers() {
+            return transfers;
+        }
+
+        public double getFare() {
+            return NetworkSnapshot.fareForStationCount(path.length);
+        }
+
+        /** @return platform density summed over every stop and again per interchange, persons/m² */
+        public double getCrowdExposure() {
+            return crowdExposure;
+        }
+
+        boolean dominates(Journey o) {
+            return minutes <= o.minutes && getFare() <= o.getFare() && transfers <= o.transfers
+                && crowdExposure <= o.crowdExposure;
+        }
+    }
+
+    /**
+     * @param closures closed elements to avoid, or null
+     * @return the Pareto-optimal journeys over minutes, fare, transfers and crowd exposure,
+     *         fastest first; empty if {@code to} is unreachable
+     */
+    public List<Journey> find(int from, int to, ClosureSet closures) {
+        labelCount = 0;
+        queueSize = 0;
+        target = to;
+        Arrays.fill(bagHead, -1);
+
+        for (int s = router.firstState(from); s < router.endState(from); s++) {
+            insert(s, 0, 1, 0, crowdUnits[from], -1);
+        }
+
+        while (queueSize > 0) {
+            int label = (int) pollQueue();
+            if (labelDead[label]) continue;
+            int s = labelState[label];
+            int u = router.stationOf(s);
+            if (u == target) continue;
+
+            int minutes = labelMinutes[label];
+            int stations = labelStations[label];
+            int transfers = labelTransfers[label];
+            int crowd = labelCrowd[label];
+            for (int e = graph.firstEdge(u); e < graph.endEdge(u); e++) {
+                if (graph.line(e) != router.lineOf(s)) continue;
+                if (closures != null && closures.blocksEdge(e)) continue;
+                int v = graph.target(e);
+                insert(router.edgeTargetState(e), minutes + graph.minutes(e), stations + 1, transfers,
+                    crowd + crowdUnits[v], label);
+            }
+            if (labelParent[label] >= 0 && labelState[labelParent[label]] != s
+                    && router.stationOf(labelState[labelParent[label]]) == u) {
+                continue; // just changed lines here; changing again is never useful
+            }
+            int transferMinutes = minutes + router.getTransferPenalty();
+            for (int t = router.firstState(u); t < router.endState(u); t++) {
+                if (t != s) insert(t, transferMinutes, stations, transfers + 1, crowd + crowdUnits[u], label);
+            }
+        }
+        return journeys();
+    }
+
+    private int bagOf(int state) {
+        return router.stationOf(state) == target ? bagHead.length - 1 : state;
+    }
+
+    /** Adds the label unless its bag or the target bag holds one at least as good. */
+    private void insert(int state, int minutes, int stations, int transfers, int crowd, int parent) {
+        int bag = bagOf(state);
+        if (dominated(bagHead.length - 1, minutes, stations, transfers, crowd)) return;
+        if (bag != bagHead.length - 1 && dominated(bag, minutes, stations, transfers, crowd)) return;
+
+        // Unlink every label in the bag that the new one dominates.
+        int prevInBag = -1;
+        for (int l = bagHead[bag]; l >= 0; l = labelNext[l]) {
+            if (minutes <= labelMinutes[l] && stations <= labelStations[l]
+                    && transfers <= labelTransfers[l] && crowd <= labelCrowd[l]) {
+                labelDead[l] = true;
+                if (prevInBag < 0) bagHead[bag] = labelNext[l];
+                else labelNext[prevInBag] = labelNext[l];
+            } else {
+                prevInBag = l;
+            }
+        }
+
+        int label = newLabel();
+        labelState[label] = state;
+        labelMinutes[label] = minutes;
+        labelStations[label] = stations;
+        labelTransfers[label] = transfers;
+        labelCrowd[label] = crowd;
+        labelParent[label] = parent;
+        labelDead[label] = false;
+        labelNext[label] = bagHead[bag];
+        bagHead[bag] = label;
+        offerQueue(((long) minutes << INDEX_BITS) | label);
+    }
+
+    private boolean dominated(int bag, int minutes, int stations, int transfers, int crowd) {
+        for (int l = bagHead[bag]; l >= 0; l = labelNext[l]) {
+            if (labelMinutes[l] <= minutes && labelStations[l] <= stations
+                    && labelTransfers[l] <= transfers && labelCrowd[l] <= crowd) return true;
+        }
+        return false;
+    }
+
+    private int newLabel() {
+        if (labelCount == labelState.length) {
+            int capacity = labelCount * 2;
+            labelState = Arrays.copyOf(labelState, capacity);
+            labelMinutes = Arrays.copyOf(labelMinutes, capacity);
+            labelStations = Arrays.copyOf(labelStations, capacity);
+            labelTransfers = Arrays.copyOf(labelTransfers, capacity);
+            labelCrowd = Arrays.copyOf(labelCrowd, capacity);
+            labelParent = Arrays.copyOf(labelParent, capacity);
+            labelNext = Arrays.copyOf(labelNext, capacity);
+            labelDead = Arrays.copyOf(labelDead, capacity);
+        }
+        return labelCount++;
+    }
+
+    /**
+     * Journeys for the labels left in the target bag. Station counts that fall into the same
+     * fare band can leave a label beaten on every criterion once fares are compared, so those
+     * are dropped here.
+     */
+    private List<Journey> journeys() {
+        List<Journey> all = new ArrayList<>();
+        for (int l = bagHead[bagHead.length - 1]; l >= 0; l = labelNext[l]) {
+            all.add(journey(l));
+        }
+        all.sort(Comparator.comparingInt(Journey::getMinutes)
+            .thenComparingDouble(Journey::getFare)
+            .thenComparingInt(Journey::getTransfers)
+            .thenComparingDouble(Journey::getCrowdExposure));
+        List<Journey> front = new ArrayList<>(all.size());
+        for (Journey j : all) {
+            boolean beaten = false;
+            for (Journey kept : front) {
+                if (kept.dominates(j)) {
+                    beaten = true;
+                    break;
+                }
+            }
+            if (!beaten) front.add(j);
+        }
+        return front;
+    }
+
+    private Journey journey(int end) {
+        int[] path = new int[labelStations[end]];
+        int[] lines = new int[path.length - 1];
+        int i = path.length - 1;
+        for (int l = end; l >= 0; l = labelParent[l]) {
+            int parent = labelParent[l];
+            if (parent >= 0 && router.stationOf(labelState[parent]) == router.stationOf(labelState[l])) continue;
+            path[i] = router.stationOf(labelState[l]);
+            if (i > 0) lines[i - 1] = router.lineOf(labelState[l]);
+            i--;
+        }
+        return new Journey(path, lines, labelMinutes[end], labelTransfers[end], labelCrowd[end] / 10.0);
+    }
+
+    private void offerQueue(long key) {
+        if (queueSize == queue.length) queue = Arrays.copyOf(queue, queueSize * 2);
+        int i = queueSize++;
+        while (i > 0) {
+            int parent = (i - 1) >>> 1;
+            if (queue[parent] <= key) break;
+            queue[i] = queue[parent];
+            i = parent;
+        }
+        queue[i] = key;
+    }
+
+    /** @return the label index of the smallest key */
+    private long pollQueue() {
+        long top = queue[0];
+        long last = queue[--queueSize];
+        int i = 0;
+        int half = queueSize >>> 1;
+        while (i < half) {
+            int child = 2 * i + 1;
+            if (child + 1 < queueSize && queue[child + 1] < queue[child]) child++;
+            if (last <= queue[child]) break;
+            queue[i] = queue[child];
+            i = child;
+        }
+        if (queueSize > 0) queue[i] = last;
+        return top & ((1L << INDEX_BITS) - 1);
+    }
+}
@@ -0,0 +1,73 @@
+package solvexis.service;
+
+import java.util.*;
+
+/**
+ * Pareto-optimal routes between two stations from one {@link ParetoRouter} search: no option
+ * is matched or beaten on travel time, fare, transfers and crowd exposure by another. Options
+ * are ordered fastest first, and the pickers name the best one for each kind of rider.
+ */
+public final class ParetoRoutes {
+    private final List<Option> options;
+
+    /** A route together with the platform crowding met along it. */
+    public static final class Option {
+        private final RouteResult route;
+        private final double crowdExposure;
+
+        public Option(RouteResult route, double crowdExposure) {
+            this.route = route;
+            this.crowdExposure = crowdExposure;
+        }
+
+        public RouteResult getRoute() {
+            return route;
+        }
+
+        /** @return platform density summed over every stop and again per interchange, persons/m² */
+        public double getCrowdExposure() {
+            return crowdExposure;
+        }
+    }
+
+    public ParetoRoutes(List<Option> options) {
+        this.options = Collections.unmodifiableList(new ArrayList<>(options));
+    }
+
+    public List<Option> getOptions() {
+        return options;
+    }
+
+    public boolean isEmpty() {
+        return options.isEmpty();
+    }
+
+    /** @return the option with the fewest minutes, or null if there are none */
+    public Option fastest() {
+        return pick(Comparator.comparingInt(o -> o.route.getMinutes()));
+    }
+
+    /** @return the option with the lowest fare, fastest among equals */
+    public Option cheapest() {
+        return pick(Comparator.comparingDouble(o -> o.route.getFare()));
+    }
+
+    /** @return the option with the least crowd exposure, fastest among equals */
+    public Option leastCrowded() {
+        return pick(Comparator.comparingDouble(o -> o.crowdExposure));
+    }
+
+    /** @return the option with the fewest transfers, fastest among equals */
+    public Option fewestTransfers() {
+        return pick(Comparator.comparingInt(o -> o.route.getTransfers()));
+    }
+
+    private Option pick(Comparator<Option> order) {
+        Option best = null;
+        for (Option o : options) {
+            // Options are fastest first, so keeping the first of equals breaks ties by time.
+            if (best == null || order.compare(o, best) < 0) best = o;
+        }
+        return best;
+    }
+}
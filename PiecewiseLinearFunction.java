@@ -0,0 +1,120 @@
+package solvexis.service;
+
+import java.util.Arrays;
+
+/**
+ * Periodic piecewise-linear function of the time of day, in seconds. Stored as two parallel
+ * int arrays of breakpoints and values; between breakpoints, and across midnight from the
+ * last breakpoint to the first, the value is interpolated linearly.
+ */
+public final class PiecewiseLinearFunction {
+    public static final int DAY_SECONDS = 24 * 60 * 60;
+
+    private final int[] xs;
+    private final int[] ys;
+
+    /**
+     * @param xs strictly increasing breakpoints in {@code [0, DAY_SECONDS)}
+     * @param ys value at each breakpoint
+     */
+    public PiecewiseLinearFunction(int[] xs, int[] ys) {
+        if (xs.length == 0 || xs.length != ys.length)
+            throw new IllegalArgumentException("Need one value per breakpoint");
+        for (int i = 0; i < xs.length; i++) {
+            if (xs[i] < 0 || xs[i] >= DAY_SECONDS || (i > 0 && xs[i] <= xs[i - 1]))
+                throw new IllegalArgumentException("Breakpoints must increase within one day");
+        }
+        this.xs = xs.clone();
+        this.ys = ys.clone();
+    }
+
+    public static PiecewiseLinearFunction constant(int value) {
+        return new PiecewiseLinearFunction(new int[]{0}, new int[]{value});
+    }
+
+    /** @param time seconds since midnight of the departure day; later days wrap */
+    public int valueAt(long time) {
+        int x = (int) Math.floorMod(time, (long) DAY_SECONDS);
+        int i = Arrays.binarySearch(xs, x);
+        if (i >= 0) return ys[i];
+        int hi = -i - 1;
+        int lo = hi - 1;
+        int x0, x1;
+        if (lo < 0) {
+            lo = xs.length - 1;
+            x0 = xs[lo] - DAY_SECONDS;
+        } else {
+            x0 = xs[lo];
+        }
+        if (hi == xs.length) {
+            hi = 0;
+            x1 = xs[0] + DAY_SECONDS;
+        } else {
+            x1 = xs[hi];
+        }
+        if (x1 == x0) return ys[lo];
+        return (int) (ys[lo] + (long) (ys[hi] - ys[lo]) * (x - x0) / (x1 - x0));
+    }
+
+    /** Exact value at a fractional time, for profile searches that track breakpoints. */
+    double valueAt(double time) {
+        double x = time - Math.floor(time / DAY_SECONDS) * DAY_SECONDS;
+        int hi = 0;
+        while (hi < xs.length && xs[hi] <= x) hi++;
+        int lo = hi - 1;
+        double x0, x1;
+        if (lo < 0) {
+            lo = xs.length - 1;
+            x0 = xs[lo] - DAY_SECONDS;
+        } else {
+            x0 = xs[lo];
+        }
+        if (hi == xs.length) {
+            hi = 0;
+            x1 = xs[0] + DAY_SECONDS;
+        } else {
+            x1 = xs[hi];
+        }
+        if (x1 == x0) return ys[lo];
+        return ys[lo] + (ys[hi] - ys[lo]) * (x - x0) / (x1 - x0);
+    }
+
+    /** @return the first breakpoint strictly after {@code time}, on whichever day it falls */
+    double nextBreakpoint(double time) {
+        double day = Math.floor(time / DAY_SECONDS) * DAY_SECONDS;
+        double x = time - day;
+        for (int x0 : xs) {
+            if (x0 > x) return day + x0;
+        }
+        return day + DAY_SECONDS + xs[0];
+    }
+
+    public int breakpointCount() {
+        return xs.length;
+    }
+
+    /**
+     * Whether {@code t + f(t)} never decreases, i.e. no slope is below -1. Waiting longer can
+     * then never get anyone somewhere earlier, which time-dependent Dijkstra relies on.
+     */
+    public boolean isFifo() {
+        for (int i = 0; i < xs.length; i++) {
+            int next = (i + 1) % xs.length;
+            long dx = next == 0 ? xs[0] + DAY_SECONDS - xs[i] : xs[next] - xs[i];
+            if (ys[next] - ys[i] < -dx) return false;
+        }
+        return true;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (!(o instanceof PiecewiseLinearFunction)) return false;
+        PiecewiseLinearFunction f = (PiecewiseLinearFunction) o;
+        return Arrays.equals(xs, f.xs) && Arrays.equals(ys, f.ys);
+    }
+
+    @Override
+    public int hashCode() {
+        return 31 * Arrays.hashCode(xs) + Arrays.hashCode(ys);
+    }
+}
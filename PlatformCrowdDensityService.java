@@ -3,43 +3,50 @@ package solvexis.service;
 import solvexis.model.Station;
 import java.util.*;
 
+/**
+ * Platform crowd density (PCDI) per station. Densities live in an immutable
+ * {@link CrowdSnapshot} behind a volatile reference: updates copy and republish it, readers
+ * (the UI and crowd-aware routing) never lock.
+ */
 public class PlatformCrowdDensityService {
     private static final double PLATFORM_AREA = 250.0;
-    private Map<String, Double> stationCrowdDensity;
+    private final MetroGraph graph;
+    private volatile CrowdSnapshot snapshot;
     
     public PlatformCrowdDensityService() {
-        stationCrowdDensity = new HashMap<>();
+        this(NetworkSnapshot.get());
+    }
+
+    public PlatformCrowdDensityService(NetworkSnapshot network) {
+        this.graph = network.getGraph();
         initializeCrowdLevels();
     }
     
     private void initializeCrowdLevels() {
         Random random = new Random();
-        for (String stationName : getAllStationNames()) {
+        double[] density = new double[graph.size()];
+        for (int i = 0; i < density.length; i++) {
             double pcdi = 0.5 + random.nextDouble() * 4.0;
-            stationCrowdDensity.put(stationName, pcdi);
+            density[i] = pcdi;
         }
+        snapshot = new CrowdSnapshot(graph, density, 0);
     }
-    
-    private List<String> getAllStationNames() {
-        return Arrays.asList(
-            "Miyapur", "JNTU College", "KPHB Colony", "Kukatpally", "Balanagar",
-            "Moosapet", "Bharat Nagar", "Erragadda", "ESI Hospital", "SR Nagar",
-            "Ameerpet", "Punjagutta", "Irrum Manzil", "Khairatabad", "Lakdi-ka-pul",
-            "Assembly", "Nampally", "Gandhi Bhavan", "Osmania Medical College", "MGBS",
-            "Malakpet", "New Market", "Musarambagh", "Dilsukhnagar", "Chaitanyapuri",
-            "Victoria Memorial", "LB Nagar",
-            "Nagole", "Uppal", "Stadium", "NGRI", "Habsiguda", "Tarnaka",
-            "Mettuguda", "Secunderabad East", "Parade Ground", "Paradise", "Rasoolpura",
-            "Prakash Nagar", "Begumpet", "Madhura Nagar", "Yusufguda",
-            "Road No. 5 Jubilee Hills", "Jubilee Hills Check Post", "Peddamma Gudi",
-            "Madhapur", "Durgam Cheruvu", "Hitec City", "Raidurg",
-            "JBS Parade Ground", "Secunderabad West", "Gandhi Hospital", "Musheerabad",
-            "RTC Cross Roads", "Chikkadpally", "Narayanaguda", "Sultan Bazaar"
-        );
+
+    /** Current densities; never blocks and never changes once returned. */
+    public CrowdSnapshot getSnapshot() {
+        return snapshot;
+    }
+
+    /** Records a new density reading for one station and publishes it to readers. */
+    public synchronized void updateCrowdDensity(String stationName, double pcdi) {
+        int id = graph.id(stationName);
+        if (id < 0) return;
+        snapshot = snapshot.with(id, pcdi);
     }
     
     public double getCrowdDensity(String stationName) {
-        return stationCrowdDensity.getOrDefault(stationName, 1.0);
+        int id = graph.id(stationName);
+        return id < 0 ? 1.0 : snapshot.density(id);
     }
     
     public int getCrowdLevel(String stationName) {
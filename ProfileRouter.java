@@ -0,0 +1,133 @@
+package solvexis.service;
+
+import java.util.Arrays;
+
+/**
+ * Profile search: arrival time at the target as a function of departure time over a whole
+ * window, from one label-correcting pass over the (station, line) states. Each state holds
+ * an {@link ArrivalProfile} instead of a single time; relaxing an edge composes the profile
+ * with the edge's time-dependent cost from the {@link ServiceProfile}, and a state is queued
+ * again whenever the pointwise minimum with a new profile improves it anywhere.
+ *
+ * <p>A static lower bound on the time left to the target (running times and walks, no waits)
+ * steers the queue like A* and prunes any profile that, even at that bound, cannot beat the
+ * target's profile at any departure in the window.
+ */
+public class ProfileRouter {
+    private final TimeOptimalRouter router;
+    private final MetroGraph graph;
+    private final ServiceProfile profile;
+
+    public ProfileRouter(TimeOptimalRouter router, ServiceProfile profile) {
+        if (profile.lineCount() != router.getGraph().lineCount())
+            throw new IllegalArgumentException("Service profile does not cover every line");
+        this.router = router;
+        this.graph = router.getGraph();
+        this.profile = profile;
+    }
+
+    /**
+     * @param earliest       first departure second of the window
+     * @param latest         last departure second of the window
+     * @param closures       closed elements to avoid, or null
+     * @param stationPenalty minutes added to every change of lines at a station, or null
+     * @return arrival at {@code to} per departure from {@code from}, or null if unreachable
+     */
+    public ArrivalProfile profile(int from, int to, long earliest, long latest, ClosureSet closures,
+                                  int[] stationPenalty) {
+        int states = router.stateCount();
+        long[] bound = lowerBounds(to, closures);
+        ArrivalProfile[] labels = new ArrivalProfile[states];
+        IntMinHeap heap = new IntMinHeap(states);
+        ArrivalProfile atTarget = null;
+
+        ArrivalProfile start = ArrivalProfile.identity(earliest, latest);
+        for (int s = router.firstState(from); s < router.endState(from); s++) {
+            if (bound[s] == Long.MAX_VALUE) continue;
+            labels[s] = start.then(profile.waitFunction(router.lineOf(s)), 0, 0);
+            heap.offer(s, key(labels[s], bound[s]));
+        }
+
+        while (!heap.isEmpty()) {
+            if (atTarget != null && heap.peekKey() > atTarget.maxArrival()) break;
+            int s = heap.poll();
+            int u = router.stationOf(s);
+            ArrivalProfile label = labels[s];
+            if (u == to) {
+                atTarget = atTarget == null ? label : atTarget.min(label);
+                continue;
+            }
+            int line = router.lineOf(s);
+
+            ArrivalProfile departs = null;
+            for (int e = graph.firstEdge(u); e < graph.endEdge(u); e++) {
+                if (graph.line(e) != line || (closures != null && closures.blocksEdge(e))) continue;
+                int t = router.edgeTargetState(e);
+                if (bound[t] == Long.MAX_VALUE) continue;
+                if (departs == null) departs = label.then(profile.dwellFunction(line), 0, 0);
+                relax(t, departs.then(null, 0, graph.minutes(e) * 60.0), bound, labels, heap, atTarget);
+            }
+            double walk = profile.getTransferWalkSeconds();
+            double penalty = stationPenalty == null ? 0 : stationPenalty[u] * 60.0;
+            for (int n = router.firstState(u); n < router.endState(u); n++) {
+                if (n == s || bound[n] == Long.MAX_VALUE) continue;
+                relax(n, label.then(profile.waitFunction(router.lineOf(n)), walk, penalty), bound, labels, heap,
+                    atTarget);
+            }
+        }
+        return atTarget;
+    }
+
+    private static long key(ArrivalProfile label, long bound) {
+        return (long) Math.floor(label.minArrival()) + bound;
+    }
+
+    private static void relax(int state, ArrivalProfile candidate, long[] bound, ArrivalProfile[] labels,
+                              IntMinHeap heap, ArrivalProfile atTarget) {
+        if (atTarget != null && candidate.noEarlierThan(atTarget, bound[state])) return;
+        ArrivalProfile current = labels[state];
+        if (current != null) {
+            if (!current.improvedBy(candidate)) return;
+            candidate = current.min(candidate);
+        }
+        labels[state] = candidate;
+        heap.offer(state, key(candidate, bound[state]));
+    }
+
+    /**
+     * Seconds from each state to the target with no waits, no dwells and no penalties, which
+     * no profile can beat; {@code Long.MAX_VALUE} where the target is out of reach. The state
+     * graph is symmetric, so a search from the target gives distances to it.
+     */
+    private long[] lowerBounds(int target, ClosureSet closures) {
+        long[] bound = new long[router.stateCount()];
+        Arrays.fill(bound, Long.MAX_VALUE);
+        IntMinHeap heap = new IntMinHeap(bound.length);
+        for (int s = router.firstState(target); s < router.endState(target); s++) {
+            bound[s] = 0;
+            heap.offer(s, 0);
+        }
+        while (!heap.isEmpty()) {
+            long d = heap.peekKey();
+            int s = heap.poll();
+            int u = router.stationOf(s);
+            for (int e = graph.firstEdge(u); e < graph.endEdge(u); e++) {
+                if (graph.line(e) != router.lineOf(s) || (closures != null && closures.blocksEdge(e))) continue;
+                int t = router.edgeTargetState(e);
+                long nd = d + graph.minutes(e) * 60L;
+                if (nd < bound[t]) {
+                    bound[t] = nd;
+                    heap.offer(t, nd);
+                }
+            }
+            long walk = d + profile.getTransferWalkSeconds();
+            for (int t = router.firstState(u); t < router.endState(u); t++) {
+                if (t != s && walk < bound[t]) {
+                    bound[t] = walk;
+                    heap.offer(t, walk);
+                }
+            }
+        }
+        return bound;
+    }
+}
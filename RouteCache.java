@@ -0,0 +1,282 @@
+package solvexis.service;
+
+import java.util.*;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Predicate;
+
+/**
+ * Size-bounded cache of planned routes keyed by (start, end, {@link RoutingMode}). Entries
+ * are spread over lock-striped segments, each an access-ordered {@link LinkedHashMap} that
+ * drops its least recently used entry when full, so popular pairs stay resident while
+ * concurrent lookups rarely contend. Closures invalidate selectively through
+ * {@link #invalidateRoutes}, {@link #invalidatePlannedUnderClosures()} and, for routes a
+ * planner cached, {@link #invalidateStale};
+ * {@link #invalidateAll()} is for a replaced network. Routes a planner caches remember the
+ * closures they were planned under, so a lookup never returns one a newer change has made
+ * stale, even before that change's sweep reaches it.
+ */
+public class RouteCache {
+    private static final int SEGMENTS = 16;
+
+    private final Segment[] segments;
+    private final int capacity;
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private final AtomicLong evictions = new AtomicLong();
+
+    private static final class Key {
+        final String start;
+        final String end;
+        final RoutingMode mode;
+        final int hash;
+
+        Key(String start, String end, RoutingMode mode) {
+            this.start = start;
+            this.end = end;
+            this.mode = mode;
+            this.hash = (start.hashCode() * 31 + end.hashCode()) * 31 + mode.ordinal();
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (!(o instanceof Key)) return false;
+            Key k = (Key) o;
+            return mode == k.mode && start.equals(k.start) && end.equals(k.end);
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+    }
+
+    private static final class Cached {
+        final RouteResult route;
+        final int[] path;
+        final ClosureSet plannedUnder;
+
+        Cached(RouteResult route, int[] path, ClosureSet plannedUnder) {
+            this.route = route;
+            this.path = path;
+            this.plannedUnder = plannedUnder;
+        }
+
+        boolean underClosures() {
+            return plannedUnder != null && !plannedUnder.isEmpty();
+        }
+
+        /**
+         * Whether the route is still the one a search under {@code closures} would find: it is
+         * not blocked, and nothing closed when it was planned has reopened since. Closing more
+         * cannot make another route better, reopening can.
+         */
+        boolean validUnder(ClosureSet closures) {
+            if (plannedUnder == null || plannedUnder == closures) return true;
+            return !closures.blocks(path) && !plannedUnder.hasClosuresNotIn(closures);
+        }
+    }
+
+    private final class Segment extends LinkedHashMap<Key, Cached> {
+        private static final long serialVersionUID = 1L;
+
+        private final int limit;
+
+        Segment(int limit) {
+            super(16, 0.75f, true);
+            this.limit = limit;
+        }
+
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<Key, Cached> eldest) {
+            if (size() > limit) {
+                evictions.incrementAndGet();
+                return true;
+            }
+            return false;
+        }
+    }
+
+    /** @param capacity maximum number of routes kept; split evenly across segments */
+    public RouteCache(int capacity) {
+        if (capacity < 1)
+            throw new IllegalArgumentException("Cache capacity must be positive");
+        this.capacity = capacity;
+        int count = Math.min(SEGMENTS, capacity);
+        segments = new Segment[count];
+        for (int i = 0; i < count; i++) {
+            segments[i] = new Segment(capacity / count + (i < capacity % count ? 1 : 0));
+        }
+    }
+
+    private Segment segmentFor(Key key) {
+        int h = key.hash ^ (key.hash >>> 16);
+        return segments[Math.floorMod(h, segments.length)];
+    }
+
+    /** @return the cached route, or null on a miss */
+    public RouteResult get(String start, String end, RoutingMode mode) {
+        Key key = new Key(start, end, mode);
+        Segment segment = segmentFor(key);
+        Cached entry;
+        synchronized (segment) {
+            entry = segment.get(key);
+        }
+        (entry == null ? misses : hits).incrementAndGet();
+        return entry == null ? null : entry.route;
+    }
+
+    /**
+     * The cached route if it is still valid under {@code closures}, or null. An entry a change
+     * of closures has made stale, but which the sweep of that change has not reached yet, is
+     * dropped and counted as a miss.
+     */
+    RouteResult get(String start, String end, RoutingMode mode, ClosureSet closures) {
+        Key key = new Key(start, end, mode);
+        Segment segment = segmentFor(key);
+        Cached entry;
+        synchronized (segment) {
+            entry = segment.get(key);
+            if (entry != null && !entry.validUnder(closures)) {
+                segment.remove(key);
+                entry = null;
+            }
+        }
+        (entry == null ? misses : hits).incrementAndGet();
+        return entry == null ? null : entry.route;
+    }
+
+    public void put(String start, String end, RoutingMode mode, RouteResult route) {
+        Key key = new Key(start, end, mode);
+        Segment segment = segmentFor(key);
+        synchronized (segment) {
+            segment.put(key, new Cached(route, null, null));
+        }
+    }
+
+    /**
+     * @param path         station ids of {@code route}
+     * @param plannedUnder closures the route was planned under, against which later lookups
+     *                     check it
+     */
+    void put(String start, String end, RoutingMode mode, RouteResult route, int[] path, ClosureSet plannedUnder) {
+        Key key = new Key(start, end, mode);
+        Segment segment = segmentFor(key);
+        synchronized (segment) {
+            segment.put(key, new Cached(route, path, plannedUnder));
+        }
+    }
+
+    public void remove(String start, String end, RoutingMode mode) {
+        Key key = new Key(start, end, mode);
+        Segment segment = segmentFor(key);
+        synchronized (segment) {
+            segment.remove(key);
+        }
+    }
+
+    /** Drops every cached route matching {@code affected}; @return the number dropped */
+    public int invalidateRoutes(Predicate<RouteResult> affected) {
+        int removed = 0;
+        for (Segment segment : segments) {
+            synchronized (segment) {
+                Iterator<Cached> it = segment.values().iterator();
+                while (it.hasNext()) {
+                    if (affected.test(it.next().route)) {
+                        it.remove();
+                        removed++;
+                    }
+                }
+            }
+        }
+        return removed;
+    }
+
+    /**
+     * Drops the routes a planner cached that are stale under {@code closures}: those through a
+     * closed station or segment, and those planned around a closure that has since been lifted.
+     * Routes planned with no closures, or around ones still in force, stay. Checked on the
+     * stored station ids; routes cached without them are left alone.
+     *
+     * @return the number dropped
+     */
+    int invalidateStale(ClosureSet closures) {
+        int removed = 0;
+        for (Segment segment : segments) {
+            synchronized (segment) {
+                Iterator<Cached> it = segment.values().iterator();
+                while (it.hasNext()) {
+                    Cached entry = it.next();
+                    if (entry.path != null && !entry.validUnder(closures)) {
+                        it.remove();
+                        removed++;
+                    }
+                }
+            }
+        }
+        return removed;
+    }
+
+    /** Drops the routes planned while closures were in force; @return the number dropped */
+    public int invalidatePlannedUnderClosures() {
+        int removed = 0;
+        for (Segment segment : segments) {
+            synchronized (segment) {
+                Iterator<Cached> it = segment.values().iterator();
+                while (it.hasNext()) {
+                    if (it.next().underClosures()) {
+                        it.remove();
+                        removed++;
+                    }
+                }
+            }
+        }
+        return removed;
+    }
+
+    /** Drops every cached route; counters are kept. */
+    public void invalidateAll() {
+        for (Segment segment : segments) {
+            synchronized (segment) {
+                segment.clear();
+            }
+        }
+    }
+
+    public int size() {
+        int size = 0;
+        for (Segment segment : segments) {
+            synchronized (segment) {
+                size += segment.size();
+            }
+        }
+        return size;
+    }
+
+    public int getCapacity() {
+        return capacity;
+    }
+
+    public long getHitCount() {
+        return hits.get();
+    }
+
+    public long getMissCount() {
+        return misses.get();
+    }
+
+    public long getEvictionCount() {
+        return evictions.get();
+    }
+
+    public double getHitRate() {
+        long h = hits.get();
+        long total = h + misses.get();
+        return total == 0 ? 0.0 : (double) h / total;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("RouteCache[size=%d/%d, hits=%d, misses=%d, evictions=%d, hitRate=%.1f%%]",
+            size(), capacity, getHitCount(), getMissCount(), getEvictionCount(), getHitRate() * 100);
+    }
+}
@@ -0,0 +1,13 @@
+package solvexis.service;
+
+/**
+ * How {@link MetroRoutePlanner} answers route queries.
+ */
+public enum RouteIndex {
+    /** BFS or Dijkstra on every query; nothing is precomputed. */
+    LIVE_SEARCH,
+    /** All-pairs {@link RouteTable} lookups; memory grows with the square of the station count. */
+    PRECOMPUTED_TABLE,
+    /** Bidirectional upward search on a {@link ContractionHierarchy}; suited to large networks. */
+    CONTRACTION_HIERARCHY
+}
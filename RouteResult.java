@@ -0,0 +1,114 @@
+package solvexis.service;
+
+import solvexis.model.Station;
+import java.util.*;
+
+/**
+ * Immutable result of a single route search. Fare, travel time, distance and the
+ * station list are all derived from the same path so callers never search twice.
+ */
+public final class RouteResult {
+    private final List<String> path;
+    private final List<Station> stations;
+    private final List<Leg> legs;
+    private final int hops;
+    private final int transfers;
+    private final int minutes;
+    private final double fare;
+    private final double distanceKm;
+
+    public RouteResult(List<String> path, List<Station> stations, List<Leg> legs,
+                       int transfers, int minutes, double fare, double distanceKm) {
+        this.path = Collections.unmodifiableList(new ArrayList<>(path));
+        this.stations = Collections.unmodifiableList(new ArrayList<>(stations));
+        this.legs = Collections.unmodifiableList(new ArrayList<>(legs));
+        this.hops = Math.max(0, path.size() - 1);
+        this.transfers = transfers;
+        this.minutes = minutes;
+        this.fare = fare;
+        this.distanceKm = distanceKm;
+    }
+
+    public List<String> getPath() {
+        return path;
+    }
+
+    public List<Station> getStations() {
+        return stations;
+    }
+
+    public List<Leg> getLegs() {
+        return legs;
+    }
+
+    public String getStart() {
+        return path.get(0);
+    }
+
+    public String getEnd() {
+        return path.get(path.size() - 1);
+    }
+
+    public int getHops() {
+        return hops;
+    }
+
+    public int getTransfers() {
+        return transfers;
+    }
+
+    public int getMinutes() {
+        return minutes;
+    }
+
+    public double getFare() {
+        return fare;
+    }
+
+    public double getDistanceKm() {
+        return distanceKm;
+    }
+
+    @Override
+    public String toString() {
+        return String.join(" -> ", path);
+    }
+
+    /**
+     * A stretch of the journey ridden on one corridor without changing trains.
+     */
+    public static class Leg {
+        private final int corridorNumber;
+        private final String from;
+        private final String to;
+        private final int stops;
+
+        public Leg(int corridorNumber, String from, String to, int stops) {
+            this.corridorNumber = corridorNumber;
+            this.from = from;
+            this.to = to;
+            this.stops = stops;
+        }
+
+        public int getCorridorNumber() {
+            return corridorNumber;
+        }
+
+        public String getFrom() {
+            return from;
+        }
+
+        public String getTo() {
+            return to;
+        }
+
+        public int getStops() {
+            return stops;
+        }
+
+        @Override
+        public String toString() {
+            return from + " -> " + to + " (Corridor " + corridorNumber + ", " + stops + " stops)";
+        }
+    }
+}
@@ -0,0 +1,185 @@
+package solvexis.service;
+
+import java.util.Arrays;
+import java.util.function.IntToDoubleFunction;
+
+/**
+ * All-pairs route table for a small, static network. Every table is a flat array
+ * indexed by {@code from * size + to}, so a lookup is a multiply, an add and a load.
+ *
+ * <p>Routes are stored as next-hop pointers over search nodes. For
+ * {@link RoutingMode#FEWEST_STATIONS} the nodes are stations; for {@link RoutingMode#FASTEST}
+ * they are the (station, line) states of {@link TimeOptimalRouter}, because the best way
+ * onward from an interchange depends on the line the rider arrived on.
+ */
+public class RouteTable {
+    private final MetroGraph graph;
+    private final RoutingMode mode;
+    private final int size;
+    private final int[] nodeStations;
+    private final int[] nextNode;
+    private final int[] firstNode;
+    private final short[] hops;
+    private final short[] transfers;
+    private final short[] minutes;
+    private final short[] fares;
+
+    private RouteTable(MetroGraph graph, RoutingMode mode, int[] nodeStations, int[] nextNode, int[] firstNode) {
+        this.graph = graph;
+        this.mode = mode;
+        this.size = graph.size();
+        this.nodeStations = nodeStations;
+        this.nextNode = nextNode;
+        this.firstNode = firstNode;
+        this.hops = new short[size * size];
+        this.transfers = new short[size * size];
+        this.minutes = new short[size * size];
+        this.fares = new short[size * size];
+    }
+
+    /**
+     * Fewest-stations table: one BFS rooted at each destination, where the parent of a
+     * station is its next hop towards that destination.
+     *
+     * @param fareByStationCount fare for a trip passing through the given number of stations
+     */
+    public static RouteTable fewestStations(MetroGraph graph, int transferPenalty,
+                                            IntToDoubleFunction fareByStationCount) {
+        int size = graph.size();
+        int[] next = new int[size * size];
+        Arrays.fill(next, -1);
+
+        int[] queue = new int[size];
+        for (int to = 0; to < size; to++) {
+            int head = 0, tail = 0;
+            queue[tail++] = to;
+            next[to * size + to] = to;
+            while (head < tail) {
+                int cur = queue[head++];
+                for (int e = graph.firstEdge(cur); e < graph.endEdge(cur); e++) {
+                    int nb = graph.target(e);
+                    if (next[nb * size + to] < 0) {
+                        next[nb * size + to] = cur;
+                        queue[tail++] = nb;
+                    }
+                }
+            }
+        }
+
+        RouteTable table = new RouteTable(graph, RoutingMode.FEWEST_STATIONS, null, next, null);
+        table.fillSummaries(transferPenalty, fareByStationCount);
+        return table;
+    }
+
+    /**
+     * Fastest-route table: one full Dijkstra over line states rooted at each destination.
+     * Travel and transfer costs are symmetric, so the predecessor of a state in that tree is
+     * its next state towards the destination.
+     */
+    public static RouteTable fastest(TimeOptimalRouter router, IntToDoubleFunction fareByStationCount) {
+        MetroGraph graph = router.getGraph();
+        int size = graph.size();
+        int states = router.stateCount();
+        int[] nodeStations = new int[states];
+        for (int s = 0; s < states; s++) {
+            nodeStations[s] = router.stationOf(s);
+        }
+        int[] next = new int[states * size];
+        int[] first = new int[size * size];
+        Arrays.fill(first, -1);
+
+        long[] dist = new long[states];
+        int[] prev = new int[states];
+        IntMinHeap heap = new IntMinHeap(states);
+        for (int to = 0; to < size; to++) {
+            router.search(to, -1, dist, prev, heap);
+            for (int s = 0; s < states; s++) {
+                next[s * size + to] = nodeStations[s] == to ? s : prev[s];
+            }
+            for (int from = 0; from < size; from++) {
+                long best = Long.MAX_VALUE;
+                for (int s = router.firstState(from); s < router.endState(from); s++) {
+                    if (dist[s] < best) {
+                        best = dist[s];
+                        first[from * size + to] = s;
+                    }
+                }
+            }
+        }
+
+        RouteTable table = new RouteTable(graph, RoutingMode.FASTEST, nodeStations, next, first);
+        table.fillSummaries(router.getTransferPenalty(), fareByStationCount);
+        return table;
+    }
+
+    private void fillSummaries(int transferPenalty, IntToDoubleFunction fareByStationCount) {
+        int[] buffer = new int[size];
+        for (int from = 0; from < size; from++) {
+            for (int to = 0; to < size; to++) {
+                if (!isReachable(from, to)) continue;
+                int idx = from * size + to;
+                int length = fillPath(from, to, buffer);
+                hops[idx] = (short) (length - 1);
+                transfers[idx] = (short) graph.countTransfers(buffer, length);
+                minutes[idx] = (short) graph.travelMinutes(buffer, length, transferPenalty);
+                fares[idx] = (short) fareByStationCount.applyAsDouble(length);
+            }
+        }
+    }
+
+    private int startNode(int from, int to) {
+        if (firstNode != null) return firstNode[from * size + to];
+        return nextNode[from * size + to] < 0 ? -1 : from;
+    }
+
+    private int stationOf(int node) {
+        return nodeStations == null ? node : nodeStations[node];
+    }
+
+    private int fillPath(int from, int to, int[] out) {
+        int length = 0;
+        int node = startNode(from, to);
+        while (true) {
+            int station = stationOf(node);
+            if (length == 0 || out[length - 1] != station) out[length++] = station;
+            int next = nextNode[node * size + to];
+            if (next == node) break;
+            node = next;
+        }
+        return length;
+    }
+
+    public RoutingMode getMode() {
+        return mode;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public boolean isReachable(int from, int to) {
+        return startNode(from, to) >= 0;
+    }
+
+    public int hops(int from, int to) {
+        return hops[from * size + to];
+    }
+
+    public int transfers(int from, int to) {
+        return transfers[from * size + to];
+    }
+
+    public int minutes(int from, int to) {
+        return minutes[from * size + to];
+    }
+
+    public double fare(int from, int to) {
+        return fares[from * size + to];
+    }
+
+    public int[] path(int from, int to) {
+        int[] path = new int[hops(from, to) + 1];
+        fillPath(from, to, path);
+        return path;
+    }
+}
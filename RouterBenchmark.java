@@ -0,0 +1,181 @@
+package solvexis.app;
+
+import solvexis.data.NetworkDefinition;
+import solvexis.data.SyntheticNetworkGenerator;
+import solvexis.service.*;
+
+import java.util.*;
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * Scaling benchmark for the route planner on synthetic networks.
+ *
+ * <pre>
+ * java -cp out solvexis.app.RouterBenchmark [sizes] [interchangeRatio] [queries]
+ * java -cp out solvexis.app.RouterBenchmark 1000,10000,100000 0.1 2000
+ * </pre>
+ *
+ * For every size it reports network build (preprocessing) time, retained heap per
+ * station and per-query latency percentiles of each {@link RoutingMode}, first with live
+ * searches and then on {@link ContractionHierarchy} indexes (with their build time), plus
+ * {@link BatchRoutePlanner} throughput on one worker and on all cores and
+ * {@link IsochronePlanner} throughput.
+ */
+public class RouterBenchmark {
+    private static final long SEED = 42L;
+    private static final int WARMUP_QUERIES = 200;
+
+    public static void main(String[] args) {
+        int[] sizes = parseSizes(args.length > 0 ? args[0] : "1000,10000,100000");
+        double interchangeRatio = args.length > 1 ? Double.parseDouble(args[1]) : 0.1;
+        int queries = args.length > 2 ? Integer.parseInt(args[2]) : 2000;
+
+        System.out.println("========================================");
+        System.out.println("   SOLVEXIS Router Scaling Benchmark");
+        System.out.println("========================================");
+        System.out.printf("Interchange ratio: %.2f, queries per mode: %d%n", interchangeRatio, queries);
+
+        for (int size : sizes) {
+            int lineCount = Math.max(3, (int) Math.sqrt(size) / 2);
+            runSize(size, lineCount, interchangeRatio, queries);
+        }
+    }
+
+    private static void runSize(int size, int lineCount, double interchangeRatio, int queries) {
+        System.out.printf("%n--- %,d stations, %d lines ---%n", size, lineCount);
+
+        long t0 = System.nanoTime();
+        NetworkDefinition definition = new SyntheticNetworkGenerator(size, lineCount, interchangeRatio, SEED).generate();
+        long generateNanos = System.nanoTime() - t0;
+
+        long before = usedHeap();
+        t0 = System.nanoTime();
+        NetworkSnapshot network = new NetworkSnapshot(definition);
+        long buildNanos = System.nanoTime() - t0;
+        long after = usedHeap();
+
+        MetroGraph graph = network.getGraph();
+        System.out.printf("Generate:            %8.1f ms%n", generateNanos / 1e6);
+        System.out.printf("Preprocess (build):  %8.1f ms%n", buildNanos / 1e6);
+        System.out.printf("Edges / states:      %,d / %,d%n", graph.edgeCount(), network.getFastestRouter().stateCount());
+        System.out.printf("Memory per station:  %8.0f bytes%n", Math.max(0, after - before) / (double) graph.size());
+
+        MetroRoutePlanner planner = new MetroRoutePlanner(network, RouteIndex.LIVE_SEARCH);
+        planner.setCrowdService(new PlatformCrowdDensityService(network));
+        String[][] pairs = randomPairs(graph, queries);
+        System.out.printf("%-21s %10s %10s %10s %10s%n", "Mode", "p50 (us)", "p90 (us)", "p99 (us)", "max (us)");
+        report(planner, "", pairs);
+        reportBatch(planner, pairs);
+        reportIsochrones(network, pairs.length);
+
+        t0 = System.nanoTime();
+        MetroRoutePlanner chPlanner = new MetroRoutePlanner(network, RouteIndex.CONTRACTION_HIERARCHY);
+        long chNanos = System.nanoTime() - t0;
+        report(chPlanner, " (CH)", pairs);
+        System.out.printf("CH preprocess:       %8.1f ms (shortcuts: %,d fastest / %,d fewest)%n", chNanos / 1e6,
+            network.getContractionHierarchy(RoutingMode.FASTEST).shortcutCount(),
+            network.getContractionHierarchy(RoutingMode.FEWEST_STATIONS).shortcutCount());
+    }
+
+    private static void report(MetroRoutePlanner planner, String suffix, String[][] pairs) {
+        for (RoutingMode mode : RoutingMode.values()) {
+            if (mode.usesLiveData() && planner.getRouteIndex() != RouteIndex.LIVE_SEARCH) continue;
+            long[] latencies = measure(planner, mode, pairs);
+            System.out.printf("%-21s %10.1f %10.1f %10.1f %10.1f%n", mode + suffix,
+                percentile(latencies, 0.50) / 1e3, percentile(latencies, 0.90) / 1e3,
+                percentile(latencies, 0.99) / 1e3, latencies[latencies.length - 1] / 1e3);
+        }
+    }
+
+    /** Live-search batch throughput on one worker and on every available core. */
+    private static void reportBatch(MetroRoutePlanner planner, String[][] pairs) {
+        List<BatchRoutePlanner.OdPair> batch = new ArrayList<>(pairs.length);
+        for (String[] pair : pairs) {
+            batch.add(new BatchRoutePlanner.OdPair(pair[0], pair[1]));
+        }
+        int cores = Runtime.getRuntime().availableProcessors();
+        for (int threads : cores > 1 ? new int[]{1, cores} : new int[]{1}) {
+            ForkJoinPool pool = new ForkJoinPool(threads);
+            try {
+                BatchRoutePlanner batchPlanner = new BatchRoutePlanner(planner, pool);
+                batchPlanner.planAll(batch, RoutingMode.FASTEST);
+                long t0 = System.nanoTime();
+                batchPlanner.planAll(batch, RoutingMode.FASTEST);
+                double seconds = (System.nanoTime() - t0) / 1e9;
+                System.out.printf("Batch FASTEST, %2d thread(s): %10.0f queries/s%n", threads, batch.size() / seconds);
+            } finally {
+                pool.shutdown();
+            }
+        }
+    }
+
+    /** Throughput of 30-minute isochrones from random sources, fares included. */
+    private static void reportIsochrones(NetworkSnapshot network, int count) {
+        Random random = new Random(SEED);
+        int[] sources = new int[count];
+        for (int i = 0; i < count; i++) {
+            sources[i] = random.nextInt(network.getGraph().size());
+        }
+        IsochronePlanner isochrones = new IsochronePlanner(network);
+        isochrones.fromAll(sources, 30, true);
+        long t0 = System.nanoTime();
+        isochrones.fromAll(sources, 30, true);
+        double seconds = (System.nanoTime() - t0) / 1e9;
+        System.out.printf("Isochrones (30 min):  %10.0f sources/s%n", count / seconds);
+    }
+
+    private static long[] measure(MetroRoutePlanner planner, RoutingMode mode, String[][] pairs) {
+        for (int i = 0; i < Math.min(WARMUP_QUERIES, pairs.length); i++) {
+            query(planner, mode, pairs[i]);
+        }
+        long[] latencies = new long[pairs.length];
+        for (int i = 0; i < pairs.length; i++) {
+            long t0 = System.nanoTime();
+            query(planner, mode, pairs[i]);
+            latencies[i] = System.nanoTime() - t0;
+        }
+        Arrays.sort(latencies);
+        return latencies;
+    }
+
+    private static void query(MetroRoutePlanner planner, RoutingMode mode, String[] pair) {
+        try {
+            planner.planJourney(pair[0], pair[1], mode);
+        } catch (Exception e) {
+            // Unreachable pairs still cost a full search; the latency is what we record.
+        }
+    }
+
+    private static String[][] randomPairs(MetroGraph graph, int count) {
+        Random random = new Random(SEED);
+        String[][] pairs = new String[count][];
+        for (int i = 0; i < count; i++) {
+            int a = random.nextInt(graph.size());
+            int b = random.nextInt(graph.size() - 1);
+            if (b >= a) b++;
+            pairs[i] = new String[]{graph.name(a), graph.name(b)};
+        }
+        return pairs;
+    }
+
+    private static long percentile(long[] sorted, double p) {
+        return sorted[Math.min(sorted.length - 1, (int) Math.ceil(p * sorted.length) - 1)];
+    }
+
+    private static long usedHeap() {
+        Runtime rt = Runtime.getRuntime();
+        for (int i = 0; i < 3; i++) {
+            System.gc();
+        }
+        return rt.totalMemory() - rt.freeMemory();
+    }
+
+    private static int[] parseSizes(String arg) {
+        String[] parts = arg.split(",");
+        int[] sizes = new int[parts.length];
+        for (int i = 0; i < parts.length; i++) {
+            sizes[i] = Integer.parseInt(parts[i].trim());
+        }
+        return sizes;
+    }
+}
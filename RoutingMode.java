@@ -0,0 +1,23 @@
+package solvexis.service;
+
+/**
+ * Cost model used to pick a route between two stations.
+ */
+public enum RoutingMode {
+    /** Unweighted BFS: the route through the fewest stations. */
+    FEWEST_STATIONS,
+    /** Dijkstra over (station, line) states: the route with the lowest travel time including transfers. */
+    FASTEST,
+    /**
+     * {@link #FASTEST} where changing lines at a crowded interchange also costs a platform
+     * crowding penalty, read from the current {@link CrowdSnapshot}.
+     */
+    CROWD_AWARE;
+
+    /**
+     * @return true if costs depend on live data, so routes cannot be precomputed or cached
+     */
+    public boolean usesLiveData() {
+        return this == CROWD_AWARE;
+    }
+}
@@ -0,0 +1,178 @@
+package solvexis.service;
+
+import java.time.LocalTime;
+import java.util.*;
+
+/**
+ * Time-of-day service pattern of the metro: when trains run, how often each corridor runs
+ * in and out of the peaks, how much longer trains stand at each stop when platforms are busy
+ * and how long an interchange walk takes. Waits and dwells are {@link PiecewiseLinearFunction}s
+ * kept per corridor, and corridors with the same timetable share one instance, so the time
+ * dimension costs a few dozen breakpoints per distinct corridor rather than anything per
+ * segment.
+ *
+ * <p>Headways and dwells change over a short ramp instead of a step, which keeps every
+ * function FIFO: setting off later never gets a rider in earlier.
+ */
+public final class ServiceProfile {
+    public static final int MORNING_PEAK_START = 8;
+    public static final int MORNING_PEAK_END = 11;
+    public static final int EVENING_PEAK_START = 17;
+    public static final int EVENING_PEAK_END = 21;
+
+    public static final int FIRST_TRAIN_HOUR = 6;
+    public static final int LAST_TRAIN_HOUR = 23;
+
+    private static final int HOUR = 3600;
+    private static final int RAMP_SECONDS = 300;
+    private static final int[] BAND_STARTS = {
+        FIRST_TRAIN_HOUR * HOUR, MORNING_PEAK_START * HOUR, MORNING_PEAK_END * HOUR,
+        EVENING_PEAK_START * HOUR, EVENING_PEAK_END * HOUR
+    };
+    private static final boolean[] BAND_PEAK = {false, true, false, true, false};
+
+    private final PiecewiseLinearFunction[] wait;
+    private final PiecewiseLinearFunction[] dwell;
+    private final int transferWalkSeconds;
+
+    /**
+     * @param peakHeadways    seconds between trains of each corridor in the peaks
+     * @param offPeakHeadways seconds between trains of each corridor otherwise
+     * @param peakDwell       seconds added to every stop's scheduled time in the peaks
+     * @param offPeakDwell    seconds added to every stop's scheduled time otherwise
+     * @param transferWalk    seconds to walk between platforms at an interchange
+     */
+    public ServiceProfile(int[] peakHeadways, int[] offPeakHeadways, int peakDwell, int offPeakDwell,
+                          int transferWalk) {
+        if (peakHeadways.length != offPeakHeadways.length)
+            throw new IllegalArgumentException("Need peak and off-peak headways for the same corridors");
+        Map<PiecewiseLinearFunction, PiecewiseLinearFunction> shared = new HashMap<>();
+        PiecewiseLinearFunction dwellFunction = bands(peakDwell, offPeakDwell);
+        if (!dwellFunction.isFifo())
+            throw new IllegalArgumentException("Dwell times change too fast between bands");
+        wait = new PiecewiseLinearFunction[peakHeadways.length];
+        dwell = new PiecewiseLinearFunction[peakHeadways.length];
+        for (int line = 0; line < wait.length; line++) {
+            if (peakHeadways[line] <= 0 || offPeakHeadways[line] <= 0)
+                throw new IllegalArgumentException("Headways must be positive");
+            PiecewiseLinearFunction f = waitFunction(peakHeadways[line], offPeakHeadways[line]);
+            if (!f.isFifo())
+                throw new IllegalArgumentException("Headways of line " + line + " change too fast between bands");
+            wait[line] = shared.computeIfAbsent(f, k -> k);
+            dwell[line] = dwellFunction;
+        }
+        this.transferWalkSeconds = transferWalk;
+    }
+
+    /**
+     * Every corridor every 4 minutes in the peaks and every 7 minutes otherwise, 30 seconds
+     * more at each stop in the peaks, and a 2-minute interchange walk. The per-stop minutes
+     * of the graph already include an off-peak dwell.
+     */
+    public static ServiceProfile standard(int lineCount) {
+        int[] peak = new int[lineCount];
+        int[] offPeak = new int[lineCount];
+        Arrays.fill(peak, 240);
+        Arrays.fill(offPeak, 420);
+        return new ServiceProfile(peak, offPeak, 30, 0, 120);
+    }
+
+    /** Morning (8-11) and evening (17-21) peaks, shared with last-mile fares. */
+    public static boolean isPeakHour(LocalTime time) {
+        int hour = time.getHour();
+        return (hour >= MORNING_PEAK_START && hour < MORNING_PEAK_END) ||
+               (hour >= EVENING_PEAK_START && hour < EVENING_PEAK_END);
+    }
+
+    /** Whether trains run at {@code time}, from the first train until the last. */
+    public static boolean isInService(LocalTime time) {
+        int hour = time.getHour();
+        return hour >= FIRST_TRAIN_HOUR && hour < LAST_TRAIN_HOUR;
+    }
+
+    /** Departure of the first train of the day. */
+    public static LocalTime firstTrain() {
+        return LocalTime.of(FIRST_TRAIN_HOUR, 0);
+    }
+
+    public int lineCount() {
+        return wait.length;
+    }
+
+    /**
+     * Expected wait for a train of {@code line} on reaching its platform at {@code time}: half
+     * a headway while trains run, and until the first train plus that otherwise.
+     */
+    public int waitSeconds(int line, long time) {
+        return wait[line].valueAt(time);
+    }
+
+    /** Extra seconds a train of {@code line} arriving at {@code time} stands at the platform. */
+    public int dwellSeconds(int line, long time) {
+        return dwell[line].valueAt(time);
+    }
+
+    PiecewiseLinearFunction waitFunction(int line) {
+        return wait[line];
+    }
+
+    PiecewiseLinearFunction dwellFunction(int line) {
+        return dwell[line];
+    }
+
+    public int getTransferWalkSeconds() {
+        return transferWalkSeconds;
+    }
+
+    /** Number of distinct wait functions stored; corridors on the same timetable share one. */
+    public int distinctWaitFunctions() {
+        return new HashSet<>(Arrays.asList(wait)).size();
+    }
+
+    private static PiecewiseLinearFunction bands(int peakValue, int offPeakValue) {
+        int[] values = new int[BAND_STARTS.length];
+        for (int i = 0; i < values.length; i++) {
+            values[i] = BAND_PEAK[i] ? peakValue : offPeakValue;
+        }
+        List<int[]> points = new ArrayList<>();
+        rampedSteps(values, points);
+        return toFunction(points);
+    }
+
+    /**
+     * Half the headway while trains run. After the last train the wait falls by a second per
+     * second until the first train of the next morning.
+     */
+    private static PiecewiseLinearFunction waitFunction(int peakHeadway, int offPeakHeadway) {
+        int[] values = new int[BAND_STARTS.length];
+        for (int i = 0; i < values.length; i++) {
+            values[i] = (BAND_PEAK[i] ? peakHeadway : offPeakHeadway) / 2;
+        }
+        List<int[]> points = new ArrayList<>();
+        rampedSteps(values, points);
+        int close = LAST_TRAIN_HOUR * HOUR;
+        int open = FIRST_TRAIN_HOUR * HOUR;
+        points.add(new int[]{close - 1, values[values.length - 1]});
+        points.add(new int[]{close, open + PiecewiseLinearFunction.DAY_SECONDS - close + values[0]});
+        return toFunction(points);
+    }
+
+    private static void rampedSteps(int[] values, List<int[]> points) {
+        for (int i = 0; i < BAND_STARTS.length; i++) {
+            if (i > 0 && values[i] != values[i - 1]) {
+                points.add(new int[]{BAND_STARTS[i] - RAMP_SECONDS, values[i - 1]});
+            }
+            points.add(new int[]{BAND_STARTS[i], values[i]});
+        }
+    }
+
+    private static PiecewiseLinearFunction toFunction(List<int[]> points) {
+        int[] xs = new int[points.size()];
+        int[] ys = new int[points.size()];
+        for (int i = 0; i < xs.length; i++) {
+            xs[i] = points.get(i)[0];
+            ys[i] = points.get(i)[1];
+        }
+        return new PiecewiseLinearFunction(xs, ys);
+    }
+}
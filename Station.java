@@ -6,6 +6,7 @@ public abstract class Station {
     protected String name;
     protected int corridorNumber;
     protected Set<Station> connections;
+    protected GeoPoint location;
 
     public Station(String name, int corridorNumber) {
         this.name = name;
@@ -21,12 +22,21 @@ public abstract class Station {
         return corridorNumber;
     }
 
+    /** @return where the station is, or null if the network definition does not say */
+    public GeoPoint getLocation() {
+        return location;
+    }
+
+    public void setLocation(GeoPoint location) {
+        this.location = location;
+    }
+
     public void addConnection(Station station) {
         connections.add(station);
     }
 
     public Set<Station> getConnections() {
-        return connections;
+        return Collections.unmodifiableSet(connections);
     }
 
     public abstract double calculateFare();
@@ -0,0 +1,250 @@
+package solvexis.service;
+
+import solvexis.model.GeoPoint;
+import java.util.Arrays;
+
+/**
+ * Uniform grid over station positions for nearest-station and radius queries from an
+ * arbitrary point. Stations are bucketed by latitude/longitude cell in CSR form: the stations
+ * of each cell are contiguous, with their coordinates stored alongside in the same order. The
+ * grid is sized for about two stations per cell, so a query reads a handful of cells whatever
+ * the size of the network.
+ *
+ * <p>Distances are great-circle kilometres. The nearest-k search visits rings of cells around
+ * the query and stops once no unvisited cell can hold anything closer than the k-th station
+ * found; the bound is conservative, so results are exact. Station ids are {@link MetroGraph}
+ * ids; stations without a known position are not indexed.
+ */
+public final class StationIndex {
+    private static final double KM_PER_DEGREE = Math.toRadians(GeoPoint.EARTH_RADIUS_KM);
+    private static final double STATIONS_PER_CELL = 2.0;
+    private static final double MIN_CELL_KM = 0.05;
+
+    private final int indexed;
+    private final double minLat;
+    private final double minLon;
+    private final double cellLat;
+    private final double cellLon;
+    private final int rows;
+    private final int cols;
+    private final int[] cellStart;
+    private final int[] cellStations;
+    private final double[] cellLatRad;
+    private final double[] cellLonRad;
+    private final double[] cellCos;
+    /** Cosine of the latitude farthest from the equator, the least any indexed station has. */
+    private final double minCos;
+    private final GeoPoint[] locations;
+
+    /** @param locations position of each station id, null where unknown */
+    public StationIndex(GeoPoint[] locations) {
+        this.locations = locations.clone();
+        int n = 0;
+        double loLat = Double.MAX_VALUE, hiLat = -Double.MAX_VALUE;
+        double loLon = Double.MAX_VALUE, hiLon = -Double.MAX_VALUE;
+        for (GeoPoint p : locations) {
+            if (p == null) continue;
+            n++;
+            loLat = Math.min(loLat, p.getLatitude());
+            hiLat = Math.max(hiLat, p.getLatitude());
+            loLon = Math.min(loLon, p.getLongitude());
+            hiLon = Math.max(hiLon, p.getLongitude());
+        }
+        this.indexed = n;
+        if (n == 0) {
+            loLat = hiLat = loLon = hiLon = 0;
+        }
+        double midCos = Math.cos(Math.toRadians((loLat + hiLat) / 2));
+        double heightKm = (hiLat - loLat) * KM_PER_DEGREE;
+        double widthKm = (hiLon - loLon) * KM_PER_DEGREE * midCos;
+        double cellKm = Math.max(MIN_CELL_KM, Math.max(
+            Math.sqrt(heightKm * widthKm * STATIONS_PER_CELL / Math.max(1, n)),
+            Math.max(heightKm, widthKm) * STATIONS_PER_CELL / Math.max(1, n)));
+        this.minLat = loLat;
+        this.minLon = loLon;
+        this.cellLat = cellKm / KM_PER_DEGREE;
+        this.cellLon = cellKm / (KM_PER_DEGREE * Math.max(midCos, 1e-6));
+        this.rows = (int) ((hiLat - loLat) / cellLat) + 1;
+        this.cols = (int) ((hiLon - loLon) / cellLon) + 1;
+        this.minCos = Math.min(Math.cos(Math.toRadians(loLat)), Math.cos(Math.toRadians(hiLat)));
+
+        cellStart = new int[rows * cols + 1];
+        for (GeoPoint p : locations) {
+            if (p != null) cellStart[cellOf(p) + 1]++;
+        }
+        for (int c = 0; c < rows * cols; c++) {
+            cellStart[c + 1] += cellStart[c];
+        }
+        cellStations = new int[n];
+        cellLatRad = new double[n];
+        cellLonRad = new double[n];
+        cellCos = new double[n];
+        int[] fill = Arrays.copyOf(cellStart, rows * cols);
+        for (int station = 0; station < locations.length; station++) {
+            GeoPoint p = locations[station];
+            if (p == null) continue;
+            int slot = fill[cellOf(p)]++;
+            cellStations[slot] = station;
+            cellLatRad[slot] = Math.toRadians(p.getLatitude());
+            cellLonRad[slot] = Math.toRadians(p.getLongitude());
+            cellCos[slot] = Math.cos(cellLatRad[slot]);
+        }
+    }
+
+    /** Number of stations with a known position. */
+    public int size() {
+        return indexed;
+    }
+
+    /** @return where {@code station} is, or null if not known */
+    public GeoPoint location(int station) {
+        return locations[station];
+    }
+
+    /** @return great-circle kilometres from {@code station} to {@code point}, or NaN if unplaced */
+    public double distanceKm(int station, GeoPoint point) {
+        GeoPoint p = locations[station];
+        return p == null ? Double.NaN : p.distanceKm(point);
+    }
+
+    /** @return up to {@code k} station ids, nearest to {@code point} first */
+    public int[] nearest(GeoPoint point, int k) {
+        k = Math.min(k, indexed);
+        if (k <= 0) return new int[0];
+        double qLat = Math.toRadians(point.getLatitude());
+        double qLon = Math.toRadians(point.getLongitude());
+        double qCos = Math.cos(qLat);
+        int qRow = (int) Math.floor((point.getLatitude() - minLat) / cellLat);
+        int qCol = (int) Math.floor((point.getLongitude() - minLon) / cellLon);
+
+        // Max-heap of the k best so far, keyed by distance.
+        double[] heapDist = new double[k];
+        int[] heapStation = new int[k];
+        int size = 0;
+        // Rings closer than this hold no cell of the grid.
+        int first = Math.max(Math.max(0, Math.max(-qRow, qRow - (rows - 1))), Math.max(-qCol, qCol - (cols - 1)));
+        for (int r = first; ; r++) {
+            int rowLo = qRow - r, rowHi = qRow + r, colLo = qCol - r, colHi = qCol + r;
+            for (int row = Math.max(rowLo, 0); row <= Math.min(rowHi, rows - 1); row++) {
+                boolean edgeRow = row == rowLo || row == rowHi;
+                for (int col = Math.max(colLo, 0); col <= Math.min(colHi, cols - 1); col++) {
+                    if (!edgeRow && col != colLo && col != colHi) {
+                        // Inner cells were visited by earlier rings; jump to the right edge.
+                        col = Math.max(col, colHi - 1);
+                        continue;
+                    }
+                    int cell = row * cols + col;
+                    for (int i = cellStart[cell]; i < cellStart[cell + 1]; i++) {
+                        double d = haversineKm(qLat, qLon, qCos, cellLatRad[i], cellLonRad[i], cellCos[i]);
+                        if (size < k) {
+                            siftUp(heapDist, heapStation, size++, d, cellStations[i]);
+                        } else if (d < heapDist[0]) {
+                            siftDown(heapDist, heapStation, size, d, cellStations[i]);
+                        }
+                    }
+                }
+            }
+            if (rowLo <= 0 && colLo <= 0 && rowHi >= rows - 1 && colHi >= cols - 1) break;
+            if (size == k && heapDist[0] <= unvisitedBound(point, qCos, rowLo, rowHi, colLo, colHi)) break;
+        }
+
+        int[] out = new int[size];
+        for (int i = size - 1; i >= 0; i--) {
+            out[i] = heapStation[0];
+            siftDown(heapDist, heapStation, i, heapDist[i], heapStation[i]);
+        }
+        return out;
+    }
+
+    /** @return ids of the stations within {@code radiusKm} of {@code point}, nearest first */
+    public int[] withinRadius(GeoPoint point, double radiusKm) {
+        if (indexed == 0 || !(radiusKm >= 0)) return new int[0];
+        double qLat = Math.toRadians(point.getLatitude());
+        double qLon = Math.toRadians(point.getLongitude());
+        double qCos = Math.cos(qLat);
+        // A little slack covers the gap between the haversine and these linear spans.
+        double latSpan = radiusKm * 1.01 / KM_PER_DEGREE;
+        double lonSpan = radiusKm * 1.01 / (KM_PER_DEGREE * Math.max(Math.sqrt(qCos * minCos), 1e-6));
+        int rowLo = Math.max(0, (int) Math.floor((point.getLatitude() - latSpan - minLat) / cellLat));
+        int rowHi = Math.min(rows - 1, (int) Math.floor((point.getLatitude() + latSpan - minLat) / cellLat));
+        int colLo = Math.max(0, (int) Math.floor((point.getLongitude() - lonSpan - minLon) / cellLon));
+        int colHi = Math.min(cols - 1, (int) Math.floor((point.getLongitude() + lonSpan - minLon) / cellLon));
+
+        if (rowLo > rowHi || colLo > colHi) return new int[0];
+
+        int count = 0;
+        long[] found = new long[8];
+        for (int row = rowLo; row <= rowHi; row++) {
+            for (int i = cellStart[row * cols + colLo]; i < cellStart[row * cols + colHi + 1]; i++) {
+                double d = haversineKm(qLat, qLon, qCos, cellLatRad[i], cellLonRad[i], cellCos[i]);
+                if (d > radiusKm) continue;
+                if (count == found.length) found = Arrays.copyOf(found, count * 2);
+                // Non-negative floats order like their bit patterns; the station id breaks ties.
+                found[count++] = ((long) Float.floatToIntBits((float) d) << 32) | cellStations[i];
+            }
+        }
+        Arrays.sort(found, 0, count);
+        int[] out = new int[count];
+        for (int i = 0; i < count; i++) {
+            out[i] = (int) found[i];
+        }
+        return out;
+    }
+
+    private int cellOf(GeoPoint p) {
+        int row = Math.min(rows - 1, (int) ((p.getLatitude() - minLat) / cellLat));
+        int col = Math.min(cols - 1, (int) ((p.getLongitude() - minLon) / cellLon));
+        return row * cols + col;
+    }
+
+    /**
+     * Least distance from the query to any station outside the cells {@code [rowLo, rowHi] x
+     * [colLo, colHi]}: past the latitude band that is at least the latitude gap, and past the
+     * longitude band the haversine term alone, taken at the least cosine of any station.
+     */
+    private double unvisitedBound(GeoPoint point, double qCos, int rowLo, int rowHi, int colLo, int colHi) {
+        double latGap = Math.min(point.getLatitude() - (minLat + rowLo * cellLat),
+            minLat + (rowHi + 1) * cellLat - point.getLatitude());
+        double lonGap = Math.min(point.getLongitude() - (minLon + colLo * cellLon),
+            minLon + (colHi + 1) * cellLon - point.getLongitude());
+        double byLat = GeoPoint.EARTH_RADIUS_KM * Math.toRadians(Math.max(0, latGap));
+        double halfLon = Math.min(Math.PI / 2, Math.toRadians(Math.max(0, lonGap)) / 2);
+        double byLon = 2 * GeoPoint.EARTH_RADIUS_KM * Math.asin(Math.min(1, Math.sqrt(qCos * minCos) * Math.sin(halfLon)));
+        return Math.min(byLat, byLon);
+    }
+
+    private static double haversineKm(double lat1, double lon1, double cos1, double lat2, double lon2, double cos2) {
+        double sLat = Math.sin((lat2 - lat1) / 2);
+        double sLon = Math.sin((lon2 - lon1) / 2);
+        double a = sLat * sLat + cos1 * cos2 * sLon * sLon;
+        return 2 * GeoPoint.EARTH_RADIUS_KM * Math.asin(Math.min(1, Math.sqrt(a)));
+    }
+
+    private static void siftUp(double[] dist, int[] station, int at, double d, int s) {
+        while (at > 0) {
+            int parent = (at - 1) >>> 1;
+            if (dist[parent] >= d) break;
+            dist[at] = dist[parent];
+            station[at] = station[parent];
+            at = parent;
+        }
+        dist[at] = d;
+        station[at] = s;
+    }
+
+    /** Replaces the root with {@code (d, s)} in a heap of {@code size} entries. */
+    private static void siftDown(double[] dist, int[] station, int size, double d, int s) {
+        int at = 0;
+        while (true) {
+            int child = 2 * at + 1;
+            if (child >= size) break;
+            if (child + 1 < size && dist[child + 1] > dist[child]) child++;
+            if (dist[child] <= d) break;
+            dist[at] = dist[child];
+            station[at] = station[child];
+            at = child;
+        }
+        dist[at] = d;
+        station[at] = s;
+    }
+}
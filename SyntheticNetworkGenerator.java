@@ -0,0 +1,163 @@
+package solvexis.data;
+
+import solvexis.model.GeoPoint;
+import java.util.*;
+
+/**
+ * Builds synthetic multi-line networks for scaling tests. Stations are scattered on a
+ * square plane; each line starts at an existing station (so the network stays connected)
+ * and walks across the plane, adding a new station at every stop or, with probability
+ * {@code interchangeRatio}, stopping at a nearby station of another line instead. The plane's
+ * south-west corner sits at central Hyderabad, so every station also gets coordinates.
+ */
+public class SyntheticNetworkGenerator {
+    private static final int MIN_SEGMENT_METERS = 800;
+    private static final int MAX_SEGMENT_METERS = 2500;
+    private static final double CELL_KM = 1.5;
+    private static final double ORIGIN_LATITUDE = 17.385;
+    private static final double ORIGIN_LONGITUDE = 78.4867;
+    private static final double KM_PER_DEGREE_LATITUDE = 110.574;
+    private static final double KM_PER_DEGREE_LONGITUDE = 111.320 * Math.cos(Math.toRadians(ORIGIN_LATITUDE));
+
+    private final int stationCount;
+    private final int lineCount;
+    private final double interchangeRatio;
+    private final Random random;
+
+    private final List<String> names = new ArrayList<>();
+    private final List<double[]> positions = new ArrayList<>();
+    private final Map<Long, List<Integer>> cells = new HashMap<>();
+
+    /**
+     * @param stationCount     number of distinct stations to create
+     * @param lineCount        number of lines; must not exceed {@code stationCount / 2}
+     * @param interchangeRatio probability that a stop reuses an existing station of another line
+     * @param seed             random seed, so a given configuration is reproducible
+     */
+    public SyntheticNetworkGenerator(int stationCount, int lineCount, double interchangeRatio, long seed) {
+        if (lineCount < 1 || stationCount < 2 * lineCount)
+            throw new IllegalArgumentException("Need at least two stations per line");
+        if (interchangeRatio < 0 || interchangeRatio >= 1)
+            throw new IllegalArgumentException("Interchange ratio must be in [0, 1)");
+        this.stationCount = stationCount;
+        this.lineCount = lineCount;
+        this.interchangeRatio = interchangeRatio;
+        this.random = new Random(seed);
+    }
+
+    public NetworkDefinition generate() {
+        List<String> lineNames = new ArrayList<>();
+        List<List<String>> lines = new ArrayList<>();
+        List<int[]> meters = new ArrayList<>();
+        // Roughly one station per 1.5 km x 1.5 km cell.
+        double side = Math.sqrt(stationCount) * CELL_KM;
+
+        int remaining = stationCount;
+        for (int li = 0; li < lineCount; li++) {
+            int newStations = remaining / (lineCount - li);
+            remaining -= newStations;
+
+            List<Integer> stops = new ArrayList<>();
+            Set<Integer> onLine = new HashSet<>();
+            int current;
+            if (names.isEmpty()) {
+                current = addStation(random.nextDouble() * side, random.nextDouble() * side);
+                newStations--;
+            } else {
+                current = random.nextInt(names.size());
+            }
+            stops.add(current);
+            onLine.add(current);
+
+            double heading = random.nextDouble() * 2 * Math.PI;
+            while (newStations > 0) {
+                heading += (random.nextDouble() - 0.5) * 0.6;
+                double[] p = positions.get(current);
+                double step = (MIN_SEGMENT_METERS + random.nextDouble() * (MAX_SEGMENT_METERS - MIN_SEGMENT_METERS)) / 1000.0;
+                double x = p[0] + Math.cos(heading) * step;
+                double y = p[1] + Math.sin(heading) * step;
+                if (x < 0 || x > side || y < 0 || y > side) {
+                    heading += Math.PI / 2;
+                    x = Math.min(side, Math.max(0, x));
+                    y = Math.min(side, Math.max(0, y));
+                }
+
+                int next = -1;
+                if (random.nextDouble() < interchangeRatio) {
+                    next = nearestStation(x, y, onLine);
+                }
+                if (next < 0) {
+                    next = addStation(x, y);
+                    newStations--;
+                }
+                stops.add(next);
+                onLine.add(next);
+                current = next;
+            }
+
+            List<String> line = new ArrayList<>(stops.size());
+            int[] m = new int[stops.size() - 1];
+            for (int i = 0; i < stops.size(); i++) {
+                line.add(names.get(stops.get(i)));
+                if (i > 0) m[i - 1] = meters(stops.get(i - 1), stops.get(i));
+            }
+            lineNames.add("Line " + (li + 1));
+            lines.add(line);
+            meters.add(m);
+        }
+        Map<String, GeoPoint> locations = new HashMap<>();
+        for (int id = 0; id < names.size(); id++) {
+            double[] p = positions.get(id);
+            locations.put(names.get(id), new GeoPoint(ORIGIN_LATITUDE + p[1] / KM_PER_DEGREE_LATITUDE,
+                ORIGIN_LONGITUDE + p[0] / KM_PER_DEGREE_LONGITUDE));
+        }
+        return new NetworkDefinition(lineNames, lines, meters, locations);
+    }
+
+    private int addStation(double x, double y) {
+        int id = names.size();
+        names.add("S" + id);
+        positions.add(new double[]{x, y});
+        cells.computeIfAbsent(cellKey(x, y), k -> new ArrayList<>()).add(id);
+        return id;
+    }
+
+    /** Closest station in the 3x3 cells around (x, y) that is not already on the line, or -1. */
+    private int nearestStation(double x, double y, Set<Integer> exclude) {
+        int cx = (int) Math.floor(x / CELL_KM);
+        int cy = (int) Math.floor(y / CELL_KM);
+        int best = -1;
+        double bestDist = Double.MAX_VALUE;
+        for (int dx = -1; dx <= 1; dx++) {
+            for (int dy = -1; dy <= 1; dy++) {
+                List<Integer> bucket = cells.get(pack(cx + dx, cy + dy));
+                if (bucket == null) continue;
+                for (int id : bucket) {
+                    if (exclude.contains(id)) continue;
+                    double[] p = positions.get(id);
+                    double d = (p[0] - x) * (p[0] - x) + (p[1] - y) * (p[1] - y);
+                    if (d < bestDist) {
+                        bestDist = d;
+                        best = id;
+                    }
+                }
+            }
+        }
+        return best;
+    }
+
+    private int meters(int a, int b) {
+        double[] p = positions.get(a);
+        double[] q = positions.get(b);
+        int m = (int) Math.round(Math.hypot(p[0] - q[0], p[1] - q[1]) * 1000);
+        return Math.max(MIN_SEGMENT_METERS / 2, m);
+    }
+
+    private long cellKey(double x, double y) {
+        return pack((int) Math.floor(x / CELL_KM), (int) Math.floor(y / CELL_KM));
+    }
+
+    private static long pack(int cx, int cy) {
+        return ((long) cx << 32) | (cy & 0xFFFFFFFFL);
+    }
+}
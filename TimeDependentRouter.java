@@ -0,0 +1,181 @@
+package solvexis.service;
+
+import java.util.Arrays;
+
+/**
+ * Earliest-arrival router over the (station, line) states of {@link TimeOptimalRouter} with
+ * costs that depend on the time they are incurred, taken from a {@link ServiceProfile}. The
+ * time of a state is when the rider's train pulls into that station. Boarding waits for
+ * the line's next train, riding adds the extra dwell at the departure stop and the stop time,
+ * and changing lines adds the interchange walk and the wait on the new line. Every cost is
+ * FIFO, so Dijkstra on arrival times is exact and one search answers "depart at T".
+ */
+public class TimeDependentRouter {
+    private final TimeOptimalRouter router;
+    private final MetroGraph graph;
+    private final ServiceProfile profile;
+
+    public TimeDependentRouter(TimeOptimalRouter router, ServiceProfile profile) {
+        if (profile.lineCount() != router.getGraph().lineCount())
+            throw new IllegalArgumentException("Service profile does not cover every line");
+        this.router = router;
+        this.graph = router.getGraph();
+        this.profile = profile;
+    }
+
+    public ServiceProfile getProfile() {
+        return profile;
+    }
+
+    /** A journey with its lines and clock times in seconds since midnight of the departure day. */
+    public static final class Journey {
+        private final int[] path;
+        private final int[] lines;
+        private final long departSecond;
+        private final long arriveSecond;
+
+        Journey(int[] path, int[] lines, long departSecond, long arriveSecond) {
+            this.path = path;
+            this.lines = lines;
+            this.departSecond = departSecond;
+            this.arriveSecond = arriveSecond;
+        }
+
+        public int[] getPath() {
+            return path.clone();
+        }
+
+        /** @return line ridden on each hop of {@link #getPath()} */
+        public int[] getLines() {
+            return lines.clone();
+        }
+
+        public long getDepartSecond() {
+            return departSecond;
+        }
+
+        public long getArriveSecond() {
+            return arriveSecond;
+        }
+
+        /** @return minutes from reaching the first platform to arriving, waits included, rounded up */
+        public int getMinutes() {
+            return (int) ((arriveSecond - departSecond + 59) / 60);
+        }
+    }
+
+    /**
+     * Earliest-arrival Dijkstra for a rider reaching the platforms of {@code source} at
+     * {@code departSecond}. Stops once a state of {@code target} is settled.
+     *
+     * @param arrival output, arrival second at each state; {@code Long.MAX_VALUE} if unreached
+     * @param prev    output, predecessor state of each state; -1 for the source states
+     * @param closures closed elements to avoid, or null
+     * @return the first settled state of {@code target}, or -1
+     */
+    public int search(int source, int target, long departSecond, long[] arrival, int[] prev,
+                      IntMinHeap heap, ClosureSet closures) {
+        return search(source, target, departSecond, arrival, prev, heap, closures, null);
+    }
+
+    /**
+     * Same search where changing lines at station {@code u} also costs
+     * {@code stationPenalty[u]} minutes, which then count in the arrival times.
+     */
+    public int search(int source, int target, long departSecond, long[] arrival, int[] prev,
+                      IntMinHeap heap, ClosureSet closures, int[] stationPenalty) {
+        Arrays.fill(arrival, Long.MAX_VALUE);
+        Arrays.fill(prev, -1);
+        heap.clear();
+        for (int s = router.firstState(source); s < router.endState(source); s++) {
+            long t = departSecond + profile.waitSeconds(router.lineOf(s), departSecond);
+            arrival[s] = t;
+            heap.offer(s, t);
+        }
+
+        while (!heap.isEmpty()) {
+            long t = heap.peekKey();
+            int s = heap.poll();
+            int u = router.stationOf(s);
+            if (u == target) return s;
+            int line = router.lineOf(s);
+
+            long departs = t + profile.dwellSeconds(line, t);
+            for (int e = graph.firstEdge(u); e < graph.endEdge(u); e++) {
+                if (graph.line(e) != line || (closures != null && closures.blocksEdge(e))) continue;
+                relax(s, router.edgeTargetState(e), departs + graph.minutes(e) * 60L, arrival, prev, heap);
+            }
+            long onPlatform = t + profile.getTransferWalkSeconds();
+            long penalty = stationPenalty == null ? 0 : stationPenalty[u] * 60L;
+            for (int n = router.firstState(u); n < router.endState(u); n++) {
+                if (n == s) continue;
+                relax(s, n, onPlatform + profile.waitSeconds(router.lineOf(n), onPlatform) + penalty,
+                    arrival, prev, heap);
+            }
+        }
+        return -1;
+    }
+
+    private static void relax(int from, int to, long t, long[] arrival, int[] prev, IntMinHeap heap) {
+        if (t < arrival[to]) {
+            arrival[to] = t;
+            prev[to] = from;
+            heap.offer(to, t);
+        }
+    }
+
+    /**
+     * @param closures closed elements to avoid, or null
+     * @return the journey arriving earliest, or null if {@code to} is unreachable
+     */
+    public Journey earliestArrival(int from, int to, long departSecond, ClosureSet closures) {
+        return earliestArrival(from, to, departSecond, closures, null);
+    }
+
+    /**
+     * Journey with the earliest arrival once {@code stationPenalty} minutes are charged per
+     * change of lines; its arrival time is the real one, without the penalties.
+     */
+    public Journey earliestArrival(int from, int to, long departSecond, ClosureSet closures, int[] stationPenalty) {
+        int states = router.stateCount();
+        long[] arrival = new long[states];
+        int[] prev = new int[states];
+        int end = search(from, to, departSecond, arrival, prev, new IntMinHeap(states), closures, stationPenalty);
+        if (end < 0) return null;
+        int[] path = router.stationPath(end, prev);
+        int[] lines = new int[path.length - 1];
+        int i = lines.length;
+        for (int s = end; prev[s] >= 0; s = prev[s]) {
+            if (router.stationOf(prev[s]) != router.stationOf(s)) lines[--i] = router.lineOf(s);
+        }
+        long arrive = stationPenalty == null ? arrival[end] : arrivalAlong(path, lines, departSecond);
+        return new Journey(path, lines, departSecond, arrive);
+    }
+
+    /**
+     * Arrival second for a rider following {@code path} on the given lines, leaving the first
+     * platform at {@code departSecond}.
+     */
+    public long arrivalAlong(int[] path, int[] lines, long departSecond) {
+        long t = departSecond;
+        int line = -1;
+        for (int i = 0; i < lines.length; i++) {
+            if (lines[i] < 0) continue;
+            if (lines[i] != line) {
+                if (line >= 0) t += profile.getTransferWalkSeconds();
+                t += profile.waitSeconds(lines[i], t);
+                line = lines[i];
+            }
+            t += profile.dwellSeconds(line, t);
+            t += minutesOnLine(path[i], path[i + 1], line) * 60L;
+        }
+        return t;
+    }
+
+    private int minutesOnLine(int a, int b, int line) {
+        for (int e = graph.firstEdge(a); e < graph.endEdge(a); e++) {
+            if (graph.target(e) == b && graph.line(e) == line) return graph.minutes(e);
+        }
+        return 0;
+    }
+}
@@ -0,0 +1,205 @@
+package solvexis.service;
+
+import java.util.Arrays;
+
+/**
+ * Time-optimal router over a line-state expansion of {@link MetroGraph}. Each station gets
+ * one state per line serving it; riding an edge keeps the line, and switching lines is a
+ * zero-distance move between two states of the same interchange (a {@code JunctionStation})
+ * that costs the transfer penalty. Dijkstra on this graph therefore charges transfers while
+ * choosing the route instead of after the fact.
+ */
+public class TimeOptimalRouter {
+    private final MetroGraph graph;
+    private final int transferPenalty;
+    private final int[] stateOffsets;
+    private final int[] stateStations;
+    private final int[] stateLines;
+    private final int[] edgeTargetStates;
+
+    public TimeOptimalRouter(MetroGraph graph, int transferPenalty) {
+        this.graph = graph;
+        this.transferPenalty = transferPenalty;
+
+        int n = graph.size();
+        stateOffsets = new int[n + 1];
+        int[] scratch = new int[graph.lineCount()];
+        int count = 0;
+        for (int u = 0; u < n; u++) {
+            stateOffsets[u] = count;
+            count += distinctLines(u, scratch);
+        }
+        stateOffsets[n] = count;
+
+        stateStations = new int[count];
+        stateLines = new int[count];
+        for (int u = 0; u < n; u++) {
+            int k = distinctLines(u, scratch);
+            for (int i = 0; i < k; i++) {
+                stateStations[stateOffsets[u] + i] = u;
+                stateLines[stateOffsets[u] + i] = scratch[i];
+            }
+        }
+
+        edgeTargetStates = new int[graph.edgeCount()];
+        for (int u = 0; u < n; u++) {
+            for (int e = graph.firstEdge(u); e < graph.endEdge(u); e++) {
+                edgeTargetStates[e] = stateOf(graph.target(e), graph.line(e));
+            }
+        }
+    }
+
+    private int distinctLines(int u, int[] out) {
+        int k = 0;
+        for (int e = graph.firstEdge(u); e < graph.endEdge(u); e++) {
+            int line = graph.line(e);
+            boolean seen = false;
+            for (int i = 0; i < k; i++) {
+                if (out[i] == line) {
+                    seen = true;
+                    break;
+                }
+            }
+            if (!seen) out[k++] = line;
+        }
+        return k;
+    }
+
+    public MetroGraph getGraph() {
+        return graph;
+    }
+
+    public int getTransferPenalty() {
+        return transferPenalty;
+    }
+
+    public int stateCount() {
+        return stateStations.length;
+    }
+
+    public int stationOf(int state) {
+        return stateStations[state];
+    }
+
+    public int lineOf(int state) {
+        return stateLines[state];
+    }
+
+    public int firstState(int station) {
+        return stateOffsets[station];
+    }
+
+    public int endState(int station) {
+        return stateOffsets[station + 1];
+    }
+
+    /** @return the state reached by riding graph edge {@code edge} */
+    public int edgeTargetState(int edge) {
+        return edgeTargetStates[edge];
+    }
+
+    /** @return the state of {@code station} on {@code line}, or -1 if the line does not serve it */
+    public int stateOf(int station, int line) {
+        for (int s = stateOffsets[station]; s < stateOffsets[station + 1]; s++) {
+            if (stateLines[s] == line) return s;
+        }
+        return -1;
+    }
+
+    /**
+     * Dijkstra from every state of {@code source} (boarding is free). Stops as soon as a state
+     * of {@code target} is settled, or runs to completion when {@code target} is -1.
+     *
+     * @param dist output, minutes to reach each state; {@code Long.MAX_VALUE} if unreached
+     * @param prev output, predecessor state of each state; -1 for the source states
+     * @return the first settled state of {@code target}, or -1
+     */
+    public int search(int source, int target, long[] dist, int[] prev, IntMinHeap heap) {
+        return search(source, target, dist, prev, heap, null);
+    }
+
+    /** Same search that never rides an edge or enters a station closed in {@code closures}. */
+    public int search(int source, int target, long[] dist, int[] prev, IntMinHeap heap, ClosureSet closures) {
+        return search(source, target, dist, prev, heap, closures, null);
+    }
+
+    /**
+     * Same search where changing lines at station {@code u} costs an extra
+     * {@code stationPenalty[u]} minutes on top of the transfer penalty.
+     *
+     * @param stationPenalty per-station interchange surcharge, or null for none
+     */
+    public int search(int source, int target, long[] dist, int[] prev, IntMinHeap heap, ClosureSet closures,
+                      int[] stationPenalty) {
+        Arrays.fill(dist, Long.MAX_VALUE);
+        Arrays.fill(prev, -1);
+        heap.clear();
+        for (int s = stateOffsets[source]; s < stateOffsets[source + 1]; s++) {
+            dist[s] = 0;
+            heap.offer(s, 0);
+        }
+
+        while (!heap.isEmpty()) {
+            long d = heap.peekKey();
+            int s = heap.poll();
+            int u = stateStations[s];
+            if (u == target) return s;
+            int line = stateLines[s];
+
+            for (int e = graph.firstEdge(u); e < graph.endEdge(u); e++) {
+                if (graph.line(e) != line || (closures != null && closures.blocksEdge(e))) continue;
+                relax(s, edgeTargetStates[e], d + graph.minutes(e), dist, prev, heap);
+            }
+            long transfer = d + transferPenalty + (stationPenalty == null ? 0 : stationPenalty[u]);
+            for (int t = stateOffsets[u]; t < stateOffsets[u + 1]; t++) {
+                if (t != s) relax(s, t, transfer, dist, prev, heap);
+            }
+        }
+        return -1;
+    }
+
+    private static void relax(int from, int to, long nd, long[] dist, int[] prev, IntMinHeap heap) {
+        if (nd < dist[to]) {
+            dist[to] = nd;
+            prev[to] = from;
+            heap.offer(to, nd);
+        }
+    }
+
+    /**
+     * @return the station ids on the fastest path, or null if {@code to} is unreachable
+     */
+    public int[] shortestPath(int from, int to) {
+        return shortestPath(from, to, null);
+    }
+
+    public int[] shortestPath(int from, int to, ClosureSet closures) {
+        return shortestPath(from, to, closures, null);
+    }
+
+    public int[] shortestPath(int from, int to, ClosureSet closures, int[] stationPenalty) {
+        int states = stateCount();
+        long[] dist = new long[states];
+        int[] prev = new int[states];
+        int end = search(from, to, dist, prev, new IntMinHeap(states), closures, stationPenalty);
+        return end < 0 ? null : stationPath(end, prev);
+    }
+
+    /** Walks predecessor states back from {@code end}, collapsing transfers into one station. */
+    public int[] stationPath(int end, int[] prev) {
+        int length = 0;
+        int last = -1;
+        for (int s = end; s >= 0; s = prev[s]) {
+            if (stateStations[s] != last) length++;
+            last = stateStations[s];
+        }
+        int[] path = new int[length];
+        last = -1;
+        int i = length;
+        for (int s = end; s >= 0; s = prev[s]) {
+            if (stateStations[s] != last) path[--i] = stateStations[s];
+            last = stateStations[s];
+        }
+        return path;
+    }
+}
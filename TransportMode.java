@@ -26,6 +26,21 @@ public class TransportMode {
         return ALL_MODES.clone();
     }
 
+    /** Position of this mode in {@link #values()}; stable, as trip logs store it. */
+    public int index() {
+        for (int i = 0; i < ALL_MODES.length; i++) {
+            if (ALL_MODES[i] == this) return i;
+        }
+        throw new IllegalStateException();
+    }
+
+    /** @throws IllegalArgumentException if no mode has this index */
+    public static TransportMode fromIndex(int index) {
+        if (index < 0 || index >= ALL_MODES.length)
+            throw new IllegalArgumentException("No transport mode " + index);
+        return ALL_MODES[index];
+    }
+
     public double calculateFare(double distance, boolean isPeakHour) {
         double effectiveDistance = Math.max(distance, minimumDistance);
         double fare = baseFarePerKm * effectiveDistance;
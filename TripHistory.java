@@ -4,75 +4,285 @@ import solvexis.model.Station;
 import solvexis.service.transport.*;
 import solvexis.service.CarbonFootprintService;
 import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
 import java.time.*;
 import java.time.format.DateTimeFormatter;
 import java.util.*;
 
+/**
+ * Completed trips of each user, kept in a binary {@link TripLog} ({@code trip_history.log}, or
+ * {@code trip_history_<user>.log}). The decorated text the app shows is rendered from the log
+ * on demand; text histories written before the log existed are still shown, older than it.
+ * Saving a trip only queues it on the user's {@link TripWriter}, so the caller, often the
+ * Swing event thread, never waits on the disk.
+ */
 public class TripHistory {
-    private static final String FILE_NAME = "trip_history.txt";
+    private static final String FILE_NAME = "trip_history";
+    private static final String LOG_SUFFIX = ".log";
+    private static final String LEGACY_SUFFIX = ".txt";
+    private static final String RULE = "════════════════════════════════════════════════";
+    /** How each trip of a legacy text history begins; its blank line starts the block. */
+    private static final byte[] LEGACY_TRIP_START =
+        ("\n" + RULE + "\n   TRIP DETAILS\n").getBytes(StandardCharsets.UTF_8);
+    /** Bytes searched per read when looking backward for the start of legacy trips. */
+    private static final int LEGACY_CHUNK = 16 * 1024;
     private static final DateTimeFormatter formatter = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss");
     private static final CarbonFootprintService carbonService = new CarbonFootprintService();
 
+    /** System property choosing {@code flush} or {@code fsync} after each batch of trips. */
+    public static final String DURABILITY_PROPERTY = "solvexis.tripLog.durability";
+    private static final Map<Path, TripWriter> writers = new HashMap<>();
+    private static boolean shutdownHookAdded;
+    private static boolean writersClosed;
+
     public static void saveCompleteTrip(List<Station> route, LastMileService.TransportOption lastMile, 
                                       String destination, double metroFare) {
         saveCompleteTripForUser(null, route, lastMile, destination, metroFare);
     }
 
+    /**
+     * Queues the trip on the user's {@link TripWriter} and returns; the write happens on the
+     * writer's thread. Blocks only if the writer has fallen a whole queue behind.
+     */
     public static void saveCompleteTripForUser(String userName, List<Station> route,
                                                LastMileService.TransportOption lastMile,
                                                String destination, double metroFare) {
-        String fileName = FILE_NAME;
+        try {
+            writerFor(userName).submit(toRecord(route, lastMile, destination, metroFare));
+        } catch (IOException | IllegalStateException e) {
+            System.err.println("Error saving trip history: " + e.getMessage());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            System.err.println("Interrupted while saving trip history");
+        }
+    }
+
+    /**
+     * The background writer of the user's log, opened on first use and kept until the JVM
+     * exits, when queued trips are written out. Its durability comes from the
+     * {@value #DURABILITY_PROPERTY} system property, {@code flush} (default) or {@code fsync}.
+     */
+    public static TripWriter writerFor(String userName) throws IOException {
+        Path path = logPathFor(userName).toAbsolutePath();
+        synchronized (writers) {
+            if (writersClosed) throw new IOException("Trip history is closed");
+            TripWriter writer = writers.get(path);
+            if (writer == null) {
+                TripWriter.Durability durability = TripWriter.Durability.parse(
+                    System.getProperty(DURABILITY_PROPERTY), TripWriter.Durability.FLUSH_PER_BATCH);
+                writer = new TripWriter(TripLog.open(path), durability);
+                if (!shutdownHookAdded) {
+                    shutdownHookAdded = true;
+                    Runtime.getRuntime().addShutdownHook(new Thread(TripHistory::closeWriters, "trip-writer-shutdown"));
+                }
+                writers.put(path, writer);
+            }
+            return writer;
+        }
+    }
+
+    /**
+     * Writes out every queued trip and closes the logs; saves after this fail. The map stays
+     * locked until every writer is closed, so no second writer can open a log still being
+     * written.
+     */
+    public static void closeWriters() {
+        synchronized (writers) {
+            writersClosed = true;
+            for (TripWriter writer : writers.values()) {
+                try {
+                    writer.close();
+                } catch (IOException e) {
+                    System.err.println("Error closing trip history: " + e.getMessage());
+                }
+            }
+            writers.clear();
+        }
+    }
+
+    /** The trip as logged now; the destination is kept only alongside a last-mile ride. */
+    public static TripRecord toRecord(List<Station> route, LastMileService.TransportOption lastMile,
+                                      String destination, double metroFare) {
+        List<String> names = new ArrayList<>(route.size());
+        for (Station station : route) {
+            names.add(station.getName());
+        }
+        double metroKm = carbonService.calculateDistance(route);
+        boolean withLastMile = lastMile != null && destination != null;
+        return new TripRecord(Instant.now(), names, metroFare, metroKm, withLastMile ? destination : null,
+            withLastMile ? lastMile.getMode() : null,
+            withLastMile ? lastMile.getFare() : 0,
+            withLastMile ? lastMile.getDistance() : 0,
+            withLastMile ? lastMile.getEstimatedMinutes() : 0);
+    }
+
+    public static Path logPathFor(String userName) {
+        return Paths.get(fileBaseFor(userName) + LOG_SUFFIX);
+    }
+
+    /**
+     * The user's logged trips in {@code [from, to)} through {@code station}, oldest first;
+     * see {@link TripLog#find(Instant, Instant, String)}. Legacy text history is not searched.
+     */
+    public static List<TripRecord> findTrips(String userName, Instant from, Instant to, String station)
+            throws IOException {
+        TripLog log = logFor(userName);
+        return log == null ? new ArrayList<>() : log.find(from, to, station);
+    }
+
+    /** Text history written by versions before the binary log. */
+    public static Path legacyPathFor(String userName) {
+        return Paths.get(fileBaseFor(userName) + LEGACY_SUFFIX);
+    }
+
+    private static String fileBaseFor(String userName) {
         if (userName != null && !userName.trim().isEmpty()) {
-            fileName = "trip_history_" + userName.trim() + ".txt";
+            return FILE_NAME + "_" + userName.trim();
         }
-        try (PrintWriter writer = new PrintWriter(new FileWriter(fileName, true))) {
-            LocalDateTime now = LocalDateTime.now();
-            String from = route.get(0).getName();
-            String to = route.get(route.size() - 1).getName();
-            
-            StringBuilder sb = new StringBuilder();
-            sb.append("\n════════════════════════════════════════════════\n");
-            sb.append("   TRIP DETAILS\n");
-            sb.append("════════════════════════════════════════════════\n\n");
-            sb.append("Date & Time: ").append(formatter.format(now)).append("\n\n");
-            sb.append("Metro Journey:\n");
-            sb.append("  From: ").append(from).append("\n");
-            sb.append("  To: ").append(to).append("\n");
-            sb.append("  Via: ");
-            for (Station station : route) {
-                sb.append(station.getName());
-                if (station != route.get(route.size() - 1)) {
-                    sb.append(" -> ");
+        return FILE_NAME;
+    }
+
+    /** Up to {@code limit} of the user's latest logged trips, newest first. */
+    public static TripPage newestTrips(String userName, int limit) throws IOException {
+        TripLog log = logFor(userName);
+        return log == null ? TripPage.EMPTY : log.newest(limit);
+    }
+
+    /** Up to {@code limit} of the user's logged trips before those of {@code page}, newest first. */
+    public static TripPage olderTrips(String userName, TripPage page, int limit) throws IOException {
+        if (!page.hasOlder()) return TripPage.EMPTY;
+        return logFor(userName).olderThan(page, limit);
+    }
+
+    /**
+     * Up to {@code limit} of the latest trips of the user's legacy text history, which are
+     * older than any logged trip, newest first. Only the page is read, from the file's end.
+     */
+    public static LegacyPage newestLegacyTrips(String userName, int limit) throws IOException {
+        Path legacy = legacyPathFor(userName);
+        if (!Files.exists(legacy)) return LegacyPage.EMPTY;
+        return readLegacyBackward(legacy, Long.MAX_VALUE, limit);
+    }
+
+    /** Up to {@code limit} legacy trips before those of {@code page}, newest first. */
+    public static LegacyPage olderLegacyTrips(String userName, LegacyPage page, int limit) throws IOException {
+        if (!page.hasOlder()) return LegacyPage.EMPTY;
+        return readLegacyBackward(legacyPathFor(userName), page.getOlderPosition(), limit);
+    }
+
+    /**
+     * Finds the starts of the {@code limit} trips that end at {@code before} by searching back
+     * a chunk at a time, then reads just those trips. Text ahead of the file's first trip is
+     * shown with it, or as a last page of its own.
+     */
+    private static LegacyPage readLegacyBackward(Path legacy, long before, int limit) throws IOException {
+        if (limit <= 0) throw new IllegalArgumentException("Page size must be positive");
+        try (FileChannel file = FileChannel.open(legacy, StandardOpenOption.READ)) {
+            long end = Math.min(before, file.size());
+            List<Long> starts = new ArrayList<>(limit + 1);
+            starts.add(end);
+            byte[] chunk = new byte[LEGACY_CHUNK + LEGACY_TRIP_START.length - 1];
+            long searched = end;
+            while (starts.size() <= limit && searched > 0) {
+                // The chunk overlaps the part already searched so a start across the seam is seen.
+                long from = Math.max(0, searched - LEGACY_CHUNK);
+                int length = (int) (Math.min(end, searched + LEGACY_TRIP_START.length - 1) - from);
+                readFully(file, chunk, from, length);
+                for (int i = (int) (searched - from) - 1; i >= 0 && starts.size() <= limit; i--) {
+                    if (startsLegacyTrip(chunk, i, length)) starts.add(from + i);
                 }
+                searched = from;
             }
-            sb.append("\n");
-            sb.append("  Metro Fare: ₹").append(String.format("%.0f", metroFare)).append("\n");
-            
-            if (lastMile != null && destination != null) {
-                sb.append("\nLast Mile Connection:\n");
-                sb.append("  To: ").append(destination).append("\n");
-                sb.append("  Mode: ").append(lastMile.getMode().getDisplayName()).append("\n");
-                sb.append("  Fare: ₹").append(String.format("%.0f", lastMile.getFare())).append("\n");
-                sb.append("  Est. Time: ").append(lastMile.getEstimatedMinutes()).append(" minutes\n");
+            long oldest = starts.get(starts.size() - 1);
+            if (starts.size() <= limit && oldest > 0) {
+                if (starts.size() == 1) starts.add(0L);
+                else starts.set(starts.size() - 1, 0L);
+                oldest = 0;
             }
-            
-            double totalFare = metroFare + (lastMile != null ? lastMile.getFare() : 0);
-            double metroDistance = carbonService.calculateDistance(route);
-            double lastMileDistance = lastMile != null ? lastMile.getEstimatedMinutes() / 2.0 : 0;
-            double totalDistance = metroDistance + lastMileDistance;
-            double co2Saved = carbonService.calculateCO2Saved(metroDistance);
-            
-            sb.append("\nTrip Summary:\n");
-            sb.append("  Total Distance: ").append(String.format("%.1f km", totalDistance)).append("\n");
-            sb.append("  Total Fare: ₹").append(String.format("%.0f", totalFare)).append("\n");
-            sb.append("  CO₂ Saved: ").append(carbonService.formatCO2Saved(co2Saved)).append("\n");
-            sb.append("════════════════════════════════════════════════\n");
-            
-            writer.write(sb.toString());
+
+            byte[] page = new byte[(int) (end - oldest)];
+            readFully(file, page, oldest, page.length);
+            List<String> trips = new ArrayList<>(starts.size() - 1);
+            for (int k = 1; k < starts.size(); k++) {
+                int from = (int) (starts.get(k) - oldest);
+                int to = (int) (starts.get(k - 1) - oldest);
+                trips.add(new String(page, from, to - from, StandardCharsets.UTF_8));
+            }
+            return new LegacyPage(trips, oldest);
+        }
+    }
+
+    private static boolean startsLegacyTrip(byte[] chunk, int at, int length) {
+        if (at + LEGACY_TRIP_START.length > length) return false;
+        for (int i = 0; i < LEGACY_TRIP_START.length; i++) {
+            if (chunk[at + i] != LEGACY_TRIP_START[i]) return false;
+        }
+        return true;
+    }
+
+    private static void readFully(FileChannel file, byte[] into, long position, int length) throws IOException {
+        ByteBuffer buffer = ByteBuffer.wrap(into, 0, length);
+        while (buffer.hasRemaining()) {
+            if (file.read(buffer, position + buffer.position()) < 0)
+                throw new EOFException("Trip history ended early: " + file.size() + " bytes");
+        }
+    }
+
+    /** The trips of {@code page} rendered in page order, newest first. */
+    public static String render(TripPage page) {
+        StringBuilder sb = new StringBuilder();
+        for (TripRecord trip : page.getTrips()) {
+            sb.append(render(trip));
+        }
+        return sb.toString();
+    }
+
+    /**
+     * The user's log, read through its writer (which owns the file) once the trips queued are
+     * in; null if the user has never logged a trip.
+     */
+    private static TripLog logFor(String userName) throws IOException {
+        if (!Files.exists(logPathFor(userName))) return null;
+        TripWriter writer = writerFor(userName);
+        try {
             writer.flush();
-            
-        } catch (IOException e) {
-            System.err.println("Error saving trip history: " + e.getMessage());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        return writer.getLog();
+    }
+
+    /** The decorated text block shown for one trip. */
+    public static String render(TripRecord trip) {
+        StringBuilder sb = new StringBuilder();
+        sb.append("\n").append(RULE).append("\n");
+        sb.append("   TRIP DETAILS\n");
+        sb.append(RULE).append("\n\n");
+        LocalDateTime time = LocalDateTime.ofInstant(trip.getTime(), ZoneId.systemDefault());
+        sb.append("Date & Time: ").append(formatter.format(time)).append("\n\n");
+        sb.append("Metro Journey:\n");
+        sb.append("  From: ").append(trip.getFrom()).append("\n");
+        sb.append("  To: ").append(trip.getTo()).append("\n");
+        sb.append("  Via: ").append(String.join(" -> ", trip.getStations())).append("\n");
+        sb.append("  Metro Fare: ₹").append(String.format("%.0f", trip.getMetroFare())).append("\n");
+
+        if (trip.hasLastMile()) {
+            sb.append("\nLast Mile Connection:\n");
+            sb.append("  To: ").append(trip.getDestination()).append("\n");
+            sb.append("  Mode: ").append(trip.getLastMileMode().getDisplayName()).append("\n");
+            sb.append("  Fare: ₹").append(String.format("%.0f", trip.getLastMileFare())).append("\n");
+            sb.append("  Est. Time: ").append(trip.getLastMileMinutes()).append(" minutes\n");
         }
+
+        double co2Saved = carbonService.calculateCO2Saved(trip.getMetroKm());
+        sb.append("\nTrip Summary:\n");
+        sb.append("  Total Distance: ").append(String.format("%.1f km", trip.getTotalKm())).append("\n");
+        sb.append("  Total Fare: ₹").append(String.format("%.0f", trip.getTotalFare())).append("\n");
+        sb.append("  CO₂ Saved: ").append(carbonService.formatCO2Saved(co2Saved)).append("\n");
+        sb.append(RULE).append("\n");
+        return sb.toString();
     }
 }
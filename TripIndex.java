@@ -0,0 +1,591 @@
+package solvexis.data;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Secondary indexes of a {@link TripLog}, kept in three files beside it and extended with
+ * every batch the log appends. All are derived data: when they are lost or fall out of step
+ * with the log, the log rebuilds them.
+ *
+ * <p>{@code <log>.time} (big-endian): magic, version, then a fixed 28-byte entry per block of
+ * {@link #BLOCK} records: u64 offset of the block's first and of its last record, u32
+ * earliest and latest epoch second in it, u32 record count. The entry of the block still
+ * filling is rewritten in place. A date-range query reads only the blocks whose span meets
+ * the range, so it stays exact even if the clock went backwards between two trips.
+ *
+ * <p>{@code <log>.postings}: magic, version, then pages each holding the record offsets of one
+ * station, ascending: u32 station id, u16 capacity, u16 entry count, u64 position of the
+ * station's previous page (0 for its first), u64 offset of the first record, then a u32
+ * distance from it to each record, {@code capacity} slots in all. A station's first page has
+ * room for {@link #FIRST_PAGE} records and each next one twice its previous, up to
+ * {@link #PAGE}, so a station seen once costs 40 bytes and a busy one about 4.4 bytes per
+ * trip. A record more than 4 GB past the first starts a new page. A station's newest page is
+ * rewritten in place as it fills.
+ *
+ * <p>{@code <log>.stations}: magic, version, u64 offset of the last record indexed, then the
+ * u64 position of each station's newest page by dictionary id (0 for a station on no trip).
+ * A query by station follows that station's pages back from the newest and stops at the
+ * first one older than the time range, reading no other station's pages.
+ *
+ * <p>The time file ends, and the station file starts, with the offset of the last record
+ * covered, which lets opening the log check them against its own last record without
+ * reading them. The small time file is read in full by the first query. All three are read
+ * with positional reads rather than mapped, so that a rebuild can truncate them on any
+ * platform.
+ */
+final class TripIndex implements Closeable {
+    static final int BLOCK = 64;
+    static final int PAGE = 64;
+    static final int FIRST_PAGE = 4;
+
+    private static final int TIME_MAGIC = 0x53565454; // "SVTT"
+    private static final int STATIONS_MAGIC = 0x53565450; // "SVTP"
+    private static final int POSTINGS_MAGIC = 0x5356544F; // "SVTO"
+    private static final int TIME_VERSION = 1;
+    private static final int STATIONS_VERSION = 2;
+    private static final int POSTINGS_VERSION = 2;
+    private static final int HEADER = 8;
+    private static final int STATIONS_HEADER = HEADER + 8;
+    private static final int TIME_ENTRY = 28;
+    private static final int PAGE_HEADER = 24;
+    private static final String TIME_SUFFIX = ".time";
+    private static final String STATIONS_SUFFIX = ".stations";
+    private static final String POSTINGS_SUFFIX = ".postings";
+
+    private final FileChannel time;
+    private final FileChannel stations;
+    private final FileChannel postings;
+
+    // The block still filling, whose entry sits at openBlockPosition in the time file.
+    private long openBlockPosition = HEADER;
+    private long openFirst;
+    private long openLast;
+    private long openMin;
+    private long openMax;
+    private int openCount;
+
+    // Sealed block entries added since the last flush, going to timeWriteFrom.
+    private long timeWriteFrom = HEADER;
+    private byte[] timePending = new byte[TIME_ENTRY * 4];
+    private int timePendingLength;
+
+    // Per station id: position of its newest page (0 for none) and, once the station has been
+    // added to, that page's entries. Pages filled since the last flush wait in sealedPages,
+    // the i-th starting at sealedStarts[i].
+    private long[] heads = new long[0];
+    private long[][] pageEntries = new long[0][];
+    private int[] pageCounts = new int[0];
+    private long[] pagePrevious = new long[0];
+    private boolean[] pageDirty = new boolean[0];
+    private boolean[] headMoved = new boolean[0];
+    private int[] dirtyStations = new int[16];
+    private int dirtyCount;
+    private byte[] sealedPages = new byte[0];
+    private int sealedLength;
+    private int[] sealedStarts = new int[4];
+    private long[] sealedPositions = new long[4];
+    private int sealedCount;
+    private long postingsEnd = HEADER;
+    private long covered = -1;
+
+    // Loaded by the first query, then kept up to date by add().
+    private boolean blocksLoaded;
+    private long[] blockFirst = new long[16];
+    private long[] blockLast = new long[16];
+    private long[] blockMin = new long[16];
+    private long[] blockMax = new long[16];
+    private int blocks;
+
+    private TripIndex(FileChannel time, FileChannel stations, FileChannel postings) {
+        this.time = time;
+        this.stations = stations;
+        this.postings = postings;
+    }
+
+    /** Opens the index files of {@code log}, creating them empty if they do not exist. */
+    static TripIndex open(Path log) throws IOException {
+        List<FileChannel> opened = new ArrayList<>(3);
+        try {
+            for (String suffix : new String[] {TIME_SUFFIX, STATIONS_SUFFIX, POSTINGS_SUFFIX}) {
+                opened.add(FileChannel.open(log.resolveSibling(log.getFileName() + suffix),
+                    StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE));
+            }
+        } catch (IOException e) {
+            for (FileChannel channel : opened) {
+                channel.close();
+            }
+            throw e;
+        }
+        TripIndex index = new TripIndex(opened.get(0), opened.get(1), opened.get(2));
+        try {
+            index.readTail();
+        } catch (IOException | RuntimeException e) {
+            index.close();
+            throw e;
+        }
+        return index;
+    }
+
+    /**
+     * Whether the files cover the log exactly up to the record at {@code lastRecord}, or are
+     * empty when it is negative and the log has no records. Checked on the files' headers and
+     * the time file's last entry only.
+     */
+    boolean coversUpTo(long lastRecord) throws IOException {
+        long timeSize = time.size();
+        long stationsSize = stations.size();
+        if (timeSize < HEADER || (timeSize - HEADER) % TIME_ENTRY != 0) return false;
+        if (stationsSize < STATIONS_HEADER || (stationsSize - STATIONS_HEADER) % 8 != 0) return false;
+        if (!hasHeader(time, TIME_MAGIC, TIME_VERSION) || !hasHeader(stations, STATIONS_MAGIC, STATIONS_VERSION)
+                || !hasHeader(postings, POSTINGS_MAGIC, POSTINGS_VERSION)) return false;
+        if (readLong(stations, HEADER) != lastRecord) return false;
+        if (lastRecord < 0) return timeSize == HEADER;
+        return timeSize > HEADER && readLong(time, timeSize - TIME_ENTRY + 8) == lastRecord;
+    }
+
+    /** Empties the files ahead of a rebuild; the time blocks are loaded again by the next query. */
+    void clear() throws IOException {
+        time.truncate(0);
+        stations.truncate(0);
+        postings.truncate(0);
+        writeHeader(time, TIME_MAGIC, TIME_VERSION);
+        writeHeader(stations, STATIONS_MAGIC, STATIONS_VERSION);
+        writeLong(stations, HEADER, -1);
+        writeHeader(postings, POSTINGS_MAGIC, POSTINGS_VERSION);
+        openBlockPosition = HEADER;
+        openCount = 0;
+        timeWriteFrom = HEADER;
+        timePendingLength = 0;
+        heads = new long[0];
+        pageEntries = new long[0][];
+        pageCounts = new int[0];
+        pagePrevious = new long[0];
+        pageDirty = new boolean[0];
+        headMoved = new boolean[0];
+        dirtyCount = 0;
+        sealedCount = 0;
+        sealedLength = 0;
+        postingsEnd = HEADER;
+        covered = -1;
+        blocksLoaded = false;
+        blocks = 0;
+    }
+
+    /**
+     * Indexes the record at {@code offset}; written out by the next {@link #flush()}. The
+     * first add to a station since opening reads its newest page.
+     */
+    void add(long offset, long second, int[] stationIds) throws IOException {
+        if (openCount == BLOCK) {
+            timePendingLength = putEntry(timePending, timePendingLength);
+            openBlockPosition += TIME_ENTRY;
+            openCount = 0;
+        }
+        if (openCount == 0) {
+            openFirst = offset;
+            openMin = second;
+            openMax = second;
+            if (blocksLoaded) blocks++;
+        }
+        openLast = offset;
+        openMin = Math.min(openMin, second);
+        openMax = Math.max(openMax, second);
+        openCount++;
+        if (blocksLoaded) noteOpenBlock();
+
+        for (int id : distinct(stationIds)) {
+            addPosting(id, offset);
+        }
+        covered = offset;
+    }
+
+    /** Writes out everything added since the last flush, pages before the covered offset. */
+    void flush() throws IOException {
+        if (sealedCount > 0) writeSealedPages();
+        if (dirtyCount > 0) {
+            byte[] page = new byte[pageBytes(PAGE)];
+            for (int i = 0; i < dirtyCount; i++) {
+                int id = dirtyStations[i];
+                int length = putPage(page, 0, id, pageCounts[id], pagePrevious[id], pageEntries[id]);
+                writeFully(postings, ByteBuffer.wrap(page, 0, length), heads[id]);
+            }
+            for (int i = 0; i < dirtyCount; i++) {
+                int id = dirtyStations[i];
+                if (headMoved[id]) writeLong(stations, STATIONS_HEADER + 8L * id, heads[id]);
+                headMoved[id] = false;
+                pageDirty[id] = false;
+            }
+            dirtyCount = 0;
+        }
+        if (openCount > 0) {
+            int length = putEntry(timePending, timePendingLength);
+            writeFully(time, ByteBuffer.wrap(timePending, 0, length), timeWriteFrom);
+            timeWriteFrom = openBlockPosition;
+            timePendingLength = 0;
+        }
+        writeLong(stations, HEADER, covered);
+    }
+
+    /**
+     * Writes the pages filled since the last flush in position order, each run of adjacent
+     * pages as one write. Stations on the same trips fill their pages at about the same rate,
+     * so after a rebuild most pages have neighbours.
+     */
+    private void writeSealedPages() throws IOException {
+        Integer[] order = new Integer[sealedCount];
+        for (int i = 0; i < sealedCount; i++) {
+            order[i] = i;
+        }
+        Arrays.sort(order, (a, b) -> Long.compare(sealedPositions[a], sealedPositions[b]));
+        byte[] run = new byte[sealedLength];
+        int runLength = 0;
+        long runPosition = 0;
+        for (int k = 0; k < sealedCount; k++) {
+            int i = order[k];
+            int start = sealedStarts[i];
+            int length = (i + 1 < sealedCount ? sealedStarts[i + 1] : sealedLength) - start;
+            if (runLength == 0) runPosition = sealedPositions[i];
+            System.arraycopy(sealedPages, start, run, runLength, length);
+            runLength += length;
+            boolean runEnds = k + 1 == sealedCount || sealedPositions[order[k + 1]] != runPosition + runLength;
+            if (runEnds) {
+                writeFully(postings, ByteBuffer.wrap(run, 0, runLength), runPosition);
+                runLength = 0;
+            }
+        }
+        sealedCount = 0;
+        sealedLength = 0;
+    }
+
+    /** Reads the time blocks into memory once; later adds keep them current. */
+    void loadBlocks() throws IOException {
+        if (blocksLoaded) return;
+        long timeSize = time.size();
+        int count = (int) ((timeSize - HEADER) / TIME_ENTRY);
+        blockFirst = new long[Math.max(16, count)];
+        blockLast = new long[blockFirst.length];
+        blockMin = new long[blockFirst.length];
+        blockMax = new long[blockFirst.length];
+        if (count > 0) {
+            ByteBuffer buf = ByteBuffer.allocate(count * TIME_ENTRY);
+            readFully(time, buf, HEADER);
+            for (int b = 0; b < count; b++) {
+                int at = b * TIME_ENTRY;
+                blockFirst[b] = buf.getLong(at);
+                blockLast[b] = buf.getLong(at + 8);
+                blockMin[b] = buf.getInt(at + 16) & 0xFFFFFFFFL;
+                blockMax[b] = buf.getInt(at + 20) & 0xFFFFFFFFL;
+            }
+        }
+        blocks = count;
+        blocksLoaded = true;
+    }
+
+    /**
+     * Offsets of the records listing {@code stationId} in blocks whose span meets
+     * {@code [from, to)}, ascending. Reads that station's pages from the newest back to the
+     * first that starts before those blocks. Requires {@link #loadBlocks()}.
+     */
+    long[] stationMatches(int stationId, long from, long to) throws IOException {
+        long lowest = -1;
+        long highest = -1;
+        for (int b = 0; b < blocks; b++) {
+            if (blockMax[b] >= from && blockMin[b] < to) {
+                if (lowest < 0) lowest = blockFirst[b];
+                highest = blockLast[b];
+            }
+        }
+        if (lowest < 0 || stationId >= heads.length || heads[stationId] == 0) return new long[0];
+
+        List<long[]> pages = new ArrayList<>();
+        int total = 0;
+        long position = heads[stationId];
+        while (position != 0) {
+            long[] entries;
+            long previous;
+            if (position == heads[stationId] && pageEntries[stationId] != null) {
+                entries = Arrays.copyOf(pageEntries[stationId], pageCounts[stationId]);
+                previous = pagePrevious[stationId];
+            } else {
+                ByteBuffer page = readPage(stationId, position);
+                entries = pageEntries(page, page.getShort(6) & 0xFFFF);
+                previous = page.getLong(8);
+            }
+            if (entries[0] <= highest) {
+                pages.add(entries);
+                total += entries.length;
+            }
+            // Every older page holds only records before this page's first.
+            if (entries[0] <= lowest) break;
+            position = previous;
+        }
+
+        long[] out = new long[total];
+        int found = 0;
+        int b = 0;
+        for (int p = pages.size() - 1; p >= 0; p--) {
+            for (long offset : pages.get(p)) {
+                while (b < blocks && blockLast[b] < offset) b++;
+                if (b < blocks && blockMax[b] >= from && blockMin[b] < to) out[found++] = offset;
+            }
+        }
+        return Arrays.copyOf(out, found);
+    }
+
+    /**
+     * First and last record offset of each block whose span meets {@code [from, to)}, as
+     * consecutive pairs. Requires {@link #loadBlocks()}.
+     */
+    long[] blocksOverlapping(long from, long to) {
+        long[] out = new long[blocks * 2];
+        int found = 0;
+        for (int b = 0; b < blocks; b++) {
+            if (blockMax[b] >= from && blockMin[b] < to) {
+                out[found++] = blockFirst[b];
+                out[found++] = blockLast[b];
+            }
+        }
+        return Arrays.copyOf(out, found);
+    }
+
+    @Override
+    public void close() throws IOException {
+        try {
+            postings.close();
+        } finally {
+            try {
+                stations.close();
+            } finally {
+                time.close();
+            }
+        }
+    }
+
+    /**
+     * Picks up the block still filling, each station's newest page position and where the
+     * page file ends, writing headers of new files.
+     */
+    private void readTail() throws IOException {
+        if (time.size() < HEADER) writeHeader(time, TIME_MAGIC, TIME_VERSION);
+        if (stations.size() < STATIONS_HEADER) {
+            writeHeader(stations, STATIONS_MAGIC, STATIONS_VERSION);
+            writeLong(stations, HEADER, -1);
+        }
+        if (postings.size() < HEADER) writeHeader(postings, POSTINGS_MAGIC, POSTINGS_VERSION);
+
+        long timeSize = time.size();
+        if (timeSize >= HEADER + TIME_ENTRY && (timeSize - HEADER) % TIME_ENTRY == 0) {
+            openBlockPosition = timeSize - TIME_ENTRY;
+            ByteBuffer entry = ByteBuffer.allocate(TIME_ENTRY);
+            readFully(time, entry, openBlockPosition);
+            openFirst = entry.getLong(0);
+            openLast = entry.getLong(8);
+            openMin = entry.getInt(16) & 0xFFFFFFFFL;
+            openMax = entry.getInt(20) & 0xFFFFFFFFL;
+            openCount = entry.getInt(24);
+        } else {
+            // Empty or out of step; coversUpTo() reports it and the log clears us.
+            openBlockPosition = HEADER;
+        }
+        timeWriteFrom = openBlockPosition;
+
+        long stationsSize = stations.size();
+        if (hasHeader(stations, STATIONS_MAGIC, STATIONS_VERSION) && (stationsSize - STATIONS_HEADER) % 8 == 0) {
+            covered = readLong(stations, HEADER);
+            int count = (int) ((stationsSize - STATIONS_HEADER) / 8);
+            if (count > 0) {
+                ensureStation(count - 1);
+                ByteBuffer buf = ByteBuffer.allocate(8 * count);
+                readFully(stations, buf, STATIONS_HEADER);
+                for (int id = 0; id < count; id++) {
+                    heads[id] = buf.getLong(8 * id);
+                }
+            }
+        }
+        // Pages are written whole before the covered offset, so when the files cover the log
+        // the newest page ends the file; otherwise the log clears us anyway.
+        postingsEnd = Math.max(HEADER, postings.size());
+    }
+
+    private void addPosting(int id, long offset) throws IOException {
+        ensureStation(id);
+        if (pageEntries[id] == null && heads[id] != 0) {
+            ByteBuffer page = readPage(id, heads[id]);
+            pageEntries[id] = pageEntries(page, page.getShort(4) & 0xFFFF);
+            pageCounts[id] = page.getShort(6) & 0xFFFF;
+            pagePrevious[id] = page.getLong(8);
+        }
+        if (pageEntries[id] == null || pageCounts[id] == pageEntries[id].length || offset - pageEntries[id][0] > 0xFFFFFFFFL) {
+            startPage(id);
+        }
+        pageEntries[id][pageCounts[id]++] = offset;
+        if (!pageDirty[id]) {
+            pageDirty[id] = true;
+            if (dirtyCount == dirtyStations.length) dirtyStations = Arrays.copyOf(dirtyStations, dirtyCount * 2);
+            dirtyStations[dirtyCount++] = id;
+        }
+    }
+
+    /** The page of station {@code id} at {@code position}, checked to belong to it and to chain backwards. */
+    private ByteBuffer readPage(int id, long position) throws IOException {
+        ByteBuffer header = ByteBuffer.allocate(PAGE_HEADER);
+        readFully(postings, header, position);
+        int capacity = header.getShort(4) & 0xFFFF;
+        int count = header.getShort(6) & 0xFFFF;
+        long previous = header.getLong(8);
+        if (header.getInt(0) != id || capacity == 0 || capacity > PAGE || count == 0 || count > capacity
+                || previous >= position || (previous != 0 && previous < HEADER))
+            throw new IOException("Trip station index damaged at page " + position);
+        ByteBuffer page = ByteBuffer.allocate(PAGE_HEADER + 4 * count);
+        page.put(header.array());
+        readFully(postings, page, position);
+        return page;
+    }
+
+    /** The record offsets of {@code page}, in an array of {@code length}. */
+    private static long[] pageEntries(ByteBuffer page, int length) {
+        long[] entries = new long[length];
+        long first = page.getLong(16);
+        int count = page.getShort(6) & 0xFFFF;
+        for (int i = 0; i < count; i++) {
+            entries[i] = first + (page.getInt(PAGE_HEADER + 4 * i) & 0xFFFFFFFFL);
+        }
+        return entries;
+    }
+
+    /**
+     * Claims a new newest page for station {@code id}, twice the size of the one before it,
+     * setting that one aside.
+     */
+    private void startPage(int id) {
+        int capacity = FIRST_PAGE;
+        if (pageEntries[id] != null) {
+            capacity = Math.min(PAGE, pageEntries[id].length * 2);
+            if (pageDirty[id]) {
+                if (sealedCount == sealedPositions.length) {
+                    sealedPositions = Arrays.copyOf(sealedPositions, sealedCount * 2);
+                    sealedStarts = Arrays.copyOf(sealedStarts, sealedCount * 2);
+                }
+                int length = pageBytes(pageEntries[id].length);
+                if (sealedLength + length > sealedPages.length)
+                    sealedPages = Arrays.copyOf(sealedPages, Math.max(sealedLength + length, sealedPages.length * 2));
+                sealedStarts[sealedCount] = sealedLength;
+                sealedPositions[sealedCount++] = heads[id];
+                sealedLength = putPage(sealedPages, sealedLength, id, pageCounts[id], pagePrevious[id], pageEntries[id]);
+            }
+        }
+        pagePrevious[id] = heads[id];
+        heads[id] = postingsEnd;
+        postingsEnd += pageBytes(capacity);
+        pageEntries[id] = new long[capacity];
+        pageCounts[id] = 0;
+        headMoved[id] = true;
+    }
+
+    /** Writes a page of {@code entries.length} slots at {@code at}, returning where it ends. */
+    private static int putPage(byte[] target, int at, int id, int count, long previous, long[] entries) {
+        int capacity = entries.length;
+        ByteBuffer page = ByteBuffer.wrap(target, at, pageBytes(capacity));
+        page.putInt(id).putShort((short) capacity).putShort((short) count).putLong(previous).putLong(entries[0]);
+        for (int i = 0; i < capacity; i++) {
+            page.putInt(i < count ? (int) (entries[i] - entries[0]) : 0);
+        }
+        return at + pageBytes(capacity);
+    }
+
+    private static int pageBytes(int capacity) {
+        return PAGE_HEADER + 4 * capacity;
+    }
+
+    private void ensureStation(int id) {
+        if (id < heads.length) return;
+        int capacity = Math.max(id + 1, heads.length * 2);
+        heads = Arrays.copyOf(heads, capacity);
+        pageEntries = Arrays.copyOf(pageEntries, capacity);
+        pageCounts = Arrays.copyOf(pageCounts, capacity);
+        pagePrevious = Arrays.copyOf(pagePrevious, capacity);
+        pageDirty = Arrays.copyOf(pageDirty, capacity);
+        headMoved = Arrays.copyOf(headMoved, capacity);
+    }
+
+    private int putEntry(byte[] target, int at) {
+        if (at + TIME_ENTRY > target.length) {
+            target = Arrays.copyOf(target, Math.max(at + TIME_ENTRY, target.length * 2));
+            timePending = target;
+        }
+        ByteBuffer.wrap(target, at, TIME_ENTRY)
+            .putLong(openFirst).putLong(openLast).putInt((int) openMin).putInt((int) openMax).putInt(openCount);
+        return at + TIME_ENTRY;
+    }
+
+    private void noteOpenBlock() {
+        if (blocks > blockFirst.length) {
+            int capacity = blockFirst.length * 2;
+            blockFirst = Arrays.copyOf(blockFirst, capacity);
+            blockLast = Arrays.copyOf(blockLast, capacity);
+            blockMin = Arrays.copyOf(blockMin, capacity);
+            blockMax = Arrays.copyOf(blockMax, capacity);
+        }
+        int b = blocks - 1;
+        blockFirst[b] = openFirst;
+        blockLast[b] = openLast;
+        blockMin[b] = openMin;
+        blockMax[b] = openMax;
+    }
+
+    private static int[] distinct(int[] ids) {
+        int[] sorted = ids.clone();
+        Arrays.sort(sorted);
+        int n = 0;
+        for (int i = 0; i < sorted.length; i++) {
+            if (i == 0 || sorted[i] != sorted[i - 1]) sorted[n++] = sorted[i];
+        }
+        return Arrays.copyOf(sorted, n);
+    }
+
+    private static boolean hasHeader(FileChannel channel, int magic, int version) throws IOException {
+        if (channel.size() < HEADER) return false;
+        ByteBuffer header = ByteBuffer.allocate(HEADER);
+        readFully(channel, header, 0);
+        return header.getInt(0) == magic && header.getInt(4) == version;
+    }
+
+    private static long readLong(FileChannel channel, long position) throws IOException {
+        ByteBuffer buf = ByteBuffer.allocate(8);
+        readFully(channel, buf, position);
+        return buf.getLong(0);
+    }
+
+    private static void readFully(FileChannel channel, ByteBuffer buf, long position) throws IOException {
+        while (buf.hasRemaining()) {
+            int read = channel.read(buf, position + buf.position());
+            if (read < 0) throw new IOException("Unexpected end of trip index");
+        }
+    }
+
+    private static void writeLong(FileChannel channel, long position, long value) throws IOException {
+        ByteBuffer buf = ByteBuffer.allocate(8);
+        buf.putLong(value).flip();
+        writeFully(channel, buf, position);
+    }
+
+    private static void writeFully(FileChannel channel, ByteBuffer buf, long position) throws IOException {
+        while (buf.hasRemaining()) {
+            position += channel.write(buf, position);
+        }
+    }
+
+    private static void writeHeader(FileChannel channel, int magic, int version) throws IOException {
+        ByteBuffer header = ByteBuffer.allocate(HEADER);
+        header.putInt(magic).putInt(version).flip();
+        writeFully(channel, header, 0);
+    }
+}
@@ -0,0 +1,687 @@
+package solvexis.data;
+
+import solvexis.service.transport.TransportMode;
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.time.Instant;
+import java.util.*;
+import java.util.function.Consumer;
+import java.util.zip.CRC32C;
+
+/**
+ * Append-only binary log of completed trips. Station and destination names are written once
+ * to a dictionary kept next to the log ({@code <log>.names}); records refer to them by id, so
+ * a trip takes a few dozen bytes and reading one back involves no text parsing.
+ *
+ * <p>Log file (big-endian): magic, version, then records. Each record is a fixed 12-byte
+ * header (u16 body length, u8 flags, u8 reserved, u32 epoch second, u32 CRC32C of the first
+ * eight header bytes and the body), the body, and the body length again as a u16 trailer so
+ * the log can also be walked from the end. The body is varints: station count, first
+ * station id, zigzag deltas to each next id, metro fare in paise, metro metres, then the
+ * destination id and the last-mile mode, fare, metres and minutes when the flags say so.
+ *
+ * <p>Dictionary file: magic, version, then each name as u16 length and UTF-8 bytes, its id
+ * being its position. A name is always written before any record that uses it.
+ *
+ * <p>Opening a log cuts off a record or name left half-written by a crash at the end of the
+ * file; when the last record is whole, opening reads nothing else. A record damaged elsewhere
+ * is skipped by readers, and framing broken mid-file is reported rather than cut short.
+ * One instance per file; appends are serialized and reads see every record appended before
+ * they start.
+ *
+ * <p>{@link #newest(int)} and {@link #olderThan(TripPage, int)} page through the log from its
+ * end by the trailers, mapping only a window around the page, so showing the latest trips
+ * costs the same for a log of a hundred trips as for one of millions.
+ *
+ * <p>Forward passes map {@link #READ_WINDOW} bytes at a time and every offset is a long, so
+ * nothing depends on the log staying under 2 GB.
+ *
+ * <p>Every append also extends a {@link TripIndex} of time blocks and station posting pages
+ * beside the log, which {@link #find(Instant, Instant, String)} uses to read only the records
+ * it needs. The index files are not synced with the log; when they are lost or behind it,
+ * opening the log rebuilds them.
+ */
+public final class TripLog implements Closeable {
+    private static final int MAGIC = 0x5356544C; // "SVTL"
+    private static final int NAMES_MAGIC = 0x5356544E; // "SVTN"
+    private static final int VERSION = 1;
+    private static final String NAMES_SUFFIX = ".names";
+
+    static final int FILE_HEADER = 8;
+    static final int RECORD_HEADER = 12;
+    static final int RECORD_TRAILER = 2;
+    private static final int MAX_BODY = 0xFFFF;
+    private static final int LARGEST_RECORD = RECORD_HEADER + MAX_BODY + RECORD_TRAILER;
+    /** Smallest window mapped by a backward read; always holds the largest possible record. */
+    private static final int MIN_WINDOW = 128 * 1024;
+    /** Window mapped at a time by a forward pass, so logs past 2 GB read like small ones. */
+    private static final int READ_WINDOW = 64 * 1024 * 1024;
+    /** Window read onto the heap at a time by recovery, which must not map what it may truncate. */
+    private static final int RECOVERY_WINDOW = 1024 * 1024;
+    private static final int WINDOW_BYTES_PER_TRIP = 64;
+
+    private static final int FLAG_LAST_MILE = 1;
+    private static final int FLAG_DESTINATION = 2;
+
+    private final Path path;
+    private final FileChannel log;
+    private final FileChannel dictionary;
+    private final Map<String, Integer> ids = new HashMap<>();
+    private volatile String[] names;
+    private int nameCount;
+    private long dictionaryEnd;
+    private volatile long end;
+    private long lastRecord = -1;
+    private byte[] scratch = new byte[256];
+    private TripIndex index;
+    private boolean indexBroken;
+
+    private TripLog(Path path, FileChannel log, FileChannel dictionary) {
+        this.path = path;
+        this.log = log;
+        this.dictionary = dictionary;
+    }
+
+    /** Opens the log at {@code path}, creating it and its dictionary if they do not exist. */
+    public static TripLog open(Path path) throws IOException {
+        FileChannel log = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.READ,
+            StandardOpenOption.WRITE);
+        FileChannel dictionary;
+        try {
+            dictionary = FileChannel.open(namesPathFor(path), StandardOpenOption.CREATE, StandardOpenOption.READ,
+                StandardOpenOption.WRITE);
+        } catch (IOException e) {
+            log.close();
+            throw e;
+        }
+        TripLog tripLog = new TripLog(path, log, dictionary);
+        try {
+            tripLog.recover();
+            tripLog.index = TripIndex.open(path);
+            if (!tripLog.index.coversUpTo(tripLog.lastRecord)) tripLog.rebuildIndex();
+        } catch (IOException | RuntimeException e) {
+            tripLog.close();
+            throw e;
+        }
+        return tripLog;
+    }
+
+    public static Path namesPathFor(Path log) {
+        return log.resolveSibling(log.getFileName() + NAMES_SUFFIX);
+    }
+
+    public Path getPath() {
+        return path;
+    }
+
+    /** Bytes of the log file holding complete records, the file header included. */
+    public long sizeBytes() {
+        return end;
+    }
+
+    /** Appends {@code trip}; call {@link #sync()} to make it durable. */
+    public void append(TripRecord trip) throws IOException {
+        appendAll(Collections.singletonList(trip));
+    }
+
+    /**
+     * Appends {@code trips} in order with a single write to the log file, after any new names
+     * have been added to the dictionary. Call {@link #sync()} to make them durable.
+     */
+    public synchronized void appendAll(List<TripRecord> trips) throws IOException {
+        if (trips.isEmpty()) return;
+        int[][] stationIds = new int[trips.size()][];
+        long[] offsets = new long[trips.size()];
+        int at = 0;
+        for (int i = 0; i < stationIds.length; i++) {
+            stationIds[i] = stationIdsOf(trips.get(i));
+            offsets[i] = end + at;
+            at = encode(trips.get(i), at, stationIds[i]);
+        }
+        ByteBuffer records = ByteBuffer.wrap(scratch, 0, at);
+        long position = end;
+        while (records.hasRemaining()) {
+            position += log.write(records, position);
+        }
+        end = position;
+        lastRecord = offsets[offsets.length - 1];
+
+        if (indexBroken) return;
+        try {
+            for (int i = 0; i < stationIds.length; i++) {
+                index.add(offsets[i], trips.get(i).getEpochSecond(), stationIds[i]);
+            }
+            index.flush();
+        } catch (IOException e) {
+            // The trips are logged; the next query rebuilds the indexes from the log.
+            indexBroken = true;
+        }
+    }
+
+    private int[] stationIdsOf(TripRecord trip) throws IOException {
+        List<String> stations = trip.getStations();
+        int[] stationIds = new int[stations.size()];
+        for (int i = 0; i < stationIds.length; i++) {
+            stationIds[i] = idOf(stations.get(i));
+        }
+        return stationIds;
+    }
+
+    /** Writes {@code trip} as a record into the scratch buffer at {@code start}; returns its end. */
+    private int encode(TripRecord trip, int start, int[] stationIds) throws IOException {
+        long second = trip.getEpochSecond();
+        if (second < 0 || second > 0xFFFFFFFFL)
+            throw new IllegalArgumentException("Trip time out of range: " + trip.getTime());
+        int destinationId = trip.getDestination() == null ? -1 : idOf(trip.getDestination());
+
+        int at = start + RECORD_HEADER;
+        at = putVarint(at, stationIds.length);
+        at = putVarint(at, stationIds[0]);
+        for (int i = 1; i < stationIds.length; i++) {
+            at = putVarint(at, zigzag(stationIds[i] - stationIds[i - 1]));
+        }
+        at = putVarint(at, trip.metroFarePaise());
+        at = putVarint(at, trip.metroMeters());
+        int flags = 0;
+        if (destinationId >= 0) {
+            flags |= FLAG_DESTINATION;
+            at = putVarint(at, destinationId);
+        }
+        if (trip.hasLastMile()) {
+            flags |= FLAG_LAST_MILE;
+            at = putVarint(at, trip.getLastMileMode().index());
+            at = putVarint(at, trip.lastMileFarePaise());
+            at = putVarint(at, trip.lastMileMeters());
+            at = putVarint(at, trip.getLastMileMinutes());
+        }
+        int bodyLength = at - start - RECORD_HEADER;
+        if (bodyLength > MAX_BODY)
+            throw new IllegalArgumentException("Trip too long to log: " + stationIds.length + " stations");
+        ensureScratch(at + RECORD_TRAILER);
+
+        ByteBuffer record = ByteBuffer.wrap(scratch);
+        record.putShort(start, (short) bodyLength);
+        record.put(start + 2, (byte) flags);
+        record.put(start + 3, (byte) 0);
+        record.putInt(start + 4, (int) second);
+        record.putInt(start + 8, checksum(scratch, start, scratch, start + RECORD_HEADER, bodyLength));
+        record.putShort(at, (short) bodyLength);
+        return at + RECORD_TRAILER;
+    }
+
+    /** Forces appended records and names to the storage device. */
+    public synchronized void sync() throws IOException {
+        dictionary.force(false);
+        log.force(false);
+    }
+
+    /** Every record in the log, oldest first. */
+    public List<TripRecord> readAll() throws IOException {
+        List<TripRecord> trips = new ArrayList<>();
+        scan(trips::add);
+        return trips;
+    }
+
+    /** Hands every record to {@code visitor}, oldest first, skipping any that fail their checksum. */
+    public void scan(Consumer<TripRecord> visitor) throws IOException {
+        // end before names: every record below end has its names in the table read after it.
+        long limit = end;
+        String[] table = names;
+        walk(new Window(limit, true), FILE_HEADER, (buf, at, bodyLength, position) -> {
+            if (checksumMatches(buf, at, bodyLength)) {
+                visitor.accept(decode(buf, at, bodyLength, table));
+            }
+            return true;
+        });
+    }
+
+    /** Up to {@code limit} of the latest records, newest first. */
+    public TripPage newest(int limit) throws IOException {
+        return readBackward(end, limit);
+    }
+
+    /** Up to {@code limit} records logged before those of {@code page}, newest first. */
+    public TripPage olderThan(TripPage page, int limit) throws IOException {
+        return readBackward(page.getOlderPosition(), limit);
+    }
+
+    /**
+     * Walks back from the record boundary {@code before} by the trailers, mapping a window that
+     * ends there and mapping an earlier one whenever the next record starts before it. Records
+     * that fail their checksum are skipped.
+     */
+    private TripPage readBackward(long before, int limit) throws IOException {
+        if (limit <= 0) throw new IllegalArgumentException("Page size must be positive");
+        long limitEnd = end;
+        String[] table = names;
+        if (before > limitEnd || before < FILE_HEADER)
+            throw new IllegalArgumentException("Not a record boundary of this log: " + before);
+        List<TripRecord> trips = new ArrayList<>(Math.min(limit, 256));
+        long position = before;
+        long windowSize = Math.max(MIN_WINDOW, (long) limit * WINDOW_BYTES_PER_TRIP);
+        while (trips.size() < limit && position > FILE_HEADER) {
+            long windowStart = Math.max(FILE_HEADER, position - windowSize);
+            MappedByteBuffer buf = log.map(FileChannel.MapMode.READ_ONLY, windowStart, position - windowStart);
+            int at = buf.limit();
+            while (trips.size() < limit && at > 0) {
+                int bodyLength = at < RECORD_TRAILER ? MAX_BODY : buf.getShort(at - RECORD_TRAILER) & 0xFFFF;
+                int start = at - RECORD_TRAILER - bodyLength - RECORD_HEADER;
+                if (start < 0) {
+                    if (windowStart == FILE_HEADER)
+                        throw new IOException("Trip log damaged before offset " + (windowStart + at) + ": " + path);
+                    break;
+                }
+                if ((buf.getShort(start) & 0xFFFF) != bodyLength)
+                    throw new IOException("Trip log damaged at offset " + (windowStart + start) + ": " + path);
+                if (checksumMatches(buf, start, bodyLength)) {
+                    trips.add(decode(buf, start, bodyLength, table));
+                }
+                at = start;
+            }
+            position = windowStart + at;
+        }
+        return new TripPage(trips, position, before);
+    }
+
+    /**
+     * Trips logged in {@code [from, to)} that pass through {@code station}, oldest first. A
+     * null bound leaves that side open and a null station matches every trip. Only records
+     * the indexes point at are read: the station's postings cut to the blocks whose time
+     * span meets the range, or, without a station, the records of those blocks.
+     */
+    public List<TripRecord> find(Instant from, Instant to, String station) throws IOException {
+        long lo = from == null ? Long.MIN_VALUE : from.getEpochSecond();
+        long hi = to == null ? Long.MAX_VALUE : to.getEpochSecond() + (to.getNano() > 0 ? 1 : 0);
+        long limit;
+        String[] table;
+        long[] offsets;
+        synchronized (this) {
+            limit = end;
+            table = names;
+            Integer id = station == null ? null : ids.get(station);
+            if (station != null && id == null) return new ArrayList<>();
+            try {
+                offsets = lookUp(id, lo, hi);
+            } catch (IOException e) {
+                rebuildIndex();
+                offsets = lookUp(id, lo, hi);
+            }
+        }
+        List<TripRecord> trips = new ArrayList<>();
+        Window window = new Window(limit, true);
+        if (station != null) {
+            for (long offset : offsets) {
+                if (offset >= limit) break;
+                int at = window.at(offset);
+                int bodyLength = framedLength(window.buf, at);
+                if (bodyLength >= 0) collect(window.buf, at, bodyLength, lo, hi, table, trips);
+            }
+        } else {
+            for (int b = 0; b < offsets.length; b += 2) {
+                long last = offsets[b + 1];
+                walk(window, offsets[b], (buf, at, bodyLength, position) -> {
+                    collect(buf, at, bodyLength, lo, hi, table, trips);
+                    return position < last;
+                });
+            }
+        }
+        return trips;
+    }
+
+    /**
+     * Offsets of the records that may match: the station's postings, or without a station
+     * the first and last record of each block, in pairs.
+     */
+    private long[] lookUp(Integer stationId, long lo, long hi) throws IOException {
+        if (indexBroken) rebuildIndex();
+        index.loadBlocks();
+        return stationId != null ? index.stationMatches(stationId, lo, hi) : index.blocksOverlapping(lo, hi);
+    }
+
+    /** Adds the record at {@code at} to {@code trips} if intact and in range. */
+    private void collect(ByteBuffer buf, int at, int bodyLength, long lo, long hi, String[] table,
+                         List<TripRecord> trips) {
+        long second = buf.getInt(at + 4) & 0xFFFFFFFFL;
+        if (second >= lo && second < hi && checksumMatches(buf, at, bodyLength)) {
+            trips.add(decode(buf, at, bodyLength, table));
+        }
+    }
+
+    /** Receives the records of a {@link #walk}, each framed but not yet checksummed. */
+    private interface RecordVisitor {
+        /** @return false to end the walk after this record */
+        boolean visit(ByteBuffer buf, int at, int bodyLength, long position) throws IOException;
+    }
+
+    /**
+     * Hands the records from {@code from} to the window's limit to {@code visitor}, oldest
+     * first. A record whose framing is broken is reported, as nothing after it can be found.
+     */
+    private void walk(Window window, long from, RecordVisitor visitor) throws IOException {
+        long position = from;
+        while (position < window.limit) {
+            int at = window.at(position);
+            int bodyLength = framedLength(window.buf, at);
+            if (bodyLength < 0) throw new IOException("Trip log damaged at offset " + position + ": " + path);
+            if (!visitor.visit(window.buf, at, bodyLength, position)) return;
+            position += RECORD_HEADER + bodyLength + RECORD_TRAILER;
+        }
+    }
+
+    /**
+     * Part of the log up to {@code limit}, moved forward whenever the next record might not
+     * fit, so a pass over a log of any size holds a bounded window. Mapped
+     * {@link #READ_WINDOW} bytes at a time, or read onto the heap {@link #RECOVERY_WINDOW}
+     * bytes at a time where the file may be truncated afterwards: on Windows a file cannot
+     * be truncated while a mapping of it is still reachable.
+     */
+    private final class Window {
+        final long limit;
+        private final boolean mapped;
+        ByteBuffer buf;
+        private long start;
+
+        Window(long limit, boolean mapped) {
+            this.limit = limit;
+            this.mapped = mapped;
+        }
+
+        /** Index in {@link #buf} of the log offset {@code position}, which is below the limit. */
+        int at(long position) throws IOException {
+            if (buf == null || position < start
+                    || position - start > buf.limit() - LARGEST_RECORD && start + buf.limit() < limit) {
+                start = position;
+                if (mapped) {
+                    buf = log.map(FileChannel.MapMode.READ_ONLY, start, Math.min(READ_WINDOW, limit - start));
+                } else {
+                    if (buf == null) buf = ByteBuffer.allocate((int) Math.min(RECOVERY_WINDOW, limit - start));
+                    buf.clear().limit((int) Math.min(buf.capacity(), limit - start));
+                    readFully(log, buf, start);
+                }
+            }
+            return (int) (position - start);
+        }
+    }
+
+    /** Body length of the record at {@code at}, or -1 unless it lies within {@code buf} with a matching trailer. */
+    private static int framedLength(ByteBuffer buf, int at) {
+        if (at + RECORD_HEADER + RECORD_TRAILER > buf.limit()) return -1;
+        int bodyLength = buf.getShort(at) & 0xFFFF;
+        int trailer = at + RECORD_HEADER + bodyLength;
+        if (trailer + RECORD_TRAILER > buf.limit() || (buf.getShort(trailer) & 0xFFFF) != bodyLength) return -1;
+        return bodyLength;
+    }
+
+    @Override
+    public void close() throws IOException {
+        try {
+            dictionary.close();
+        } finally {
+            try {
+                log.close();
+            } finally {
+                if (index != null) index.close();
+            }
+        }
+    }
+
+    /**
+     * Indexes every intact record of the log afresh, walking it as {@link #scan} does: framing
+     * broken mid-log is reported, and records failing their checksum are left out.
+     */
+    private void rebuildIndex() throws IOException {
+        index.clear();
+        int[] pending = {0};
+        walk(new Window(end, true), FILE_HEADER, (buf, at, bodyLength, position) -> {
+            if (checksumMatches(buf, at, bodyLength)) {
+                index.add(position, buf.getInt(at + 4) & 0xFFFFFFFFL, stationIdsAt(buf, at));
+                if (++pending[0] == 4096) {
+                    index.flush();
+                    pending[0] = 0;
+                }
+            }
+            return true;
+        });
+        index.flush();
+        indexBroken = false;
+    }
+
+    private static int[] stationIdsAt(ByteBuffer buf, int position) {
+        int[] cursor = {position + RECORD_HEADER};
+        int[] stationIds = new int[(int) getVarint(buf, cursor)];
+        int id = (int) getVarint(buf, cursor);
+        stationIds[0] = id;
+        for (int i = 1; i < stationIds.length; i++) {
+            id += unzigzag(getVarint(buf, cursor));
+            stationIds[i] = id;
+        }
+        return stationIds;
+    }
+
+    /**
+     * Reads the dictionary and finds the end of the last complete record, cutting off
+     * anything after it. Writes the file headers of new files. Nothing here is mapped, so
+     * the cut also works on Windows, where a mapped file cannot be truncated.
+     */
+    private void recover() throws IOException {
+        long dictionarySize = dictionary.size();
+        List<String> loaded = new ArrayList<>();
+        if (dictionarySize < FILE_HEADER) {
+            dictionary.truncate(0);
+            writeFileHeader(dictionary, NAMES_MAGIC);
+            dictionaryEnd = FILE_HEADER;
+        } else {
+            ByteBuffer buf = ByteBuffer.allocate((int) dictionarySize);
+            readFully(dictionary, buf, 0);
+            checkFileHeader(buf, NAMES_MAGIC, namesPathFor(path));
+            int position = FILE_HEADER;
+            while (position + 2 <= dictionarySize) {
+                int length = buf.getShort(position) & 0xFFFF;
+                if (position + 2 + length > dictionarySize) break;
+                byte[] bytes = new byte[length];
+                buf.get(position + 2, bytes);
+                loaded.add(new String(bytes, StandardCharsets.UTF_8));
+                position += 2 + length;
+            }
+            dictionaryEnd = position;
+            if (position < dictionarySize) dictionary.truncate(position);
+        }
+        names = loaded.toArray(new String[Math.max(16, loaded.size())]);
+        nameCount = loaded.size();
+        for (int i = 0; i < nameCount; i++) {
+            ids.putIfAbsent(names[i], i);
+        }
+
+        long size = log.size();
+        if (size < FILE_HEADER) {
+            log.truncate(0);
+            writeFileHeader(log, MAGIC);
+            end = FILE_HEADER;
+            return;
+        }
+        ByteBuffer header = ByteBuffer.allocate(FILE_HEADER);
+        readFully(log, header, 0);
+        checkFileHeader(header, MAGIC, path);
+        if (size == FILE_HEADER) {
+            end = size;
+            return;
+        }
+        long tailStart = Math.max(FILE_HEADER, size - LARGEST_RECORD);
+        ByteBuffer tail = ByteBuffer.allocate((int) (size - tailStart));
+        readFully(log, tail, tailStart);
+        int last = intactRecordEnding(tail);
+        if (last >= 0) {
+            // The usual case: the last record is whole, so nothing was torn and there is no
+            // need to walk a long history just to open it.
+            end = size;
+            lastRecord = tailStart + last;
+            return;
+        }
+        Window window = new Window(size, false);
+        long position = FILE_HEADER;
+        while (position < size) {
+            if (position + RECORD_HEADER + RECORD_TRAILER > size) break;
+            int at = window.at(position);
+            ByteBuffer buf = window.buf;
+            int bodyLength = buf.getShort(at) & 0xFFFF;
+            long next = position + RECORD_HEADER + bodyLength + RECORD_TRAILER;
+            if (next > size) break;
+            boolean framed = (buf.getShort(at + RECORD_HEADER + bodyLength) & 0xFFFF) == bodyLength;
+            if (next == size && (!framed || !checksumMatches(buf, at, bodyLength))) break;
+            if (!framed)
+                throw new IOException("Trip log damaged at offset " + position + ": " + path);
+            // A damaged body inside the log is kept in place; scans skip it by its checksum.
+            lastRecord = position;
+            position = next;
+        }
+        end = position;
+        if (position < size) log.truncate(position);
+    }
+
+    /** Where in {@code tail} the record ending it starts, if that record is framed and intact; else -1. */
+    private static int intactRecordEnding(ByteBuffer tail) {
+        int limit = tail.limit();
+        if (limit < RECORD_HEADER + RECORD_TRAILER) return -1;
+        int bodyLength = tail.getShort(limit - RECORD_TRAILER) & 0xFFFF;
+        int start = limit - RECORD_TRAILER - bodyLength - RECORD_HEADER;
+        if (start < 0 || (tail.getShort(start) & 0xFFFF) != bodyLength) return -1;
+        return checksumMatches(tail, start, bodyLength) ? start : -1;
+    }
+
+    private static boolean checksumMatches(ByteBuffer buf, int at, int bodyLength) {
+        CRC32C crc = new CRC32C();
+        crc.update(buf.slice(at, 8));
+        crc.update(buf.slice(at + RECORD_HEADER, bodyLength));
+        return (int) crc.getValue() == buf.getInt(at + 8);
+    }
+
+    private TripRecord decode(ByteBuffer buf, int position, int bodyLength, String[] table) {
+        int flags = buf.get(position + 2);
+        long second = buf.getInt(position + 4) & 0xFFFFFFFFL;
+        int[] cursor = {position + RECORD_HEADER};
+        int count = (int) getVarint(buf, cursor);
+        String[] stations = new String[count];
+        int id = (int) getVarint(buf, cursor);
+        stations[0] = nameOf(table, id);
+        for (int i = 1; i < count; i++) {
+            id += unzigzag(getVarint(buf, cursor));
+            stations[i] = nameOf(table, id);
+        }
+        long metroFare = getVarint(buf, cursor);
+        int metroMeters = (int) getVarint(buf, cursor);
+        String destination = null;
+        if ((flags & FLAG_DESTINATION) != 0) {
+            destination = nameOf(table, (int) getVarint(buf, cursor));
+        }
+        TransportMode mode = null;
+        long lastMileFare = 0;
+        int lastMileMeters = 0;
+        int lastMileMinutes = 0;
+        if ((flags & FLAG_LAST_MILE) != 0) {
+            mode = TransportMode.fromIndex((int) getVarint(buf, cursor));
+            lastMileFare = getVarint(buf, cursor);
+            lastMileMeters = (int) getVarint(buf, cursor);
+            lastMileMinutes = (int) getVarint(buf, cursor);
+        }
+        return new TripRecord(second, Arrays.asList(stations), metroFare, metroMeters, destination, mode,
+            lastMileFare, lastMileMeters, lastMileMinutes);
+    }
+
+    private static String nameOf(String[] table, int id) {
+        String name = id >= 0 && id < table.length ? table[id] : null;
+        return name != null ? name : "#" + id;
+    }
+
+    /** Dictionary id of {@code name}, adding it to the dictionary file first if it is new. */
+    private int idOf(String name) throws IOException {
+        Integer id = ids.get(name);
+        if (id != null) return id;
+        byte[] bytes = name.getBytes(StandardCharsets.UTF_8);
+        if (bytes.length > 0xFFFF)
+            throw new IllegalArgumentException("Name too long to log: " + name.substring(0, 32) + "...");
+        ByteBuffer entry = ByteBuffer.allocate(2 + bytes.length);
+        entry.putShort((short) bytes.length).put(bytes).flip();
+        long position = dictionaryEnd;
+        while (entry.hasRemaining()) {
+            position += dictionary.write(entry, position);
+        }
+        dictionaryEnd = position;
+
+        String[] table = names;
+        if (nameCount == table.length) table = Arrays.copyOf(table, table.length * 2);
+        table[nameCount] = name;
+        names = table;
+        ids.put(name, nameCount);
+        return nameCount++;
+    }
+
+    private int putVarint(int at, long value) {
+        ensureScratch(at + 10);
+        while ((value & ~0x7FL) != 0) {
+            scratch[at++] = (byte) ((value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        scratch[at++] = (byte) value;
+        return at;
+    }
+
+    static long getVarint(ByteBuffer buf, int[] cursor) {
+        long value = 0;
+        int shift = 0;
+        while (true) {
+            byte b = buf.get(cursor[0]++);
+            value |= (long) (b & 0x7F) << shift;
+            if (b >= 0) return value;
+            shift += 7;
+        }
+    }
+
+    private static long zigzag(int value) {
+        return ((value << 1) ^ (value >> 31)) & 0xFFFFFFFFL;
+    }
+
+    private static int unzigzag(long value) {
+        return (int) (value >>> 1) ^ -(int) (value & 1);
+    }
+
+    private void ensureScratch(int capacity) {
+        if (capacity > scratch.length) scratch = Arrays.copyOf(scratch, Math.max(capacity, scratch.length * 2));
+    }
+
+    private static int checksum(byte[] header, int headerOffset, byte[] body, int bodyOffset, int bodyLength) {
+        CRC32C crc = new CRC32C();
+        crc.update(header, headerOffset, 8);
+        crc.update(body, bodyOffset, bodyLength);
+        return (int) crc.getValue();
+    }
+
+    /** Fills {@code buf} from {@code position} with plain reads, for files that may be truncated later. */
+    private static void readFully(FileChannel channel, ByteBuffer buf, long position) throws IOException {
+        int from = buf.position();
+        while (buf.hasRemaining()) {
+            if (channel.read(buf, position + buf.position() - from) < 0)
+                throw new IOException("Unexpected end of trip log file");
+        }
+        buf.position(from);
+    }
+
+    private static void writeFileHeader(FileChannel channel, int magic) throws IOException {
+        ByteBuffer header = ByteBuffer.allocate(FILE_HEADER);
+        header.putInt(magic).putInt(VERSION).flip();
+        long position = 0;
+        while (header.hasRemaining()) {
+            position += channel.write(header, position);
+        }
+    }
+
+    private static void checkFileHeader(ByteBuffer buf, int magic, Path file) throws IOException {
+        if (buf.getInt(0) != magic) throw new IOException("Not a trip log: " + file);
+        int version = buf.getInt(4);
+        if (version != VERSION) throw new IOException("Unsupported trip log version " + version + ": " + file);
+    }
+}
@@ -0,0 +1,48 @@
+package solvexis.data;
+
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * One page of a {@link TripLog} read from the end: trips newest first, and where in the log
+ * the next older page ends. Pass it back to {@link TripLog#olderThan(TripPage, int)} for
+ * that page.
+ */
+public final class TripPage {
+    /** A page with no trips and nothing older, as for a user who has none. */
+    public static final TripPage EMPTY = new TripPage(Collections.emptyList(), TripLog.FILE_HEADER, TripLog.FILE_HEADER);
+
+    private final List<TripRecord> trips;
+    private final long olderPosition;
+    private final long newerPosition;
+
+    TripPage(List<TripRecord> trips, long olderPosition, long newerPosition) {
+        this.trips = Collections.unmodifiableList(trips);
+        this.olderPosition = olderPosition;
+        this.newerPosition = newerPosition;
+    }
+
+    /** Trips of this page, newest first. */
+    public List<TripRecord> getTrips() {
+        return trips;
+    }
+
+    public boolean isEmpty() {
+        return trips.isEmpty();
+    }
+
+    /** Whether the log holds trips older than this page. */
+    public boolean hasOlder() {
+        return olderPosition > TripLog.FILE_HEADER;
+    }
+
+    /** Log offset where this page's oldest trip starts, and so where the older page ends. */
+    public long getOlderPosition() {
+        return olderPosition;
+    }
+
+    /** Log offset where this page's newest trip ends. */
+    public long getNewerPosition() {
+        return newerPosition;
+    }
+}
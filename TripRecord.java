@@ -0,0 +1,154 @@
+package solvexis.data;
+
+import solvexis.service.transport.TransportMode;
+import java.time.Instant;
+import java.util.*;
+
+/**
+ * One completed trip as kept in a {@link TripLog}: when it ended, the stations ridden, the
+ * metro fare and track distance, and the last-mile ride if one was taken. Fares are held to
+ * the paisa and distances to the metre, which is what the log stores.
+ */
+public final class TripRecord {
+    private final long epochSecond;
+    private final List<String> stations;
+    private final long metroFarePaise;
+    private final int metroMeters;
+    private final String destination;
+    private final TransportMode lastMileMode;
+    private final long lastMileFarePaise;
+    private final int lastMileMeters;
+    private final int lastMileMinutes;
+
+    /**
+     * @param destination  where the rider went after the metro, or null
+     * @param lastMileMode the last-mile ride taken, or null for none; the other last-mile
+     *                     values are ignored then
+     */
+    public TripRecord(Instant time, List<String> stations, double metroFare, double metroKm, String destination,
+                      TransportMode lastMileMode, double lastMileFare, double lastMileKm, int lastMileMinutes) {
+        if (stations.isEmpty())
+            throw new IllegalArgumentException("A trip needs at least one station");
+        this.epochSecond = time.getEpochSecond();
+        this.stations = Collections.unmodifiableList(new ArrayList<>(stations));
+        this.metroFarePaise = Math.round(metroFare * 100);
+        this.metroMeters = (int) Math.round(metroKm * 1000);
+        this.destination = destination;
+        this.lastMileMode = lastMileMode;
+        this.lastMileFarePaise = lastMileMode == null ? 0 : Math.round(lastMileFare * 100);
+        this.lastMileMeters = lastMileMode == null ? 0 : (int) Math.round(lastMileKm * 1000);
+        this.lastMileMinutes = lastMileMode == null ? 0 : lastMileMinutes;
+    }
+
+    TripRecord(long epochSecond, List<String> stations, long metroFarePaise, int metroMeters, String destination,
+               TransportMode lastMileMode, long lastMileFarePaise, int lastMileMeters, int lastMileMinutes) {
+        this.epochSecond = epochSecond;
+        this.stations = Collections.unmodifiableList(stations);
+        this.metroFarePaise = metroFarePaise;
+        this.metroMeters = metroMeters;
+        this.destination = destination;
+        this.lastMileMode = lastMileMode;
+        this.lastMileFarePaise = lastMileFarePaise;
+        this.lastMileMeters = lastMileMeters;
+        this.lastMileMinutes = lastMileMinutes;
+    }
+
+    public Instant getTime() {
+        return Instant.ofEpochSecond(epochSecond);
+    }
+
+    public long getEpochSecond() {
+        return epochSecond;
+    }
+
+    public List<String> getStations() {
+        return stations;
+    }
+
+    public String getFrom() {
+        return stations.get(0);
+    }
+
+    public String getTo() {
+        return stations.get(stations.size() - 1);
+    }
+
+    public double getMetroFare() {
+        return metroFarePaise / 100.0;
+    }
+
+    public double getMetroKm() {
+        return metroMeters / 1000.0;
+    }
+
+    /** @return where the rider went after the metro, or null */
+    public String getDestination() {
+        return destination;
+    }
+
+    public boolean hasLastMile() {
+        return lastMileMode != null;
+    }
+
+    /** @return the last-mile ride taken, or null */
+    public TransportMode getLastMileMode() {
+        return lastMileMode;
+    }
+
+    public double getLastMileFare() {
+        return lastMileFarePaise / 100.0;
+    }
+
+    public double getLastMileKm() {
+        return lastMileMeters / 1000.0;
+    }
+
+    public int getLastMileMinutes() {
+        return lastMileMinutes;
+    }
+
+    public double getTotalFare() {
+        return getMetroFare() + getLastMileFare();
+    }
+
+    public double getTotalKm() {
+        return getMetroKm() + getLastMileKm();
+    }
+
+    long metroFarePaise() {
+        return metroFarePaise;
+    }
+
+    int metroMeters() {
+        return metroMeters;
+    }
+
+    long lastMileFarePaise() {
+        return lastMileFarePaise;
+    }
+
+    int lastMileMeters() {
+        return lastMileMeters;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (!(o instanceof TripRecord)) return false;
+        TripRecord t = (TripRecord) o;
+        return epochSecond == t.epochSecond && metroFarePaise == t.metroFarePaise && metroMeters == t.metroMeters
+            && lastMileFarePaise == t.lastMileFarePaise && lastMileMeters == t.lastMileMeters
+            && lastMileMinutes == t.lastMileMinutes && stations.equals(t.stations)
+            && Objects.equals(destination, t.destination) && lastMileMode == t.lastMileMode;
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(epochSecond, stations, metroFarePaise, destination, lastMileMode);
+    }
+
+    @Override
+    public String toString() {
+        return getTime() + " " + getFrom() + " -> " + getTo();
+    }
+}
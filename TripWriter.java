@@ -0,0 +1,342 @@
+package solvexis.data;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Writes trips to a {@link TripLog} from a background thread, so saving a trip costs the
+ * caller a queue insertion rather than a file-system round trip. Trips wait in a bounded
+ * queue; the writer thread takes whatever has piled up (up to {@link #MAX_BATCH}) and appends
+ * it with one write, then flushes or syncs once for the whole batch (group commit). Under load
+ * batches grow and the per-trip cost of the sync shrinks; when idle every trip is its own batch.
+ *
+ * <p>When the queue is full, {@link #submit} waits for room and {@link #offer} gives up, and
+ * both are counted, so a caller can tell a slow disk from a quiet one. {@link #flush()} waits
+ * until everything submitted so far is in the log, and {@link #close()} drains the queue,
+ * syncs and closes the log.
+ */
+public class TripWriter implements Closeable {
+    /** What the writer does after each batch before counting its trips as written. */
+    public enum Durability {
+        /** Hand the batch to the operating system; a crash of the machine may lose it. */
+        FLUSH_PER_BATCH,
+        /** Also force the batch to the storage device. */
+        FSYNC_PER_BATCH;
+
+        /** {@code "flush"} or {@code "fsync"}, case-insensitive; {@code fallback} otherwise. */
+        public static Durability parse(String value, Durability fallback) {
+            if (value == null) return fallback;
+            switch (value.trim().toLowerCase()) {
+                case "flush": return FLUSH_PER_BATCH;
+                case "fsync": return FSYNC_PER_BATCH;
+                default: return fallback;
+            }
+        }
+    }
+
+    public static final int DEFAULT_CAPACITY = 1024;
+    public static final int MAX_BATCH = 256;
+    private static final long POLL_MILLIS = 50;
+
+    private final TripLog log;
+    private final Durability durability;
+    private final BlockingQueue<TripRecord> queue;
+    private final Thread thread;
+    private final Object progress = new Object();
+
+    private volatile boolean closed;
+    private long submitted;
+    private long written;
+    private long failed;
+    private long batches;
+    private long syncs;
+    private int largestBatch;
+    private int deepestQueue;
+    private long blockedSubmits;
+    private long rejectedOffers;
+    private IOException lastError;
+
+    public TripWriter(TripLog log, Durability durability) {
+        this(log, durability, DEFAULT_CAPACITY);
+    }
+
+    /**
+     * Starts the writer thread, which owns {@code log} from now on.
+     *
+     * @param capacity trips that may wait before submitters are held back
+     */
+    public TripWriter(TripLog log, Durability durability, int capacity) {
+        if (capacity <= 0) throw new IllegalArgumentException("Queue capacity must be positive");
+        this.log = log;
+        this.durability = durability;
+        this.queue = new ArrayBlockingQueue<>(capacity);
+        this.thread = new Thread(this::run, "trip-writer-" + log.getPath().getFileName());
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    /** The log written to; reading it is safe while the writer runs. */
+    public TripLog getLog() {
+        return log;
+    }
+
+    public Durability getDurability() {
+        return durability;
+    }
+
+    /**
+     * Queues {@code trip}, waiting for room if the queue is full.
+     *
+     * @throws IllegalStateException if the writer is closed, including by a close() that
+     *                               raced with this call; the trip is then not written
+     */
+    public void submit(TripRecord trip) throws InterruptedException {
+        if (closed) throw new IllegalStateException("Trip writer is closed");
+        synchronized (progress) {
+            submitted++;
+        }
+        if (!queue.offer(trip)) {
+            synchronized (progress) {
+                blockedSubmits++;
+            }
+            queue.put(trip);
+        }
+        withdrawIfClosed(trip);
+        noteDepth();
+    }
+
+    /**
+     * Queues {@code trip} if there is room within {@code timeout}.
+     *
+     * @return false, leaving the trip unwritten, if the queue stayed full
+     * @throws IllegalStateException as {@link #submit} does
+     */
+    public boolean offer(TripRecord trip, long timeout, TimeUnit unit) throws InterruptedException {
+        if (closed) throw new IllegalStateException("Trip writer is closed");
+        synchronized (progress) {
+            submitted++;
+        }
+        if (!queue.offer(trip, timeout, unit)) {
+            synchronized (progress) {
+                submitted--;
+                rejectedOffers++;
+            }
+            return false;
+        }
+        withdrawIfClosed(trip);
+        noteDepth();
+        return true;
+    }
+
+    /**
+     * Takes back a trip queued after close() began. close() raises the flag before its last
+     * drain, so a trip queued later is still in the queue when the flag is seen here; one
+     * queued earlier is either drained and written, or taken back by this check.
+     */
+    private void withdrawIfClosed(TripRecord trip) {
+        if (closed && queue.remove(trip)) {
+            synchronized (progress) {
+                submitted--;
+                progress.notifyAll();
+            }
+            throw new IllegalStateException("Trip writer is closed");
+        }
+    }
+
+    /** Waits until every trip submitted before this call has been written or has failed. */
+    public void flush() throws InterruptedException {
+        synchronized (progress) {
+            long target = submitted;
+            while (written + failed < target && thread.isAlive()) {
+                progress.wait(100);
+            }
+        }
+    }
+
+    /** Stops taking trips, writes the ones queued, syncs and closes the log. */
+    @Override
+    public void close() throws IOException {
+        closed = true;
+        boolean interrupted = false;
+        while (thread.isAlive()) {
+            try {
+                thread.join();
+            } catch (InterruptedException e) {
+                interrupted = true;
+            }
+        }
+        try {
+            // Trips queued after the thread's last poll; later ones are withdrawn by submit.
+            List<TripRecord> batch = new ArrayList<>(MAX_BATCH);
+            while (queue.drainTo(batch, MAX_BATCH) > 0) {
+                write(batch);
+                batch.clear();
+            }
+            log.sync();
+        } finally {
+            log.close();
+            if (interrupted) Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * The writer loop. It is never interrupted: an interrupt during a write would close the
+     * log's channel, so close() only raises the flag and the poll timeout notices it.
+     */
+    private void run() {
+        List<TripRecord> batch = new ArrayList<>(MAX_BATCH);
+        while (true) {
+            TripRecord first;
+            try {
+                first = queue.poll(POLL_MILLIS, TimeUnit.MILLISECONDS);
+            } catch (InterruptedException e) {
+                continue;
+            }
+            if (first == null) {
+                if (closed) return;
+                continue;
+            }
+            batch.add(first);
+            queue.drainTo(batch, MAX_BATCH - 1);
+            write(batch);
+            batch.clear();
+        }
+    }
+
+    /**
+     * Appends {@code batch} with one write. If that fails the log's end has not moved, so the
+     * trips are appended again one at a time and only those that fail on their own are lost.
+     * A failed sync fails every trip appended with it, since none of them is known durable.
+     */
+    private void write(List<TripRecord> batch) {
+        IOException error = null;
+        int appended = batch.size();
+        try {
+            log.appendAll(batch);
+        } catch (IOException | RuntimeException e) {
+            appended = 0;
+            for (TripRecord trip : batch) {
+                try {
+                    log.append(trip);
+                    appended++;
+                } catch (IOException | RuntimeException single) {
+                    error = asIOException(single);
+                    System.err.println("Error saving trip history: " + single.getMessage());
+                }
+            }
+        }
+        boolean synced = false;
+        if (appended > 0 && durability == Durability.FSYNC_PER_BATCH) {
+            try {
+                log.sync();
+                synced = true;
+            } catch (IOException e) {
+                error = e;
+                appended = 0;
+                System.err.println("Error saving trip history: " + e.getMessage());
+            }
+        }
+        synchronized (progress) {
+            if (appended > 0) {
+                written += appended;
+                batches++;
+                if (synced) syncs++;
+                largestBatch = Math.max(largestBatch, appended);
+            }
+            if (appended < batch.size()) {
+                failed += batch.size() - appended;
+                lastError = error;
+            }
+            progress.notifyAll();
+        }
+    }
+
+    private static IOException asIOException(Exception e) {
+        return e instanceof IOException ? (IOException) e : new IOException(e);
+    }
+
+    private void noteDepth() {
+        int depth = queue.size();
+        synchronized (progress) {
+            deepestQueue = Math.max(deepestQueue, depth);
+        }
+    }
+
+    /** Trips waiting to be written right now. */
+    public int queueDepth() {
+        return queue.size();
+    }
+
+    public int queueCapacity() {
+        return queue.size() + queue.remainingCapacity();
+    }
+
+    /** Most trips seen waiting at once, sampled as each is queued. */
+    public int maxQueueDepth() {
+        synchronized (progress) {
+            return deepestQueue;
+        }
+    }
+
+    public long submittedCount() {
+        synchronized (progress) {
+            return submitted;
+        }
+    }
+
+    public long writtenCount() {
+        synchronized (progress) {
+            return written;
+        }
+    }
+
+    /** Trips lost because they could not be written or synced; see {@link #getLastError()}. */
+    public long failedCount() {
+        synchronized (progress) {
+            return failed;
+        }
+    }
+
+    public long batchCount() {
+        synchronized (progress) {
+            return batches;
+        }
+    }
+
+    public long syncCount() {
+        synchronized (progress) {
+            return syncs;
+        }
+    }
+
+    public int largestBatch() {
+        synchronized (progress) {
+            return largestBatch;
+        }
+    }
+
+    /** Submits that found the queue full and had to wait: the backpressure felt by callers. */
+    public long blockedSubmitCount() {
+        synchronized (progress) {
+            return blockedSubmits;
+        }
+    }
+
+    /** Offers turned away because the queue stayed full. */
+    public long rejectedOfferCount() {
+        synchronized (progress) {
+            return rejectedOffers;
+        }
+    }
+
+    public IOException getLastError() {
+        synchronized (progress) {
+            return lastError;
+        }
+    }
+}
@@ -0,0 +1,84 @@
+package solvexis.service;
+
+import solvexis.model.Station;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The live {@link UserStatsService} of every active user, one per stats file, so recording a
+ * trip updates totals already in memory instead of re-reading and rewriting the file. Dirty
+ * stats are written behind: by a background task every {@link #SAVE_INTERVAL_SECONDS}, when a
+ * user is released and when the JVM exits. {@link #get()} returns the instance shared by the
+ * app.
+ */
+public final class UserStatsManager {
+    public static final int SAVE_INTERVAL_SECONDS = 5;
+
+    private final ConcurrentHashMap<String, UserStatsService> live = new ConcurrentHashMap<>();
+    private final ScheduledExecutorService saver;
+
+    private static class Holder {
+        static final UserStatsManager INSTANCE = new UserStatsManager(SAVE_INTERVAL_SECONDS);
+    }
+
+    public static UserStatsManager get() {
+        return Holder.INSTANCE;
+    }
+
+    /** @param saveIntervalSeconds seconds between background saves of dirty stats */
+    public UserStatsManager(int saveIntervalSeconds) {
+        saver = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "user-stats-saver");
+            thread.setDaemon(true);
+            return thread;
+        });
+        saver.scheduleWithFixedDelay(this::saveAll, saveIntervalSeconds, saveIntervalSeconds, TimeUnit.SECONDS);
+        Runtime.getRuntime().addShutdownHook(new Thread(this::saveAll, "user-stats-shutdown"));
+    }
+
+    /** The live stats of {@code userName}, loaded from its file on first use. */
+    public UserStatsService statsFor(String userName) {
+        return live.computeIfAbsent(UserStatsService.fileFor(userName), file -> new UserStatsService(userName));
+    }
+
+    /**
+     * Adds a trip to the user's live stats; the file is written later. Applied inside the
+     * map's compute so that a concurrent {@link #release} cannot detach the stats mid-update.
+     */
+    public void recordTrip(String userName, List<Station> route, double lastMileDistance, double co2Saved) {
+        live.compute(UserStatsService.fileFor(userName), (file, stats) -> {
+            if (stats == null) stats = new UserStatsService(userName);
+            stats.recordTrip(route, lastMileDistance, co2Saved);
+            return stats;
+        });
+    }
+
+    /** Saves the user's stats if dirty and forgets them, as on logout. */
+    public void release(String userName) {
+        live.computeIfPresent(UserStatsService.fileFor(userName), (file, stats) -> {
+            stats.saveIfDirty();
+            return null;
+        });
+    }
+
+    /** Writes every dirty stats file now. */
+    public void saveAll() {
+        List<UserStatsService> all = new ArrayList<>(live.values());
+        for (UserStatsService stats : all) {
+            stats.saveIfDirty();
+        }
+    }
+
+    /** Users whose trips are not saved yet. */
+    public int dirtyCount() {
+        int dirty = 0;
+        for (UserStatsService stats : live.values()) {
+            if (stats.isDirty()) dirty++;
+        }
+        return dirty;
+    }
+}
@@ -3,21 +3,33 @@ package solvexis.service;
 import solvexis.model.Station;
 import solvexis.service.transport.LastMileService;
 import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
 import java.util.*;
 import java.time.LocalDateTime;
 import java.time.format.DateTimeFormatter;
 
+/**
+ * Travel statistics of one user, kept in {@code user_stats[_<user>].txt}. Trips are applied in
+ * memory under the instance's lock and marked dirty; {@link #saveIfDirty()} writes them out.
+ * {@link UserStatsManager} keeps one instance per user and saves dirty ones in the background,
+ * so concurrent bookings for a user all land on the same totals.
+ */
 public class UserStatsService {
     private static final String STATS_FILE = "user_stats.txt";
     private static final DateTimeFormatter formatter = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss");
     
     private final String statsFile;
+    private final CarbonFootprintService distances = new CarbonFootprintService();
     private int totalTrips;
     private double totalKmTraveled;
     private double totalCO2Saved;
     private double longestRoute;
     private int pointsEarned;
     private String longestRouteDescription;
+    private long version;
+    private long savedVersion;
+    private final Object saveLock = new Object();
     
     public UserStatsService() {
         this.statsFile = STATS_FILE;
@@ -25,18 +37,29 @@ public class UserStatsService {
     }
 
     public UserStatsService(String userName) {
+        this.statsFile = fileFor(userName);
+        loadStats();
+    }
+
+    /** The stats file of {@code userName}; the shared one for no user. */
+    static String fileFor(String userName) {
         if (userName != null && !userName.trim().isEmpty()) {
-            this.statsFile = "user_stats_" + userName.trim() + ".txt";
-        } else {
-            this.statsFile = STATS_FILE;
+            return "user_stats_" + userName.trim() + ".txt";
         }
-        loadStats();
+        return STATS_FILE;
     }
     
+    /** Adds the trip to the totals in memory; see {@link #saveIfDirty()}. */
     public void recordTrip(List<Station> route, double lastMileDistance, double co2Saved) {
         double metroDistance = calculateMetroDistance(route);
         double totalDistance = metroDistance + (lastMileDistance > 0 ? lastMileDistance : 0);
-        
+        synchronized (this) {
+            applyTrip(route, totalDistance, co2Saved);
+            version++;
+        }
+    }
+
+    private void applyTrip(List<Station> route, double totalDistance, double co2Saved) {
         totalTrips++;
         totalKmTraveled += totalDistance;
         totalCO2Saved += co2Saved;
@@ -51,18 +74,18 @@ public class UserStatsService {
         
         int tripPoints = (int)(totalDistance * 10) + 5;
         pointsEarned += tripPoints;
-        
-        saveStats();
+    }
+
+    /** Whether trips were recorded since the stats were last saved. */
+    public synchronized boolean isDirty() {
+        return version != savedVersion;
     }
     
     private double calculateMetroDistance(List<Station> route) {
-        if (route == null || route.size() <= 1) {
-            return 0.0;
-        }
-        return (route.size() - 1) * 1.5; // 1.5 km per station
+        return distances.calculateDistance(route);
     }
     
-    public void displayStats() {
+    public synchronized void displayStats() {
         System.out.println("\n========================================");
         System.out.println("   🏆 Travel Stats Dashboard");
         System.out.println("========================================");
@@ -79,7 +102,7 @@ public class UserStatsService {
         System.out.println("========================================");
     }
     
-    public void displayLeaderboard() {
+    public synchronized void displayLeaderboard() {
         System.out.println("\n========================================");
         System.out.println("   🏆 Leaderboard");
         System.out.println("========================================");
@@ -140,27 +163,62 @@ public class UserStatsService {
         }
     }
     
-    private void saveStats() {
-        try (PrintWriter writer = new PrintWriter(new FileWriter(statsFile))) {
-            writer.println("=== User Travel Statistics ===");
-            writer.println("Last Updated: " + LocalDateTime.now().format(formatter));
-            writer.println();
-            writer.println("Total Trips: " + totalTrips);
-            writer.println("Total km: " + String.format("%.1f km", totalKmTraveled));
-            writer.println("Total CO2: " + String.format("%.2f kg", totalCO2Saved));
-            writer.println("Longest Route: " + String.format("%.1f km", longestRoute) + 
-                (longestRouteDescription != null ? " (" + longestRouteDescription + ")" : ""));
-            writer.println("Points: " + pointsEarned + " points");
-            writer.flush();
-        } catch (IOException e) {
-            System.err.println("Error saving stats: " + e.getMessage());
+    /**
+     * Writes the totals if trips were recorded since the last save. The file is rendered from
+     * a snapshot taken under the lock, so trips keep being recorded while it is written, and
+     * replaced in one rename, so a crash leaves the old or the new file and never half of one.
+     *
+     * @return false if the file could not be written; the stats stay dirty
+     */
+    public boolean saveIfDirty() {
+        synchronized (saveLock) {
+            String text;
+            long snapshot;
+            synchronized (this) {
+                if (version == savedVersion) return true;
+                text = render();
+                snapshot = version;
+            }
+            Path target = Paths.get(statsFile);
+            Path temp = Paths.get(statsFile + ".tmp");
+            try {
+                Files.write(temp, text.getBytes(StandardCharsets.UTF_8));
+                try {
+                    Files.move(temp, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+                } catch (AtomicMoveNotSupportedException e) {
+                    Files.move(temp, target, StandardCopyOption.REPLACE_EXISTING);
+                }
+            } catch (IOException e) {
+                System.err.println("Error saving stats: " + e.getMessage());
+                return false;
+            }
+            synchronized (this) {
+                savedVersion = snapshot;
+            }
+            return true;
         }
     }
+
+    private String render() {
+        StringWriter out = new StringWriter();
+        PrintWriter writer = new PrintWriter(out);
+        writer.println("=== User Travel Statistics ===");
+        writer.println("Last Updated: " + LocalDateTime.now().format(formatter));
+        writer.println();
+        writer.println("Total Trips: " + totalTrips);
+        writer.println("Total km: " + String.format("%.1f km", totalKmTraveled));
+        writer.println("Total CO2: " + String.format("%.2f kg", totalCO2Saved));
+        writer.println("Longest Route: " + String.format("%.1f km", longestRoute) + 
+            (longestRouteDescription != null ? " (" + longestRouteDescription + ")" : ""));
+        writer.println("Points: " + pointsEarned + " points");
+        writer.flush();
+        return out.toString();
+    }
     
-    public int getTotalTrips() { return totalTrips; }
-    public double getTotalKmTraveled() { return totalKmTraveled; }
-    public double getTotalCO2Saved() { return totalCO2Saved; }
-    public double getLongestRoute() { return longestRoute; }
-    public int getPointsEarned() { return pointsEarned; }
+    public synchronized int getTotalTrips() { return totalTrips; }
+    public synchronized double getTotalKmTraveled() { return totalKmTraveled; }
+    public synchronized double getTotalCO2Saved() { return totalCO2Saved; }
+    public synchronized double getLongestRoute() { return longestRoute; }
+    public synchronized int getPointsEarned() { return pointsEarned; }
 }
 